@@ -0,0 +1,54 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The crypto attributes of the realistic offers in <tt>offers.txt</tt>.
+ * 
+ * @author Ingo Bauersachs
+ */
+final class Corpus {
+    private Corpus() {
+    }
+
+    /**
+     * Loads the attribute values of the corpus, skipping comments and empty
+     * lines.
+     * 
+     * @return The attribute values, without the <tt>a=crypto:</tt> prefix.
+     */
+    static String[] load() {
+        List<String> lines = new ArrayList<String>();
+        try (InputStream in = Corpus.class.getResourceAsStream("offers.txt");
+                BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    lines.add(line);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Cannot read the corpus", e);
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.imvs.sdes4j.CryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpSDesFactory;
+
+/**
+ * Encodes every attribute of the corpus. One operation encodes the whole
+ * corpus.
+ * <p>
+ * <tt>encode</tt> measures the first encoding of a freshly parsed attribute
+ * (the parse is included, see {@link ParseBenchmark} to subtract it), while
+ * <tt>encodeCached</tt> measures repeated calls on the same instances.
+ * <tt>encodeTo</tt> writes into a reused builder.
+ * 
+ * @author Ingo Bauersachs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodeBenchmark {
+    private SrtpSDesFactory f;
+    private String[] corpus;
+    private CryptoAttribute[] attributes;
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        f = new SrtpSDesFactory();
+        corpus = Corpus.load();
+        attributes = new CryptoAttribute[corpus.length];
+        for (int i = 0; i < corpus.length; i++)
+            attributes[i] = CryptoAttribute.create(corpus[i], f);
+        sb = new StringBuilder(256);
+    }
+
+    @Benchmark
+    public void encode(Blackhole bh) {
+        for (String a : corpus)
+            bh.consume(CryptoAttribute.create(a, f).encode());
+    }
+
+    @Benchmark
+    public void encodeCached(Blackhole bh) {
+        for (CryptoAttribute a : attributes)
+            bh.consume(a.encode());
+    }
+
+    @Benchmark
+    public void encodeTo(Blackhole bh) throws IOException {
+        for (CryptoAttribute a : attributes) {
+            sb.setLength(0);
+            for (int i = 0; i < a.getKeyParams().length; i++)
+                a.getKeyParams()[i].encodeTo(sb);
+            for (int i = 0; i < a.getSessionParams().length; i++)
+                a.getSessionParams()[i].encodeTo(sb);
+            bh.consume(sb.length());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.imvs.sdes4j.srtp.SrtpCryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpCryptoSuite;
+import ch.imvs.sdes4j.srtp.SrtpSDesFactory;
+import ch.imvs.sdes4j.srtp.SrtpSessionParam;
+
+/**
+ * Generates offers with fresh key material for every supported suite.
+ * 
+ * @author Ingo Bauersachs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyGenerationBenchmark {
+    @Param({
+        SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80,
+        SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32,
+        SrtpCryptoSuite.F8_128_HMAC_SHA1_80,
+        SrtpCryptoSuite.AES_192_CM_HMAC_SHA1_80,
+        SrtpCryptoSuite.AES_192_CM_HMAC_SHA1_32,
+        SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80,
+        SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_32,
+    })
+    public String suite;
+
+    private static final String[] OFFER_SUITES = {
+        SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80,
+        SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_32,
+        SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80,
+        SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32,
+    };
+    private static final SrtpSessionParam[][] OFFER_STREAMS = new SrtpSessionParam[2][];
+
+    private SrtpSDesFactory f;
+
+    @Setup
+    public void setUp() {
+        f = new SrtpSDesFactory();
+    }
+
+    @Benchmark
+    public SrtpCryptoAttribute createCryptoAttribute() {
+        return f.createCryptoAttribute(1, suite);
+    }
+
+    /**
+     * Generates an offer with four suites for two media streams in one batch.
+     */
+    @Benchmark
+    public SrtpCryptoAttribute[][] createOffer() {
+        return f.createCryptoAttributesForStreams(OFFER_SUITES, OFFER_STREAMS);
+    }
+
+    /**
+     * Generates keys on all cores with a shared factory, to verify that key
+     * generation scales with the number of threads.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SrtpCryptoAttribute createCryptoAttributeShared() {
+        return f.createCryptoAttribute(1, suite);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.imvs.sdes4j.CryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpSDesFactory;
+
+/**
+ * Parses every attribute of the corpus with both <tt>create</tt> overloads
+ * and from US-ASCII bytes. One operation parses the whole corpus.
+ * 
+ * @author Ingo Bauersachs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    private SrtpSDesFactory f;
+    private String[] attributes;
+    private String[][] fields;
+    private byte[][] bytes;
+
+    @Setup
+    public void setUp() {
+        f = new SrtpSDesFactory();
+        attributes = Corpus.load();
+        fields = new String[attributes.length][];
+        bytes = new byte[attributes.length][];
+        for (int i = 0; i < attributes.length; i++) {
+            String[] split = attributes[i].split(" ", 4);
+            fields[i] = new String[] { split[0], split[1], split[2], split.length > 3 ? split[3] : null };
+            bytes[i] = attributes[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Benchmark
+    public void createFromString(Blackhole bh) {
+        for (String a : attributes)
+            bh.consume(CryptoAttribute.create(a, f));
+    }
+
+    @Benchmark
+    public void createFromFields(Blackhole bh) {
+        for (String[] a : fields)
+            bh.consume(CryptoAttribute.create(a[0], a[1], a[2], a[3], f));
+    }
+
+    @Benchmark
+    public void parseBytes(Blackhole bh) {
+        for (byte[] a : bytes)
+            bh.consume(CryptoAttribute.parse(a, 0, a.length, f));
+    }
+}
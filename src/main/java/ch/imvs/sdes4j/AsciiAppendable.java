@@ -0,0 +1,74 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link Appendable} that writes US-ASCII encoded characters to the current
+ * position of a byte buffer, without intermediate Strings or arrays.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class AsciiAppendable implements Appendable {
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates an appendable that writes to a buffer.
+     * 
+     * @param buffer The buffer to write to, starting at its position.
+     */
+    public AsciiAppendable(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @throws BufferOverflowException when the buffer has not enough space.
+     * @throws IllegalArgumentException when a character is not US-ASCII.
+     */
+    @Override
+    public AsciiAppendable append(CharSequence csq) {
+        if (csq == null)
+            csq = "null";
+        return append(csq, 0, csq.length());
+    }
+
+    /**
+     * @throws BufferOverflowException when the buffer has not enough space.
+     * @throws IllegalArgumentException when a character is not US-ASCII.
+     */
+    @Override
+    public AsciiAppendable append(CharSequence csq, int start, int end) {
+        if (csq == null)
+            csq = "null";
+        if (end - start > buffer.remaining())
+            throw new BufferOverflowException();
+        for (int i = start; i < end; i++)
+            append(csq.charAt(i));
+        return this;
+    }
+
+    /**
+     * @throws BufferOverflowException when the buffer has not enough space.
+     * @throws IllegalArgumentException when the character is not US-ASCII.
+     */
+    @Override
+    public AsciiAppendable append(char c) {
+        if (c > 0x7f)
+            throw new IllegalArgumentException("Not a US-ASCII character");
+        buffer.put((byte) c);
+        return this;
+    }
+}
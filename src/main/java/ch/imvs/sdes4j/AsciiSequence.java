@@ -0,0 +1,129 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CharSequence} view on US-ASCII encoded bytes. The bytes are neither
+ * copied nor decoded; each byte is mapped to the character with the same code.
+ * <p>
+ * The view reads the underlying array or buffer with absolute indices, so the
+ * position and limit of a buffer are not changed. Changing the bytes while the
+ * view is used changes the content of the view.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class AsciiSequence implements CharSequence {
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Creates an empty view that is later pointed to its content with one of
+     * the <tt>reset</tt> methods. Used by {@link ParseContext}.
+     */
+    AsciiSequence() {
+    }
+
+    /**
+     * Creates a view on a range of a byte array.
+     * 
+     * @param array The array containing US-ASCII encoded characters.
+     * @param offset The index of the first byte of the view.
+     * @param length The number of bytes in the view.
+     */
+    public AsciiSequence(byte[] array, int offset, int length) {
+        reset(array, offset, length);
+    }
+
+    /**
+     * Creates a view on a range of a byte buffer.
+     * 
+     * @param buffer The buffer containing US-ASCII encoded characters.
+     * @param offset The absolute index of the first byte of the view.
+     * @param length The number of bytes in the view.
+     */
+    public AsciiSequence(ByteBuffer buffer, int offset, int length) {
+        reset(buffer, offset, length);
+    }
+
+    AsciiSequence reset(byte[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > array.length - length)
+            throw new IndexOutOfBoundsException();
+
+        this.array = array;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    AsciiSequence reset(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > buffer.limit() - length)
+            throw new IndexOutOfBoundsException();
+
+        if (buffer.hasArray()) {
+            this.array = buffer.array();
+            this.buffer = null;
+            this.offset = buffer.arrayOffset() + offset;
+        }
+        else {
+            this.array = null;
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+        this.length = length;
+        return this;
+    }
+
+    private AsciiSequence(byte[] array, ByteBuffer buffer, int offset, int length) {
+        this.array = array;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException();
+
+        if (array != null)
+            return (char) (array[offset + index] & 0xff);
+        return (char) (buffer.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public AsciiSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException();
+
+        return new AsciiSequence(array, buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = charAt(i);
+        return new String(chars);
+    }
+}
@@ -13,19 +13,37 @@
  */
 package ch.imvs.sdes4j;
 
-import java.util.*;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Primary class for a RFC4568 Crypto Attribute.
+ * <p>
+ * The encoded form and the hash code are computed at most once and cached.
+ * Subclasses that modify the protected fields after construction must call
+ * {@link #invalidate()}. The arrays returned by {@link #getKeyParams()} and
+ * {@link #getSessionParams()} must not be modified.
  * 
  * @author Ingo Bauersachs
  */
 public class CryptoAttribute {
+    private static final SessionParam[] NO_SESSION_PARAMS = new SessionParam[0];
+
     protected int tag;
     protected CryptoSuite cryptoSuite;
     protected KeyParam[] keyParams;
+
+    /**
+     * The session params. A subclass may fill the field lazily on the first
+     * call of {@link #getSessionParams()}, so read it through that method.
+     */
     protected SessionParam[] sessionParams = null;
 
+    private String encoded;
+    private int hash;
+
     protected CryptoAttribute(){
     }
 
@@ -40,24 +58,178 @@ public class CryptoAttribute {
      * @return a parsed crypto attribute
      */
     public static CryptoAttribute create(String attribute, SDesFactory f) {
+        return parse(attribute, 0, attribute.length(), f);
+    }
+
+    /**
+     * Creates an instance of a CryptoAttribute from a range of a character
+     * sequence in the format of
+     * <tt>tag 1*WSP crypto-suite 1*WSP key-params *(1*WSP session-param)</tt>
+     * <p>
+     * The attribute is parsed in a single pass with an index cursor. Only the
+     * final fields of the attribute are copied out of the sequence.
+     * 
+     * @param attribute the sequence containing the encoded SDes attribute
+     * @param start the inclusive start of the attribute in the sequence
+     * @param end the exclusive end of the attribute in the sequence
+     * @param f factory that creates the instances for each part of the
+     *            attribute
+     * @return a parsed crypto attribute
+     */
+    public static CryptoAttribute parse(CharSequence attribute, int start, int end, SDesFactory f) {
+        return parse(attribute, start, end, f, null);
+    }
+
+    /**
+     * Creates an instance of a CryptoAttribute from a range of a character
+     * sequence, reusing the scratch state of a parse context.
+     * 
+     * @param attribute the sequence containing the encoded SDes attribute
+     * @param start the inclusive start of the attribute in the sequence
+     * @param end the exclusive end of the attribute in the sequence
+     * @param f factory that creates the instances for each part of the
+     *            attribute
+     * @param ctx the scratch state to use, or <code>null</code>
+     * @return a parsed crypto attribute
+     */
+    public static CryptoAttribute parse(CharSequence attribute, int start, int end, SDesFactory f, ParseContext ctx) {
         CryptoAttribute result = f.createCryptoAttribute();
-        List<String> tokens = new LinkedList<String>();
-        for (String s : attribute.split("\\s")){
-            if(s.trim().length() > 0)
-                tokens.add(s);
+        try {
+            int pos = ParseUtils.skipWhitespace(attribute, start, end);
+            int tokenEnd = ParseUtils.tokenEnd(attribute, pos, end);
+            result.setTag(attribute, pos, tokenEnd);
+
+            pos = ParseUtils.skipWhitespace(attribute, tokenEnd, end);
+            tokenEnd = ParseUtils.tokenEnd(attribute, pos, end);
+            result.setCryptoSuite(attribute, pos, tokenEnd, f);
+
+            pos = ParseUtils.skipWhitespace(attribute, tokenEnd, end);
+            if (pos == end)
+                throw new IllegalArgumentException("There must be at least one key parameter");
+            tokenEnd = ParseUtils.tokenEnd(attribute, pos, end);
+            result.setKeyParams(attribute, pos, tokenEnd, f);
+
+            result.parseSessionParams(attribute, tokenEnd, end, f, ctx);
         }
+        catch (RuntimeException e) {
+            // release what the parts parsed so far hold, e.g. pooled keys
+            closeQuietly(result);
+            throw e;
+        }
+        return result;
+    }
 
-        result.setTag(tokens.remove(0));
-        result.setCryptoSuite(tokens.remove(0), f);
-
-        if (tokens.size() < 1)
-            throw new IllegalArgumentException("There must be at least one key parameter");
-        result.setKeyParams(tokens.remove(0), f);
+    private static void closeQuietly(CryptoAttribute attribute) {
+        if (!(attribute instanceof AutoCloseable))
+            return;
+        try {
+            ((AutoCloseable) attribute).close();
+        }
+        catch (Exception e) {
+            // the parse error is more relevant
+        }
+    }
 
-        result.setSessionParams(tokens, f);
+    /**
+     * Creates a copy of an attribute with the same tag, crypto suite and key
+     * params, but session params parsed from a range of a character sequence.
+     * The key params are taken over with {@link #adoptKeyParams(KeyParam[])}.
+     * 
+     * @param original the attribute whose tag, suite and key params are kept
+     * @param s sequence containing the whitespace separated session params
+     * @param start the inclusive start of the session params
+     * @param end the exclusive end of the session params
+     * @param f factory that creates the instances
+     * @return the new crypto attribute
+     */
+    static CryptoAttribute withSessionParams(CryptoAttribute original, CharSequence s, int start, int end,
+            SDesFactory f) {
+        CryptoAttribute result = f.createCryptoAttribute();
+        result.tag = original.tag;
+        result.cryptoSuite = original.cryptoSuite;
+        result.keyParams = result.adoptKeyParams(original.keyParams);
+        result.parseSessionParams(s, start, end, f, null);
         return result;
     }
 
+    /**
+     * Takes over the key params of an attribute that differs from this one
+     * only in its session params. The default implementation shares the
+     * array; subclasses whose key params can be released must return copies,
+     * so that the attributes can be released independently.
+     * 
+     * @param keyParams the key params of the original attribute
+     * @return the key params for this attribute
+     */
+    protected KeyParam[] adoptKeyParams(KeyParam[] keyParams) {
+        return keyParams;
+    }
+
+    /**
+     * Creates an instance of a CryptoAttribute from US-ASCII encoded bytes in
+     * a buffer. The attribute is parsed in place, without decoding the bytes
+     * into a String first. The position and limit of the buffer are not
+     * changed.
+     * 
+     * @param buf the buffer containing the encoded SDes attribute
+     * @param offset the absolute index of the first byte of the attribute
+     * @param length the number of bytes of the attribute
+     * @param f factory that creates the instances for each part of the
+     *            attribute
+     * @return a parsed crypto attribute
+     */
+    public static CryptoAttribute parse(ByteBuffer buf, int offset, int length, SDesFactory f) {
+        return parse(new AsciiSequence(buf, offset, length), 0, length, f, null);
+    }
+
+    /**
+     * Creates an instance of a CryptoAttribute from US-ASCII encoded bytes in
+     * a buffer, reusing the byte view and scratch state of a parse context.
+     * 
+     * @param buf the buffer containing the encoded SDes attribute
+     * @param offset the absolute index of the first byte of the attribute
+     * @param length the number of bytes of the attribute
+     * @param f factory that creates the instances for each part of the
+     *            attribute
+     * @param ctx the scratch state to use
+     * @return a parsed crypto attribute
+     */
+    public static CryptoAttribute parse(ByteBuffer buf, int offset, int length, SDesFactory f, ParseContext ctx) {
+        return parse(ctx.wrap(buf, offset, length), 0, length, f, ctx);
+    }
+
+    /**
+     * Creates an instance of a CryptoAttribute from US-ASCII encoded bytes in
+     * an array. The attribute is parsed in place, without decoding the bytes
+     * into a String first.
+     * 
+     * @param buf the array containing the encoded SDes attribute
+     * @param offset the index of the first byte of the attribute
+     * @param length the number of bytes of the attribute
+     * @param f factory that creates the instances for each part of the
+     *            attribute
+     * @return a parsed crypto attribute
+     */
+    public static CryptoAttribute parse(byte[] buf, int offset, int length, SDesFactory f) {
+        return parse(new AsciiSequence(buf, offset, length), 0, length, f, null);
+    }
+
+    /**
+     * Creates an instance of a CryptoAttribute from US-ASCII encoded bytes in
+     * an array, reusing the byte view and scratch state of a parse context.
+     * 
+     * @param buf the array containing the encoded SDes attribute
+     * @param offset the index of the first byte of the attribute
+     * @param length the number of bytes of the attribute
+     * @param f factory that creates the instances for each part of the
+     *            attribute
+     * @param ctx the scratch state to use
+     * @return a parsed crypto attribute
+     */
+    public static CryptoAttribute parse(byte[] buf, int offset, int length, SDesFactory f, ParseContext ctx) {
+        return parse(ctx.wrap(buf, offset, length), 0, length, f, ctx);
+    }
+
     /**
      * Creates an instance of a CryptoAttribute from a SDes attributes (tag,
      * crypto suite, key params and session params).
@@ -76,19 +248,14 @@ public class CryptoAttribute {
     public static CryptoAttribute create(String tag, String cryptoSuite, String keyParams, String sessionParams, SDesFactory f) {
         CryptoAttribute result = f.createCryptoAttribute();
 
-        result.setTag(tag);
-        result.setCryptoSuite(cryptoSuite, f);
-        result.setKeyParams(keyParams, f);
-
-        List<String> tokens = new LinkedList<String>();
-        if(sessionParams != null) {
-            for (String s : sessionParams.split("\\s")) {
-                if(s.trim().length() > 0)
-                    tokens.add(s);
-            }
-        }
+        result.setTag(tag, 0, tag.length());
+        result.setCryptoSuite(cryptoSuite, 0, cryptoSuite.length(), f);
+        result.setKeyParams(keyParams, 0, keyParams.length(), f);
 
-        result.setSessionParams(tokens, f);
+        if (sessionParams == null)
+            result.parseSessionParams("", 0, 0, f, null);
+        else
+            result.parseSessionParams(sessionParams, 0, sessionParams.length(), f, null);
 
         return result;
     }
@@ -136,13 +303,16 @@ public class CryptoAttribute {
      * attribute. The tag MUST be unique among all crypto attributes for a given
      * media line.
      * 
-     * @param stringTag unparsed tag as a string. 
+     * @param s sequence containing the unparsed tag.
+     * @param start the inclusive start of the tag.
+     * @param end the exclusive end of the tag.
      */
-    private void setTag(String stringTag) {
-        int tag = Integer.valueOf(stringTag);
-        if (tag > 99999999 || tag < 0)
+    private void setTag(CharSequence s, int start, int end) {
+        long tag = ParseUtils.parseDecimal(s, start, end, 99999999);
+        if (tag < 0)
             throw new IllegalArgumentException("tag can have at most 10 digits and must be non-negative");
-        this.tag = tag;
+        this.tag = (int) tag;
+        invalidate();
     }
 
     /**
@@ -159,11 +329,14 @@ public class CryptoAttribute {
      * Sets the identifier that describes the encryption and authentication
      * algorithms (e.g., AES_CM_128_HMAC_SHA1_80) for the transport in question.
      * 
-     * @param stringCryptoSuite the crypto suite as an unparsed string.
+     * @param s sequence containing the unparsed crypto suite.
+     * @param start the inclusive start of the crypto suite.
+     * @param end the exclusive end of the crypto suite.
      * @param f factory that creates the crypto suite instance
      */
-    private void setCryptoSuite(String stringCryptoSuite, SDesFactory f) {
-        this.cryptoSuite = f.createCryptoSuite(stringCryptoSuite);
+    private void setCryptoSuite(CharSequence s, int start, int end, SDesFactory f) {
+        this.cryptoSuite = f.createCryptoSuite(s, start, end);
+        invalidate();
     }
 
     /**
@@ -180,17 +353,26 @@ public class CryptoAttribute {
      * Sets one or more sets of keying material for the crypto-suite in
      * question.
      * 
-     * @param stringKeyParams An unparsed string representation of the key param
-     * list (each key must be separated by a ";").
+     * @param s sequence containing an unparsed representation of the key
+     * param list (each key must be separated by a ";").
+     * @param start the inclusive start of the key param list.
+     * @param end the exclusive end of the key param list.
      * @param f factory that creates the key params instances
      */
-    private void setKeyParams(String stringKeyParams, SDesFactory f) {
-        String[] params = stringKeyParams.split(";");
-        List<KeyParam> keyParams = new LinkedList<KeyParam>();
-        for (String p : params) {
-            keyParams.add(f.createKeyParam(p));
+    private void setKeyParams(CharSequence s, int start, int end, SDesFactory f) {
+        KeyParam[] keyParams = f.createKeyParamArray(ParseUtils.count(s, ';', start, end) + 1);
+        // set before filling, so that a failed parse can release the key
+        // params that were already created
+        this.keyParams = keyParams;
+        int pos = start;
+        for (int i = 0; i < keyParams.length; i++) {
+            int paramEnd = ParseUtils.indexOf(s, ';', pos, end);
+            if (paramEnd < 0)
+                paramEnd = end;
+            keyParams[i] = f.createKeyParam(s, pos, paramEnd);
+            pos = paramEnd + 1;
         }
-        this.keyParams = keyParams.toArray(f.createKeyParamArray(0));
+        invalidate();
     }
 
     /**
@@ -205,39 +387,198 @@ public class CryptoAttribute {
     /**
      * Sets additional key parameters for this particular crypto attribute.
      * 
-     * @param tokens List of String-Tokens where the matching items are consumed
-     *            and removed from the list
+     * @param s sequence containing the whitespace separated session params
+     * @param start the inclusive start of the session params.
+     * @param end the exclusive end of the session params.
      * @param f factory that creates the session params instances
+     * @param ctx scratch state that records the token spans, or
+     *            <code>null</code> to scan the session params twice
      */
-    private void setSessionParams(List<String> tokens, SDesFactory f) {
-        List<SessionParam> sessionParams = new LinkedList<SessionParam>();
-        while (tokens.size() > 0) {
-            sessionParams.add(f.createSessionParam(tokens.remove(0)));
+    private void setSessionParams(CharSequence s, int start, int end, SDesFactory f, ParseContext ctx) {
+        int count = 0;
+        int[] spans = null;
+        int pos = ParseUtils.skipWhitespace(s, start, end);
+        while (pos < end) {
+            int tokenEnd = ParseUtils.tokenEnd(s, pos, end);
+            if (ctx != null) {
+                spans = ctx.spans(count + 1);
+                spans[2 * count] = pos;
+                spans[2 * count + 1] = tokenEnd;
+            }
+            count++;
+            pos = ParseUtils.skipWhitespace(s, tokenEnd, end);
+        }
+
+        SessionParam[] sessionParams = f.createSessionParamArray(count);
+        if (spans != null) {
+            for (int i = 0; i < count; i++)
+                sessionParams[i] = f.createSessionParam(s, spans[2 * i], spans[2 * i + 1]);
         }
-        this.sessionParams = sessionParams.toArray(f.createSessionParamArray(0));
+        else {
+            pos = ParseUtils.skipWhitespace(s, start, end);
+            for (int i = 0; i < count; i++) {
+                int tokenEnd = ParseUtils.tokenEnd(s, pos, end);
+                sessionParams[i] = f.createSessionParam(s, pos, tokenEnd);
+                pos = ParseUtils.skipWhitespace(s, tokenEnd, end);
+            }
+        }
+        this.sessionParams = sessionParams;
+        invalidate();
+    }
+
+    /**
+     * Parses the session params of this attribute. Subclasses may override
+     * this to parse the session params differently or to keep an additional
+     * representation of them; the {@link #sessionParams} field must then
+     * either be set, or be built by an overridden {@link #getSessionParams()}.
+     * 
+     * @param s sequence containing the whitespace separated session params
+     * @param start the inclusive start of the session params.
+     * @param end the exclusive end of the session params.
+     * @param f factory that creates the session params instances
+     * @param ctx scratch state that records the token spans, or
+     *            <code>null</code>
+     */
+    protected void parseSessionParams(CharSequence s, int start, int end, SDesFactory f, ParseContext ctx) {
+        setSessionParams(s, start, end, f, ctx);
+    }
+
+    /**
+     * Discards the cached encoded form and hash code. Must be called by
+     * subclasses after modifying the tag, crypto suite, key params or session
+     * params.
+     */
+    protected void invalidate() {
+        encoded = null;
+        hash = 0;
     }
 
     /**
      * Encodes this crypto attribute as a string according to the ABNF rule
      * <tt>tag 1*WSP crypto-suite 1*WSP key-params *(1*WSP session-param)</tt>
      * 
+     * The result is computed on the first call and cached.
+     * 
      * @return Complete crypto attribute for use in the SDP.
      */
     public String encode() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(tag);
-        sb.append(' ');
-        sb.append(cryptoSuite.encode());
-        sb.append(' ');
-        sb.append(getKeyParamsString());
-        if (sessionParams != null && sessionParams.length > 0) {
-            sb.append(' ');
-            sb.append(getSessionParamsString());
+        String encoded = this.encoded;
+        if (encoded == null) {
+            StringBuilder sb = new StringBuilder();
+            try {
+                encodeTo(sb);
+            }
+            catch (IOException e) {
+                // StringBuilder does not throw
+                throw new IllegalStateException(e);
+            }
+            encoded = sb.toString();
+            this.encoded = encoded;
         }
+        return encoded;
+    }
 
+    /**
+     * Writes this crypto attribute according to the ABNF rule
+     * <tt>tag 1*WSP crypto-suite 1*WSP key-params *(1*WSP session-param)</tt>
+     * to an appendable, without creating intermediate Strings.
+     * 
+     * @param out The destination of the encoded attribute.
+     * @throws IOException when the destination fails.
+     */
+    public void encodeTo(Appendable out) throws IOException {
+        String encoded = this.encoded;
+        if (encoded != null) {
+            out.append(encoded);
+            return;
+        }
+
+        EncodeUtils.appendDecimal(out, tag);
+        out.append(' ');
+        cryptoSuite.encodeTo(out);
+        out.append(' ');
+        for (int i = 0; i < keyParams.length; i++) {
+            if (i > 0)
+                out.append(';');
+            keyParams[i].encodeTo(out);
+        }
+        encodeSessionParamsTo(out);
+    }
+
+    /**
+     * Writes the session params, each preceded by a space.
+     * 
+     * @param out The destination of the encoded session params.
+     * @throws IOException when the destination fails.
+     */
+    protected void encodeSessionParamsTo(Appendable out) throws IOException {
+        SessionParam[] sessionParams = getSessionParams();
+        if (sessionParams != null) {
+            for (int i = 0; i < sessionParams.length; i++) {
+                out.append(' ');
+                sessionParams[i].encodeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Writes this crypto attribute as US-ASCII encoded text to the current
+     * position of a buffer, e.g. directly into an outgoing SIP message.
+     * 
+     * @param out The destination of the encoded attribute.
+     * @throws BufferOverflowException when the buffer has not enough space.
+     *             The position of the buffer is not changed in this case.
+     */
+    public void encodeTo(ByteBuffer out) {
+        int position = out.position();
+        try {
+            encodeTo(new AsciiAppendable(out));
+        }
+        catch (BufferOverflowException e) {
+            out.position(position);
+            throw e;
+        }
+        catch (IOException e) {
+            // AsciiAppendable does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes crypto attributes as complete SDP attribute lines, each in the
+     * form <tt>a=crypto:...</tt> and terminated by CRLF.
+     * 
+     * @param attributes The attributes, e.g. of one media description.
+     * @return The attribute lines.
+     */
+    public static String encodeLines(CryptoAttribute[] attributes) {
+        StringBuilder sb = new StringBuilder(attributes.length * 96);
+        try {
+            encodeLinesTo(sb, attributes);
+        }
+        catch (IOException e) {
+            // StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
         return sb.toString();
     }
 
+    /**
+     * Writes crypto attributes as complete SDP attribute lines, each in the
+     * form <tt>a=crypto:...</tt> and terminated by CRLF.
+     * 
+     * @param out The destination of the lines.
+     * @param attributes The attributes, e.g. of one media description.
+     * @throws IOException when the destination fails.
+     */
+    public static void encodeLinesTo(Appendable out, CryptoAttribute[] attributes) throws IOException {
+        for (CryptoAttribute a : attributes) {
+            out.append("a=crypto:");
+            a.encodeTo(out);
+            out.append("\r\n");
+        }
+    }
+
     /**
      * Returns a string representation the key parameters according to the ABNF
      * rule key-params.
@@ -264,6 +605,7 @@ public class CryptoAttribute {
      * separated by " ", or null if there are no session params.
      */
     public String getSessionParamsString() {
+        SessionParam[] sessionParams = getSessionParams();
         if (sessionParams != null && sessionParams.length > 0) {
             StringBuilder sb = new StringBuilder();
             for (int i = 0; i < sessionParams.length; i++) {
@@ -278,19 +620,41 @@ public class CryptoAttribute {
         }
     }
 
+    /**
+     * Compares the tag, crypto suite, key params and session params of two
+     * crypto attributes. Missing session params are equal to an empty list.
+     */
     @Override
     public boolean equals(Object obj) {
-        if (obj != null && obj instanceof CryptoAttribute)
-        {
-            CryptoAttribute other = (CryptoAttribute)obj;
-            return encode().equals(other.encode());
-        }
-
-        return false;
+        if (obj == this)
+            return true;
+        if (!(obj instanceof CryptoAttribute))
+            return false;
+
+        CryptoAttribute other = (CryptoAttribute) obj;
+        if (hash != 0 && other.hash != 0 && hash != other.hash)
+            return false;
+        return tag == other.tag
+            && cryptoSuite.equals(other.cryptoSuite)
+            && Arrays.equals(keyParams, other.keyParams)
+            && Arrays.equals(sessionParamsOrEmpty(), other.sessionParamsOrEmpty());
     }
 
     @Override
     public int hashCode() {
-        return encode().hashCode();
+        int h = hash;
+        if (h == 0) {
+            h = tag;
+            h = 31 * h + cryptoSuite.hashCode();
+            h = 31 * h + Arrays.hashCode(keyParams);
+            h = 31 * h + Arrays.hashCode(sessionParamsOrEmpty());
+            hash = h;
+        }
+        return h;
+    }
+
+    private SessionParam[] sessionParamsOrEmpty() {
+        SessionParam[] sessionParams = getSessionParams();
+        return sessionParams == null ? NO_SESSION_PARAMS : sessionParams;
     }
 }
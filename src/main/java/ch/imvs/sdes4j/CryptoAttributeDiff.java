@@ -0,0 +1,218 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+/**
+ * Compares the <tt>a=crypto</tt> lines of a media description in a new offer
+ * or answer (e.g. a session refresh or hold/resume re-INVITE) with the
+ * attributes that were negotiated before, so that only changed lines are
+ * parsed.
+ * <p>
+ * Each line is matched by its tag and classified by comparing its raw text,
+ * without parsing it, with the encoded form of the previous attribute: first
+ * the lengths and then the characters of the part up to the end of the key
+ * params, and if those match, of the whole line. A rekeyed line usually
+ * differs in its length or within the first characters of the key.
+ * Lines that differ only in formatting from the encoded form (e.g. a lifetime
+ * written as <tt>2^20</tt>) are reported as rekeyed and parsed again, which
+ * is always safe.
+ * <p>
+ * Instances are immutable and thread-safe if the previous attributes are not
+ * modified.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class CryptoAttributeDiff {
+    /**
+     * The result of comparing a line with the previous attributes.
+     */
+    public enum Change {
+        /**
+         * The line is identical to the previous attribute with the same tag.
+         */
+        UNCHANGED,
+
+        /**
+         * The tag, crypto suite and key params are identical, only the session
+         * params differ.
+         */
+        SESSION_PARAMS_CHANGED,
+
+        /**
+         * The crypto suite or key params of the attribute with the same tag
+         * differ.
+         */
+        REKEYED,
+
+        /**
+         * There was no previous attribute with the tag of the line.
+         */
+        ADDED
+    }
+
+    private static final String CRYPTO = "a=crypto:";
+
+    private final CryptoAttribute[] previous;
+    private final SDesFactory f;
+    private final String[] encoded;
+    private final int[] keysEnd;
+
+    /**
+     * Creates a diff against previously negotiated attributes.
+     * 
+     * @param previous The attributes of the media description that were
+     *            negotiated before.
+     * @param f Factory that creates the attributes of changed lines.
+     */
+    public CryptoAttributeDiff(CryptoAttribute[] previous, SDesFactory f) {
+        this.previous = previous.clone();
+        this.f = f;
+        encoded = new String[previous.length];
+        keysEnd = new int[previous.length];
+        for (int i = 0; i < previous.length; i++) {
+            String e = previous[i].encode();
+            encoded[i] = e;
+            keysEnd[i] = keysEnd(e, 0, e.length());
+        }
+    }
+
+    /**
+     * Finds the end of the key params, after the first three tokens.
+     */
+    private static int keysEnd(CharSequence s, int start, int end) {
+        int pos = start;
+        for (int i = 0; i < 3; i++) {
+            pos = ParseUtils.skipWhitespace(s, pos, end);
+            pos = ParseUtils.tokenEnd(s, pos, end);
+        }
+        return pos;
+    }
+
+    private static boolean rangeEquals(CharSequence s, int start, String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(start + i) != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static int start(CharSequence line, int start, int end) {
+        start = ParseUtils.skipWhitespace(line, start, end);
+        if (ParseUtils.startsWith(line, start, end, CRYPTO))
+            return start + CRYPTO.length();
+        return start;
+    }
+
+    private static int trimEnd(CharSequence line, int start, int end) {
+        while (end > start && ParseUtils.isWhitespace(line.charAt(end - 1)))
+            end--;
+        return end;
+    }
+
+    private int indexOfTag(CharSequence line, int start, int end) {
+        int tagEnd = ParseUtils.tokenEnd(line, start, end);
+        long tag = ParseUtils.parseDecimal(line, start, tagEnd, 99999999);
+        if (tag < 0)
+            return -1;
+        for (int i = 0; i < previous.length; i++) {
+            if (previous[i].getTag() == tag)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Classifies a line without parsing it.
+     * 
+     * @param line The sequence containing the line, with or without the
+     *            <tt>a=crypto:</tt> prefix.
+     * @param start The inclusive start of the line.
+     * @param end The exclusive end of the line.
+     * @return The kind of change.
+     */
+    public Change classify(CharSequence line, int start, int end) {
+        start = start(line, start, end);
+        end = trimEnd(line, start, end);
+        return classify(line, start, end, indexOfTag(line, start, end));
+    }
+
+    private Change classify(CharSequence line, int start, int end, int i) {
+        if (i < 0)
+            return Change.ADDED;
+
+        String e = encoded[i];
+        int k = keysEnd(line, start, end);
+        if (k - start != keysEnd[i] || !rangeEquals(line, start, e, 0, keysEnd[i]))
+            return Change.REKEYED;
+
+        if (end - start == e.length() && rangeEquals(line, start, e, keysEnd[i], e.length()))
+            return Change.UNCHANGED;
+        return Change.SESSION_PARAMS_CHANGED;
+    }
+
+    /**
+     * Gets the attribute for a line: the previous attribute if the line is
+     * unchanged, a copy with the key params of the previous attribute if only
+     * the session params changed, or a newly parsed attribute otherwise. The
+     * copy does not depend on the previous attribute, which can be closed
+     * independently, see {@link CryptoAttribute#adoptKeyParams(KeyParam[])}.
+     * 
+     * @param line The sequence containing the line, with or without the
+     *            <tt>a=crypto:</tt> prefix.
+     * @param start The inclusive start of the line.
+     * @param end The exclusive end of the line.
+     * @return The attribute for the line.
+     */
+    public CryptoAttribute apply(CharSequence line, int start, int end) {
+        return apply(line, start, end, null, 0);
+    }
+
+    private CryptoAttribute apply(CharSequence line, int start, int end, Change[] changes, int index) {
+        start = start(line, start, end);
+        end = trimEnd(line, start, end);
+        int i = indexOfTag(line, start, end);
+        Change change = classify(line, start, end, i);
+        if (changes != null)
+            changes[index] = change;
+        switch (change) {
+            case UNCHANGED:
+                return previous[i];
+            case SESSION_PARAMS_CHANGED:
+                return CryptoAttribute.withSessionParams(previous[i], line, keysEnd[i] + start, end, f);
+            default:
+                return CryptoAttribute.parse(line, start, end, f);
+        }
+    }
+
+    /**
+     * Gets the attributes for all lines of a media description.
+     * 
+     * @param lines The crypto lines, with or without the <tt>a=crypto:</tt>
+     *            prefix.
+     * @param changes Receives the kind of change of each line, or
+     *            <code>null</code>.
+     * @return The attributes for the lines, see
+     *         {@link #apply(CharSequence, int, int)}.
+     * @throws IllegalArgumentException when <tt>changes</tt> is shorter than
+     *             <tt>lines</tt>.
+     */
+    public CryptoAttribute[] apply(CharSequence[] lines, Change[] changes) {
+        if (changes != null && changes.length < lines.length)
+            throw new IllegalArgumentException("changes has room for " + changes.length + " of " + lines.length + " lines");
+        CryptoAttribute[] result = new CryptoAttribute[lines.length];
+        for (int i = 0; i < lines.length; i++)
+            result[i] = apply(lines[i], 0, lines[i].length(), changes, i);
+        return result;
+    }
+}
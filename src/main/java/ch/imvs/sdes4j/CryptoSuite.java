@@ -13,10 +13,17 @@
  */
 package ch.imvs.sdes4j;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * Interface for grammar implementations of an identifier that describes the
  * encryption and authentication algorithms (e.g., AES_CM_128_HMAC_SHA1_80) for
  * the transport in question
+ * <p>
+ * Implementations must override {@link Object#equals(Object)} and
+ * {@link Object#hashCode()} to compare the crypto suite by value, as
+ * {@link CryptoAttribute#equals(Object)} relies on it.
  * 
  * @author Ingo Bauersachs
  */
@@ -28,4 +35,34 @@ public interface CryptoSuite {
      * @return The name of the crypto suite.
      */
     String encode();
+
+    /**
+     * Writes the same text as {@link #encode()} to an appendable. The default
+     * implementation appends the result of {@link #encode()}.
+     * 
+     * @param out The destination of the encoded crypto suite.
+     * @throws IOException when the destination fails.
+     */
+    default void encodeTo(Appendable out) throws IOException {
+        out.append(encode());
+    }
+
+    /**
+     * Writes the US-ASCII encoded text of {@link #encode()} to the current
+     * position of a buffer. The default implementation passes the buffer to
+     * {@link #encodeTo(Appendable)}.
+     * 
+     * @param out The destination of the encoded crypto suite.
+     * @throws java.nio.BufferOverflowException when the buffer has not
+     *             enough space.
+     */
+    default void encodeTo(ByteBuffer out) {
+        try {
+            encodeTo(new AsciiAppendable(out));
+        }
+        catch (IOException e) {
+            // AsciiAppendable does not throw
+            throw new IllegalStateException(e);
+        }
+    }
 }
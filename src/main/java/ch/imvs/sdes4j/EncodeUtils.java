@@ -0,0 +1,99 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Helpers for writing the ABNF of crypto attributes to an {@link Appendable}
+ * without creating intermediate Strings.
+ * <p>
+ * This class is used by the grammar implementations and is not meant to be
+ * used by applications.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class EncodeUtils {
+    private EncodeUtils() {
+    }
+
+    /**
+     * Appends the decimal representation of a number.
+     * 
+     * @param out The destination of the digits.
+     * @param value The number to write.
+     * @throws IOException when the destination fails.
+     */
+    public static void appendDecimal(Appendable out, long value) throws IOException {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                out.append("-9223372036854775808");
+                return;
+            }
+            out.append('-');
+            value = -value;
+        }
+
+        long divisor = 1;
+        while (divisor <= value / 10)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            out.append((char) ('0' + (value / divisor) % 10));
+    }
+
+    /**
+     * Appends the decimal representation of an unsigned big-endian number of
+     * arbitrary size.
+     * 
+     * @param out The destination of the digits.
+     * @param value The array containing the number.
+     * @param offset The index in <tt>value</tt> of the most significant byte.
+     * @param length The number of bytes of the number.
+     * @throws IOException when the destination fails.
+     */
+    public static void appendDecimal(Appendable out, byte[] value, int offset, int length) throws IOException {
+        int first = offset;
+        int end = offset + length;
+        while (first < end && value[first] == 0)
+            first++;
+        if (end - first <= 7) {
+            long v = 0;
+            for (int i = first; i < end; i++)
+                v = (v << 8) | (value[i] & 0xff);
+            appendDecimal(out, v);
+            return;
+        }
+
+        // long division by 10 on a copy, collecting the digits backwards;
+        // 256^n < 10^(3n) bounds the number of digits
+        byte[] rest = Arrays.copyOfRange(value, first, end);
+        char[] digits = new char[rest.length * 3];
+        int pos = digits.length;
+        int msb = 0;
+        while (msb < rest.length) {
+            int remainder = 0;
+            for (int i = msb; i < rest.length; i++) {
+                int v = (remainder << 8) | (rest[i] & 0xff);
+                rest[i] = (byte) (v / 10);
+                remainder = v % 10;
+            }
+            digits[--pos] = (char) ('0' + remainder);
+            while (msb < rest.length && rest[msb] == 0)
+                msb++;
+        }
+        for (int i = pos; i < digits.length; i++)
+            out.append(digits[i]);
+    }
+}
@@ -13,9 +13,16 @@
  */
 package ch.imvs.sdes4j;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * The key-param provides keying material for the crypto-suite in question. It
  * consists of a method and the actual keying information
+ * <p>
+ * Implementations must override {@link Object#equals(Object)} and
+ * {@link Object#hashCode()} to compare the key parameter by value, as
+ * {@link CryptoAttribute#equals(Object)} relies on it.
  * 
  * @author Ingo Bauersachs
  */
@@ -36,4 +43,34 @@ public interface KeyParam {
      * @return Textual representation of the key parameter.
      */
     String encode();
+
+    /**
+     * Writes the same text as {@link #encode()} to an appendable. The default
+     * implementation appends the result of {@link #encode()}.
+     * 
+     * @param out The destination of the encoded key parameter.
+     * @throws IOException when the destination fails.
+     */
+    default void encodeTo(Appendable out) throws IOException {
+        out.append(encode());
+    }
+
+    /**
+     * Writes the US-ASCII encoded text of {@link #encode()} to the current
+     * position of a buffer. The default implementation passes the buffer to
+     * {@link #encodeTo(Appendable)}.
+     * 
+     * @param out The destination of the encoded key parameter.
+     * @throws java.nio.BufferOverflowException when the buffer has not
+     *             enough space.
+     */
+    default void encodeTo(ByteBuffer out) {
+        try {
+            encodeTo(new AsciiAppendable(out));
+        }
+        catch (IOException e) {
+            // AsciiAppendable does not throw
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Scratch state that is reused across parse calls. It holds two things:
+ * <ul>
+ * <li>the view on byte input, which saves one wrapper object per parse of a
+ * <code>byte[]</code> or {@link ByteBuffer};</li>
+ * <li>the token spans of the session parameters, so that the generic parser
+ * scans them once instead of twice.</li>
+ * </ul>
+ * The savings are small. SRTP attributes parse the session parameters of
+ * RFC 4568 in a single pass of their own, and only use the spans when
+ * unknown or repeated parameters fall back to the factory. Keys are not
+ * decoded into scratch memory, as each key parameter keeps its decoded key;
+ * use a {@link ch.imvs.sdes4j.srtp.KeyMaterialPool} to keep keys off the
+ * heap.
+ * <p>
+ * A context must only be used by one thread at a time. Either keep one
+ * context per worker, or use the per-thread instance returned by
+ * {@link #forCurrentThread()}. Factories must not keep references to the
+ * character sequences passed to them while a context is used, as the byte
+ * views are reused by the next parse call.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class ParseContext {
+    private static final ThreadLocal<ParseContext> CURRENT = new ThreadLocal<ParseContext>() {
+        @Override
+        protected ParseContext initialValue() {
+            return new ParseContext();
+        }
+    };
+
+    private final AsciiSequence bytes = new AsciiSequence();
+    private int[] spans = new int[16];
+
+    /**
+     * Creates a new context. Use {@link #forCurrentThread()} if the context
+     * does not need to be managed by the caller.
+     */
+    public ParseContext() {
+    }
+
+    /**
+     * Gets the context of the calling thread. It is created on the first
+     * call and lives as long as the thread.
+     * 
+     * @return The context of the current thread.
+     */
+    public static ParseContext forCurrentThread() {
+        return CURRENT.get();
+    }
+
+    AsciiSequence wrap(byte[] buf, int offset, int length) {
+        return bytes.reset(buf, offset, length);
+    }
+
+    AsciiSequence wrap(ByteBuffer buf, int offset, int length) {
+        return bytes.reset(buf, offset, length);
+    }
+
+    /**
+     * Gets the scratch array for token spans, grown to hold at least the
+     * requested number of start/end pairs while keeping its content.
+     */
+    int[] spans(int pairs) {
+        if (spans.length < pairs * 2)
+            spans = Arrays.copyOf(spans, Math.max(pairs * 2, spans.length * 2));
+        return spans;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+/**
+ * The reasons why a crypto attribute can be rejected by the validating parse
+ * methods, e.g.
+ * {@link ch.imvs.sdes4j.srtp.SrtpCryptoAttribute#tryParse(CharSequence, int, int)}.
+ * The constants are stable and may be used as metric labels.
+ * 
+ * @author Ingo Bauersachs
+ */
+public enum ParseError {
+    /**
+     * The tag is missing, is not a decimal number or has more than 8 digits.
+     */
+    INVALID_TAG,
+
+    /**
+     * The crypto suite is missing.
+     */
+    MISSING_CRYPTO_SUITE,
+
+    /**
+     * The crypto suite is not known.
+     */
+    UNKNOWN_CRYPTO_SUITE,
+
+    /**
+     * The crypto suite is known, but its parameters are not.
+     */
+    UNSUPPORTED_CRYPTO_SUITE,
+
+    /**
+     * There is no key parameter.
+     */
+    MISSING_KEY_PARAMS,
+
+    /**
+     * The key method of a key parameter is not <tt>inline:</tt>.
+     */
+    UNKNOWN_KEY_METHOD,
+
+    /**
+     * The key of a key parameter is empty, not valid Base64, or larger than a
+     * slot of the key material pool.
+     */
+    INVALID_KEY,
+
+    /**
+     * The lifetime of a key parameter is neither a decimal number nor a power
+     * of 2.
+     */
+    INVALID_LIFETIME,
+
+    /**
+     * The MKI of a key parameter is invalid or does not fit its length.
+     */
+    INVALID_MKI,
+
+    /**
+     * A key parameter has too many fields.
+     */
+    INVALID_KEY_PARAM,
+
+    /**
+     * The value of <tt>KDR</tt> is invalid.
+     */
+    INVALID_KDR,
+
+    /**
+     * The value of <tt>WSH</tt> is invalid.
+     */
+    INVALID_WSH,
+
+    /**
+     * The value of <tt>FEC_ORDER</tt> is invalid.
+     */
+    INVALID_FEC_ORDER,
+
+    /**
+     * Any other session parameter is invalid, e.g. a flag with a value.
+     */
+    INVALID_SESSION_PARAM,
+
+    /**
+     * The attribute was rejected by a registered session parameter whose
+     * parser returned <tt>null</tt>.
+     */
+    REJECTED
+}
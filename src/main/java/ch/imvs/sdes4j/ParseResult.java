@@ -0,0 +1,115 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+/**
+ * The outcome of a validating parse: either the parsed value, or the reason
+ * why the input was rejected and where. Failures do not create an exception.
+ * 
+ * @param <T> The type of the parsed value.
+ * @author Ingo Bauersachs
+ */
+public final class ParseResult<T> {
+    private final T value;
+    private final ParseError error;
+    private final int errorOffset;
+
+    private ParseResult(T value, ParseError error, int errorOffset) {
+        this.value = value;
+        this.error = error;
+        this.errorOffset = errorOffset;
+    }
+
+    /**
+     * Creates the result of a successful parse.
+     * 
+     * @param value The parsed value.
+     * @return The result holding the value.
+     */
+    public static <T> ParseResult<T> success(T value) {
+        return new ParseResult<T>(value, null, -1);
+    }
+
+    /**
+     * Creates the result of a rejected input.
+     * 
+     * @param error The reason of the rejection.
+     * @param offset The index in the parsed sequence where the invalid part
+     *            starts.
+     * @return The result holding the error.
+     */
+    public static <T> ParseResult<T> failure(ParseError error, int offset) {
+        if (error == null)
+            throw new IllegalArgumentException("error must not be null");
+        return new ParseResult<T>(null, error, offset);
+    }
+
+    /**
+     * Determines if the input was parsed successfully.
+     * 
+     * @return <code>true</code> if {@link #getValue()} holds the result.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Gets the parsed value.
+     * 
+     * @return The parsed value, or <code>null</code> if the input was
+     *         rejected.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the reason why the input was rejected.
+     * 
+     * @return The error, or <code>null</code> if the input was parsed
+     *         successfully.
+     */
+    public ParseError getError() {
+        return error;
+    }
+
+    /**
+     * Gets the index in the parsed sequence where the invalid part starts.
+     * 
+     * @return The offset of the error, or -1 if the input was parsed
+     *         successfully.
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+
+    /**
+     * Gets the parsed value, or throws if the input was rejected.
+     * 
+     * @return The parsed value.
+     * @throws IllegalArgumentException when the input was rejected.
+     */
+    public T getOrThrow() {
+        if (error != null)
+            throw new IllegalArgumentException(toString());
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        if (error == null)
+            return String.valueOf(value);
+        return error + " at offset " + errorOffset;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+/**
+ * Cursor helpers for parsing the ABNF of crypto attributes. All methods work
+ * on a range <tt>[start, end)</tt> of a {@link CharSequence} and neither
+ * allocate nor throw on malformed input.
+ * <p>
+ * This class is used by the grammar implementations and is not meant to be
+ * used by applications.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class ParseUtils {
+    private ParseUtils() {
+    }
+
+    /**
+     * Determines if a character is a whitespace as matched by the regular
+     * expression <tt>\s</tt>.
+     * 
+     * @param c The character to check.
+     * @return <code>true</code> if the character separates tokens.
+     */
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    /**
+     * Skips over whitespace.
+     * 
+     * @param s The sequence to scan.
+     * @param pos The position where to start scanning.
+     * @param end The exclusive end of the range to scan.
+     * @return The position of the first non-whitespace character, or
+     *         <code>end</code> if there is none.
+     */
+    public static int skipWhitespace(CharSequence s, int pos, int end) {
+        while (pos < end && isWhitespace(s.charAt(pos)))
+            pos++;
+        return pos;
+    }
+
+    /**
+     * Finds the end of a token that is delimited by whitespace.
+     * 
+     * @param s The sequence to scan.
+     * @param pos The position of the first character of the token.
+     * @param end The exclusive end of the range to scan.
+     * @return The position of the first whitespace after the token, or
+     *         <code>end</code> if there is none.
+     */
+    public static int tokenEnd(CharSequence s, int pos, int end) {
+        while (pos < end && !isWhitespace(s.charAt(pos)))
+            pos++;
+        return pos;
+    }
+
+    /**
+     * Finds the first occurrence of a character in a range.
+     * 
+     * @param s The sequence to scan.
+     * @param c The character to search.
+     * @param pos The position where to start searching.
+     * @param end The exclusive end of the range to search.
+     * @return The position of the character, or -1 if it was not found.
+     */
+    public static int indexOf(CharSequence s, char c, int pos, int end) {
+        for (; pos < end; pos++) {
+            if (s.charAt(pos) == c)
+                return pos;
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the occurrences of a character in a range.
+     * 
+     * @param s The sequence to scan.
+     * @param c The character to count.
+     * @param start The inclusive start of the range.
+     * @param end The exclusive end of the range.
+     * @return The number of times the character is present in the range.
+     */
+    public static int count(CharSequence s, char c, int start, int end) {
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c)
+                n++;
+        }
+        return n;
+    }
+
+    /**
+     * Tests if a range starts with the specified prefix.
+     * 
+     * @param s The sequence to test.
+     * @param start The inclusive start of the range.
+     * @param end The exclusive end of the range.
+     * @param prefix The expected prefix.
+     * @return <code>true</code> if the range starts with the prefix.
+     */
+    public static boolean startsWith(CharSequence s, int start, int end, String prefix) {
+        int length = prefix.length();
+        if (end - start < length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(start + i) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests if a range contains exactly the specified string.
+     * 
+     * @param s The sequence to test.
+     * @param start The inclusive start of the range.
+     * @param end The exclusive end of the range.
+     * @param value The expected content of the range.
+     * @return <code>true</code> if the range is equal to the string.
+     */
+    public static boolean regionEquals(CharSequence s, int start, int end, String value) {
+        return end - start == value.length() && startsWith(s, start, end, value);
+    }
+
+    /**
+     * Parses a non-negative decimal number without sign.
+     * 
+     * @param s The sequence containing the number.
+     * @param start The inclusive start of the digits.
+     * @param end The exclusive end of the digits.
+     * @param max The largest acceptable value.
+     * @return The parsed number, or -1 if the range is empty, contains
+     *         anything else than digits or the number is larger than
+     *         <code>max</code>.
+     */
+    public static long parseDecimal(CharSequence s, int start, int end, long max) {
+        if (start >= end)
+            return -1;
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            int digit = c - '0';
+            if (digit > max || value > (max - digit) / 10)
+                return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a non-negative decimal number of arbitrary size into an unsigned
+     * big-endian byte array of a fixed length.
+     * 
+     * @param s The sequence containing the number.
+     * @param start The inclusive start of the digits.
+     * @param end The exclusive end of the digits.
+     * @param dst The array that receives the number.
+     * @param offset The index in <tt>dst</tt> of the most significant byte.
+     * @param length The number of bytes available for the number.
+     * @return <code>false</code> if the range is empty, contains anything
+     *         else than digits or the number does not fit into
+     *         <tt>length</tt> bytes.
+     */
+    public static boolean parseDecimal(CharSequence s, int start, int end, byte[] dst, int offset, int length) {
+        if (start >= end)
+            return false;
+
+        int last = offset + length - 1;
+        for (int i = offset; i <= last; i++)
+            dst[i] = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+            int carry = c - '0';
+            for (int j = last; j >= offset; j--) {
+                int v = (dst[j] & 0xff) * 10 + carry;
+                dst[j] = (byte) v;
+                carry = v >>> 8;
+            }
+            if (carry != 0)
+                return false;
+        }
+        return true;
+    }
+}
@@ -29,6 +29,20 @@ public interface SDesFactory {
      */
     CryptoSuite createCryptoSuite(String suite);
 
+    /**
+     * Creates a crypto suite instance from a range of a character sequence.
+     * The default implementation copies the range and delegates to
+     * {@link #createCryptoSuite(String)}.
+     * 
+     * @param s The sequence containing the suite name.
+     * @param start The inclusive start of the suite name.
+     * @param end The exclusive end of the suite name.
+     * @return A crypto suite instance based on the supplied suite name.
+     */
+    default CryptoSuite createCryptoSuite(CharSequence s, int start, int end) {
+        return createCryptoSuite(s.subSequence(start, end).toString());
+    }
+
     /**
      * Creates a key parameter instance for the grammar implementing this interface.
      * 
@@ -37,6 +51,20 @@ public interface SDesFactory {
      */
     KeyParam createKeyParam(String keyParam);
 
+    /**
+     * Creates a key parameter instance from a range of a character sequence.
+     * The default implementation copies the range and delegates to
+     * {@link #createKeyParam(String)}.
+     * 
+     * @param s The sequence containing the key parameter field.
+     * @param start The inclusive start of the key parameter.
+     * @param end The exclusive end of the key parameter.
+     * @return The parsed key parameter.
+     */
+    default KeyParam createKeyParam(CharSequence s, int start, int end) {
+        return createKeyParam(s.subSequence(start, end).toString());
+    }
+
     /**
      * Utility method to create a typed array of <code>KeyParameter</code>s.
      * 
@@ -53,6 +81,20 @@ public interface SDesFactory {
      */
     SessionParam createSessionParam(String sessionParam);
 
+    /**
+     * Creates a session parameter instance from a range of a character
+     * sequence. The default implementation copies the range and delegates to
+     * {@link #createSessionParam(String)}.
+     * 
+     * @param s The sequence containing the session parameter.
+     * @param start The inclusive start of the session parameter.
+     * @param end The exclusive end of the session parameter.
+     * @return The parsed session parameter.
+     */
+    default SessionParam createSessionParam(CharSequence s, int start, int end) {
+        return createSessionParam(s.subSequence(start, end).toString());
+    }
+
     /**
      * Utility method to create a typed array of <code>SessionParam</code>s.
      * 
@@ -0,0 +1,269 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental scanner for the <tt>a=crypto</tt> lines of a complete SDP
+ * body. The body is walked once, line by line, and the crypto attributes are
+ * grouped by the media description (<tt>m=</tt> line) they belong to.
+ * <p>
+ * Attributes are only parsed when {@link #getCryptoAttribute()} is called, so
+ * a consumer that stops at the first acceptable line never pays for parsing
+ * the remaining ones. Typical use:
+ * 
+ * <pre>
+ * SdpScanner scanner = new SdpScanner(sdp, SrtpSDesFactory.getInstance());
+ * while (scanner.nextMedia()) {
+ *     while (scanner.nextCrypto()) {
+ *         SrtpCryptoAttribute a = (SrtpCryptoAttribute) scanner.getCryptoAttribute();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * Instances are not thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class SdpScanner {
+    /**
+     * Callback for {@link SdpScanner#scan(Handler)}.
+     */
+    public interface Handler {
+        /**
+         * Called for each <tt>a=crypto</tt> line of a media description.
+         * 
+         * @param scanner The scanner positioned on the crypto line. Use
+         *            {@link SdpScanner#getCryptoAttribute()} to parse it.
+         * @return <code>true</code> to continue scanning, <code>false</code>
+         *         to stop.
+         */
+        boolean onCrypto(SdpScanner scanner);
+    }
+
+    private static final String MEDIA = "m=";
+    private static final String CRYPTO = "a=crypto:";
+
+    private final CharSequence sdp;
+    private final int end;
+    private final SDesFactory f;
+
+    private int pos;
+    private int mediaIndex = -1;
+    private int mediaStart;
+    private int mediaEnd;
+    private int cryptoStart = -1;
+    private int cryptoEnd;
+    private CryptoAttribute crypto;
+
+    /**
+     * Creates a scanner for an SDP body.
+     * 
+     * @param sdp The complete SDP body.
+     * @param f Factory that creates the crypto attributes.
+     */
+    public SdpScanner(CharSequence sdp, SDesFactory f) {
+        this(sdp, 0, sdp.length(), f);
+    }
+
+    /**
+     * Creates a scanner for an SDP body that is part of a character sequence.
+     * 
+     * @param sdp The sequence containing the SDP body.
+     * @param start The inclusive start of the SDP body.
+     * @param end The exclusive end of the SDP body.
+     * @param f Factory that creates the crypto attributes.
+     */
+    public SdpScanner(CharSequence sdp, int start, int end, SDesFactory f) {
+        this.sdp = sdp;
+        this.pos = start;
+        this.end = end;
+        this.f = f;
+    }
+
+    /**
+     * Creates a scanner for the US-ASCII encoded SDP body between the position
+     * and the limit of a buffer. The buffer is scanned in place; its position
+     * and limit are not changed.
+     * 
+     * @param sdp The buffer containing the SDP body.
+     * @param f Factory that creates the crypto attributes.
+     */
+    public SdpScanner(ByteBuffer sdp, SDesFactory f) {
+        this(new AsciiSequence(sdp, sdp.position(), sdp.remaining()), f);
+    }
+
+    /**
+     * Advances to the next media description. Crypto lines of the current
+     * media description that were not visited are skipped.
+     * 
+     * @return <code>true</code> if a media description was found,
+     *         <code>false</code> at the end of the SDP body.
+     */
+    public boolean nextMedia() {
+        resetCrypto();
+        while (pos < end) {
+            int lineEnd = lineEnd(pos);
+            int next = nextLine(lineEnd);
+            if (ParseUtils.startsWith(sdp, pos, lineEnd, MEDIA)) {
+                mediaIndex++;
+                mediaStart = pos + MEDIA.length();
+                mediaEnd = lineEnd;
+                pos = next;
+                return true;
+            }
+            pos = next;
+        }
+        return false;
+    }
+
+    /**
+     * Advances to the next <tt>a=crypto</tt> line of the current media
+     * description. Before the first call to {@link #nextMedia()}, this visits
+     * the session level lines.
+     * 
+     * @return <code>true</code> if a crypto line was found,
+     *         <code>false</code> if the current media description has no
+     *         more crypto lines.
+     */
+    public boolean nextCrypto() {
+        resetCrypto();
+        while (pos < end) {
+            int lineEnd = lineEnd(pos);
+            if (ParseUtils.startsWith(sdp, pos, lineEnd, MEDIA))
+                return false;
+
+            int next = nextLine(lineEnd);
+            if (ParseUtils.startsWith(sdp, pos, lineEnd, CRYPTO)) {
+                cryptoStart = pos + CRYPTO.length();
+                cryptoEnd = lineEnd;
+                pos = next;
+                return true;
+            }
+            pos = next;
+        }
+        return false;
+    }
+
+    /**
+     * Visits all crypto lines of all media descriptions until the handler
+     * requests to stop.
+     * 
+     * @param handler The callback that is invoked for each crypto line.
+     * @return <code>false</code> if the handler stopped the scan,
+     *         <code>true</code> otherwise.
+     */
+    public boolean scan(Handler handler) {
+        while (nextMedia()) {
+            while (nextCrypto()) {
+                if (!handler.onCrypto(this))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the zero-based index of the current media description.
+     * 
+     * @return The index of the current media description, or -1 if the
+     *         scanner is still at the session level.
+     */
+    public int getMediaIndex() {
+        return mediaIndex;
+    }
+
+    /**
+     * Gets the value of the current <tt>m=</tt> line, e.g.
+     * <tt>audio 49170 RTP/SAVP 0</tt>.
+     * 
+     * @return The media description, or <code>null</code> if the scanner is
+     *         still at the session level.
+     */
+    public CharSequence getMedia() {
+        if (mediaIndex < 0)
+            return null;
+        return sdp.subSequence(mediaStart, mediaEnd);
+    }
+
+    /**
+     * Gets the SDP body that is scanned.
+     * 
+     * @return The sequence passed to the constructor.
+     */
+    public CharSequence getSdp() {
+        return sdp;
+    }
+
+    /**
+     * Gets the start of the value of the current crypto line in the sequence
+     * returned by {@link #getSdp()}.
+     * 
+     * @return The inclusive start of the attribute value.
+     */
+    public int getCryptoStart() {
+        checkCrypto();
+        return cryptoStart;
+    }
+
+    /**
+     * Gets the end of the value of the current crypto line in the sequence
+     * returned by {@link #getSdp()}.
+     * 
+     * @return The exclusive end of the attribute value.
+     */
+    public int getCryptoEnd() {
+        checkCrypto();
+        return cryptoEnd;
+    }
+
+    /**
+     * Parses the current crypto line. The line is parsed at most once.
+     * 
+     * @return The parsed crypto attribute.
+     */
+    public CryptoAttribute getCryptoAttribute() {
+        checkCrypto();
+        if (crypto == null)
+            crypto = CryptoAttribute.parse(sdp, cryptoStart, cryptoEnd, f);
+        return crypto;
+    }
+
+    private void checkCrypto() {
+        if (cryptoStart < 0)
+            throw new IllegalStateException("Not positioned on a crypto line");
+    }
+
+    private void resetCrypto() {
+        cryptoStart = -1;
+        crypto = null;
+    }
+
+    private int lineEnd(int start) {
+        int lineEnd = ParseUtils.indexOf(sdp, '\n', start, end);
+        if (lineEnd < 0)
+            lineEnd = end;
+        if (lineEnd > start && sdp.charAt(lineEnd - 1) == '\r')
+            lineEnd--;
+        return lineEnd;
+    }
+
+    private int nextLine(int lineEnd) {
+        if (lineEnd < end && sdp.charAt(lineEnd) == '\r')
+            lineEnd++;
+        return lineEnd < end ? lineEnd + 1 : end;
+    }
+}
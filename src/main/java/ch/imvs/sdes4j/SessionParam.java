@@ -13,8 +13,15 @@
  */
 package ch.imvs.sdes4j;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * Interface for Session parameters that are specific to a given transport.
+ * <p>
+ * Implementations must override {@link Object#equals(Object)} and
+ * {@link Object#hashCode()} to compare the session parameter by value, as
+ * {@link CryptoAttribute#equals(Object)} relies on it.
  * 
  * @author Ingo Bauersachs
  */
@@ -26,4 +33,34 @@ public interface SessionParam {
      * @return Textual representation of the session parameter.
      */
     String encode();
+
+    /**
+     * Writes the same text as {@link #encode()} to an appendable. The default
+     * implementation appends the result of {@link #encode()}.
+     * 
+     * @param out The destination of the encoded session parameter.
+     * @throws IOException when the destination fails.
+     */
+    default void encodeTo(Appendable out) throws IOException {
+        out.append(encode());
+    }
+
+    /**
+     * Writes the US-ASCII encoded text of {@link #encode()} to the current
+     * position of a buffer. The default implementation passes the buffer to
+     * {@link #encodeTo(Appendable)}.
+     * 
+     * @param out The destination of the encoded session parameter.
+     * @throws java.nio.BufferOverflowException when the buffer has not
+     *             enough space.
+     */
+    default void encodeTo(ByteBuffer out) {
+        try {
+            encodeTo(new AsciiAppendable(out));
+        }
+        catch (IOException e) {
+            // AsciiAppendable does not throw
+            throw new IllegalStateException(e);
+        }
+    }
 }
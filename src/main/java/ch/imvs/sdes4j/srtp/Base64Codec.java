@@ -0,0 +1,309 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Table driven Base64 (RFC 4648) codec for the inline key material. Decodes
+ * directly from any {@link CharSequence}, including views on byte buffers.
+ * 
+ * @author Ingo Bauersachs
+ */
+final class Base64Codec {
+    private static final char[] ENCODE_TABLE =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < ENCODE_TABLE.length; i++)
+            DECODE_TABLE[ENCODE_TABLE[i]] = (byte) i;
+    }
+
+    private Base64Codec() {
+    }
+
+    /**
+     * Decodes a range of Base64 characters. Padding is optional.
+     * 
+     * @param s The sequence containing the encoded data.
+     * @param start The inclusive start of the encoded data.
+     * @param end The exclusive end of the encoded data.
+     * @return The decoded bytes.
+     * @throws IllegalArgumentException when the range contains characters
+     *             outside of the Base64 alphabet or has an invalid length.
+     */
+    static byte[] decode(CharSequence s, int start, int end) {
+        byte[] result = new byte[lengthOf(s, start, end)];
+        decode(s, start, end, result, 0);
+        return result;
+    }
+
+    /**
+     * Decodes a range of Base64 characters into a caller provided array.
+     * Padding is optional.
+     * 
+     * @param s The sequence containing the encoded data.
+     * @param start The inclusive start of the encoded data.
+     * @param end The exclusive end of the encoded data.
+     * @param dst The array that receives the decoded bytes.
+     * @param offset The index in <tt>dst</tt> of the first decoded byte.
+     * @return The number of decoded bytes.
+     * @throws IllegalArgumentException when the range contains characters
+     *             outside of the Base64 alphabet, has an invalid length or
+     *             the decoded data does not fit into <tt>dst</tt>.
+     */
+    static int decode(CharSequence s, int start, int end, byte[] dst, int offset) {
+        int length = lengthOf(s, start, end);
+        if (offset < 0 || dst.length - offset < length)
+            throw new IllegalArgumentException("Destination too small");
+
+        // The inline keys of all SRTP suites (30, 38 and 46 bytes) are 10,
+        // 12 and 15 complete quads followed by at most one partial quad, so
+        // nearly all work is done here with one validity check per quad.
+        int pos = start;
+        int out = offset;
+        for (int quads = length / 3; quads > 0; quads--) {
+            int bits = sextet(s.charAt(pos)) << 18
+                | sextet(s.charAt(pos + 1)) << 12
+                | sextet(s.charAt(pos + 2)) << 6
+                | sextet(s.charAt(pos + 3));
+            if (bits < 0)
+                throw invalidCharacter();
+            dst[out++] = (byte) (bits >> 16);
+            dst[out++] = (byte) (bits >> 8);
+            dst[out++] = (byte) bits;
+            pos += 4;
+        }
+
+        switch (length % 3) {
+            case 1:
+                int one = sextet(s.charAt(pos)) << 6
+                    | sextet(s.charAt(pos + 1));
+                if (one < 0)
+                    throw invalidCharacter();
+                dst[out] = (byte) (one >> 4);
+                break;
+            case 2:
+                int two = sextet(s.charAt(pos)) << 12
+                    | sextet(s.charAt(pos + 1)) << 6
+                    | sextet(s.charAt(pos + 2));
+                if (two < 0)
+                    throw invalidCharacter();
+                dst[out++] = (byte) (two >> 10);
+                dst[out] = (byte) (two >> 2);
+                break;
+        }
+
+        return length;
+    }
+
+    /**
+     * Decodes a range of Base64 characters into a buffer, starting at its
+     * position. Padding is optional.
+     * 
+     * @param s The sequence containing the encoded data.
+     * @param start The inclusive start of the encoded data.
+     * @param end The exclusive end of the encoded data.
+     * @param dst The buffer that receives the decoded bytes. Its position is
+     *            advanced by the number of decoded bytes.
+     * @return The number of decoded bytes.
+     * @throws IllegalArgumentException when the range contains characters
+     *             outside of the Base64 alphabet, has an invalid length or
+     *             the decoded data does not fit into <tt>dst</tt>.
+     */
+    static int decode(CharSequence s, int start, int end, ByteBuffer dst) {
+        int length = lengthOf(s, start, end);
+        if (length > dst.remaining())
+            throw new IllegalArgumentException("Destination too small");
+
+        if (dst.hasArray()) {
+            decode(s, start, end, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + length);
+        }
+        else {
+            // write straight into the buffer; a temporary array would leave
+            // a copy of the key material on the heap
+            int pos = start;
+            for (int quads = length / 3; quads > 0; quads--) {
+                int bits = sextet(s.charAt(pos)) << 18
+                    | sextet(s.charAt(pos + 1)) << 12
+                    | sextet(s.charAt(pos + 2)) << 6
+                    | sextet(s.charAt(pos + 3));
+                if (bits < 0)
+                    throw invalidCharacter();
+                dst.put((byte) (bits >> 16));
+                dst.put((byte) (bits >> 8));
+                dst.put((byte) bits);
+                pos += 4;
+            }
+
+            switch (length % 3) {
+                case 1:
+                    int one = sextet(s.charAt(pos)) << 6
+                        | sextet(s.charAt(pos + 1));
+                    if (one < 0)
+                        throw invalidCharacter();
+                    dst.put((byte) (one >> 4));
+                    break;
+                case 2:
+                    int two = sextet(s.charAt(pos)) << 12
+                        | sextet(s.charAt(pos + 1)) << 6
+                        | sextet(s.charAt(pos + 2));
+                    if (two < 0)
+                        throw invalidCharacter();
+                    dst.put((byte) (two >> 10));
+                    dst.put((byte) (two >> 2));
+                    break;
+            }
+        }
+        return length;
+    }
+
+    private static int lengthOf(CharSequence s, int start, int end) {
+        // strip up to two padding characters
+        if (end > start && s.charAt(end - 1) == '=')
+            end--;
+        if (end > start && s.charAt(end - 1) == '=')
+            end--;
+
+        int chars = end - start;
+        if (chars % 4 == 1)
+            throw new IllegalArgumentException("Invalid Base64 length");
+        return chars * 3 / 4;
+    }
+
+    private static IllegalArgumentException invalidCharacter() {
+        return new IllegalArgumentException("Invalid Base64 character");
+    }
+
+    /**
+     * Validates a range of Base64 characters and calculates the length of the
+     * decoded data without decoding it.
+     * 
+     * @param s The sequence containing the encoded data.
+     * @param start The inclusive start of the encoded data.
+     * @param end The exclusive end of the encoded data.
+     * @return The number of decoded bytes, or -1 if the range is not valid
+     *         Base64.
+     */
+    static int decodedLength(CharSequence s, int start, int end) {
+        if (end > start && s.charAt(end - 1) == '=')
+            end--;
+        if (end > start && s.charAt(end - 1) == '=')
+            end--;
+
+        int chars = end - start;
+        if (chars % 4 == 1)
+            return -1;
+
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (sextet(c) < 0)
+                return -1;
+        }
+        return chars * 3 / 4;
+    }
+
+    /**
+     * Encodes data with padding and without line breaks.
+     * 
+     * @param out The destination of the Base64 characters.
+     * @param data The data to encode.
+     * @throws IOException when the destination fails.
+     */
+    static void encodeTo(Appendable out, byte[] data) throws IOException {
+        int pos = 0;
+        for (int triples = data.length / 3; triples > 0; triples--) {
+            int bits = (data[pos] & 0xff) << 16
+                | (data[pos + 1] & 0xff) << 8
+                | (data[pos + 2] & 0xff);
+            out.append(ENCODE_TABLE[bits >>> 18]);
+            out.append(ENCODE_TABLE[(bits >>> 12) & 0x3f]);
+            out.append(ENCODE_TABLE[(bits >>> 6) & 0x3f]);
+            out.append(ENCODE_TABLE[bits & 0x3f]);
+            pos += 3;
+        }
+
+        switch (data.length - pos) {
+            case 1:
+                int one = data[pos] & 0xff;
+                out.append(ENCODE_TABLE[one >>> 2]);
+                out.append(ENCODE_TABLE[(one << 4) & 0x3f]);
+                out.append("==");
+                break;
+            case 2:
+                int two = (data[pos] & 0xff) << 8 | (data[pos + 1] & 0xff);
+                out.append(ENCODE_TABLE[two >>> 10]);
+                out.append(ENCODE_TABLE[(two >>> 4) & 0x3f]);
+                out.append(ENCODE_TABLE[(two << 2) & 0x3f]);
+                out.append('=');
+                break;
+        }
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of a buffer with
+     * padding and without line breaks. The position of the buffer is not
+     * changed.
+     * 
+     * @param out The destination of the Base64 characters.
+     * @param data The data to encode.
+     * @throws IOException when the destination fails.
+     */
+    static void encodeTo(Appendable out, ByteBuffer data) throws IOException {
+        int pos = data.position();
+        int end = data.limit();
+        for (int triples = (end - pos) / 3; triples > 0; triples--) {
+            int bits = (data.get(pos) & 0xff) << 16
+                | (data.get(pos + 1) & 0xff) << 8
+                | (data.get(pos + 2) & 0xff);
+            out.append(ENCODE_TABLE[bits >>> 18]);
+            out.append(ENCODE_TABLE[(bits >>> 12) & 0x3f]);
+            out.append(ENCODE_TABLE[(bits >>> 6) & 0x3f]);
+            out.append(ENCODE_TABLE[bits & 0x3f]);
+            pos += 3;
+        }
+
+        switch (end - pos) {
+            case 1:
+                int one = data.get(pos) & 0xff;
+                out.append(ENCODE_TABLE[one >>> 2]);
+                out.append(ENCODE_TABLE[(one << 4) & 0x3f]);
+                out.append("==");
+                break;
+            case 2:
+                int two = (data.get(pos) & 0xff) << 8 | (data.get(pos + 1) & 0xff);
+                out.append(ENCODE_TABLE[two >>> 10]);
+                out.append(ENCODE_TABLE[(two >>> 4) & 0x3f]);
+                out.append(ENCODE_TABLE[(two << 2) & 0x3f]);
+                out.append('=');
+                break;
+        }
+    }
+
+    /**
+     * Looks up the 6 bit value of a Base64 character.
+     * 
+     * @return The value, or a negative number for characters outside of the
+     *         alphabet. ORing several results therefore stays negative if any
+     *         of the characters was invalid.
+     */
+    private static int sextet(char c) {
+        return c < 128 ? DECODE_TABLE[c] : -1;
+    }
+}
@@ -13,6 +13,11 @@
  */
 package ch.imvs.sdes4j.srtp;
 
+import java.io.IOException;
+import java.util.Arrays;
+
+import ch.imvs.sdes4j.ParseUtils;
+
 /**
  * FEC_KEY signals the use of separate master key(s) for a Forward Error
  * Correction (FEC) stream.
@@ -20,7 +25,10 @@ package ch.imvs.sdes4j.srtp;
  * @author Ingo Bauersachs
  */
 public class FecKeySessionParam extends SrtpSessionParam {
+    static final String PREFIX = "FEC_KEY=";
+
     private SrtpKeyParam[] keyParams;
+    private boolean shared;
 
     /**
      * Creates a new instance of this class from known key parameters.
@@ -35,10 +43,47 @@ public class FecKeySessionParam extends SrtpSessionParam {
      * @param param The textual representation of the session parameter.
      */
     public FecKeySessionParam(String param) {
-        String[] params = param.substring("FEC_KEY=".length()).split(";");
-        this.keyParams = new SrtpKeyParam[params.length];
+        int pos = PREFIX.length();
+        this.keyParams = new SrtpKeyParam[ParseUtils.count(param, ';', pos, param.length()) + 1];
         for (int i = 0; i < this.keyParams.length; i++) {
-            this.keyParams[i] = createSrtpKeyParam(params[i]);
+            int paramEnd = param.indexOf(';', pos);
+            if (paramEnd < 0)
+                paramEnd = param.length();
+            this.keyParams[i] = createSrtpKeyParam(param.substring(pos, paramEnd));
+            pos = paramEnd + 1;
+        }
+    }
+
+    /**
+     * Creates a FEC key parameter with copies of the key parameters of this
+     * one, see {@link SrtpKeyParam#copy()}.
+     * 
+     * @return The copy, whose keys must be released on their own.
+     */
+    FecKeySessionParam copy() {
+        SrtpKeyParam[] copy = new SrtpKeyParam[keyParams.length];
+        try {
+            for (int i = 0; i < copy.length; i++)
+                copy[i] = keyParams[i].copy();
+        }
+        catch (RuntimeException e) {
+            release(copy);
+            throw e;
+        }
+        return new FecKeySessionParam(copy);
+    }
+
+    /**
+     * Releases key parameters, see {@link SrtpKeyParam#release()}.
+     * 
+     * @param keyParams The key parameters, may contain <code>null</code>.
+     */
+    static void release(SrtpKeyParam[] keyParams) {
+        if (keyParams == null)
+            return;
+        for (SrtpKeyParam k : keyParams) {
+            if (k != null)
+                k.release();
         }
     }
 
@@ -54,16 +99,27 @@ public class FecKeySessionParam extends SrtpSessionParam {
 
     /**
      * Gets the key parameters of this session parameter.
-     * @return The key parameters of this session parameter.
+     * @return The key parameters of this session parameter, a copy of the
+     *         array if the parameter is shared by a {@link SrtpParseCache}.
      */
     public SrtpKeyParam[] getKeyParams() {
-        return keyParams;
+        return shared ? keyParams.clone() : keyParams;
+    }
+
+    /**
+     * Marks the key parameters as shared, see
+     * {@link SrtpCryptoAttribute#share()}.
+     */
+    void share() {
+        for (SrtpKeyParam k : keyParams)
+            k.share();
+        shared = true;
     }
 
     @Override
     public String encode() {
         StringBuilder sb = new StringBuilder();
-        sb.append("FEC_KEY=");
+        sb.append(PREFIX);
         for (int i = 0; i < keyParams.length; i++) {
             sb.append(keyParams[i].encode());
             if (i < keyParams.length - 1)
@@ -71,4 +127,25 @@ public class FecKeySessionParam extends SrtpSessionParam {
         }
         return sb.toString();
     }
+
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(PREFIX);
+        for (int i = 0; i < keyParams.length; i++) {
+            if (i > 0)
+                out.append(';');
+            keyParams[i].encodeTo(out);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FecKeySessionParam
+            && Arrays.equals(keyParams, ((FecKeySessionParam) obj).keyParams);
+    }
+
+    @Override
+    public int hashCode() {
+        return PREFIX.hashCode() + Arrays.hashCode(keyParams);
+    }
 }
@@ -13,6 +13,10 @@
  */
 package ch.imvs.sdes4j.srtp;
 
+import java.io.IOException;
+
+import ch.imvs.sdes4j.ParseUtils;
+
 /**
  * FEC_ORDER signals the use of forward error correction for the RTP packets
  * [RFC2733]. The forward error correction values for "order" are FEC_SRTP or
@@ -37,6 +41,8 @@ public class FecOrderSessionParam extends SrtpSessionParam {
      */
     public final static int SRTP_FEC = 2;
 
+    static final String PREFIX = "FEC_ORDER=";
+
     private int mode;
 
     /**
@@ -57,13 +63,39 @@ public class FecOrderSessionParam extends SrtpSessionParam {
      * @param param The textual representation of the session parameter.
      */
     public FecOrderSessionParam(String param) {
-        param = param.substring("FEC_ORDER=".length());
-        if (param.equals("FEC_SRTP"))
-            mode = FEC_SRTP;
-        else if (param.equals("SRTP_FEC"))
-            mode = SRTP_FEC;
-        else
+        mode = parse(param, PREFIX.length(), param.length());
+    }
+
+    /**
+     * Parses the value of the FEC order parameter.
+     * 
+     * @param s The sequence containing the value.
+     * @param start The inclusive start of the value.
+     * @param end The exclusive end of the value.
+     * @return {@value #FEC_SRTP} or {@value #SRTP_FEC}
+     */
+    static int parse(CharSequence s, int start, int end) {
+        int mode = tryParse(s, start, end);
+        if (mode < 0)
             throw new IllegalArgumentException("unknown value");
+        return mode;
+    }
+
+    /**
+     * Parses the forward error correction mode without throwing.
+     * 
+     * @param s The sequence containing the value.
+     * @param start The inclusive start of the value.
+     * @param end The exclusive end of the value.
+     * @return The parsed mode, or -1 if the value is unknown.
+     */
+    static int tryParse(CharSequence s, int start, int end) {
+        if (ParseUtils.regionEquals(s, start, end, "FEC_SRTP"))
+            return FEC_SRTP;
+        else if (ParseUtils.regionEquals(s, start, end, "SRTP_FEC"))
+            return SRTP_FEC;
+        else
+            return -1;
     }
 
     /**
@@ -86,4 +118,19 @@ public class FecOrderSessionParam extends SrtpSessionParam {
         throw new IllegalArgumentException("invalid mode");
     }
 
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(PREFIX);
+        out.append(mode == FEC_SRTP ? "FEC_SRTP" : "SRTP_FEC");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FecOrderSessionParam && ((FecOrderSessionParam) obj).mode == mode;
+    }
+
+    @Override
+    public int hashCode() {
+        return PREFIX.hashCode() + mode;
+    }
 }
@@ -13,6 +13,11 @@
  */
 package ch.imvs.sdes4j.srtp;
 
+import java.io.IOException;
+
+import ch.imvs.sdes4j.EncodeUtils;
+import ch.imvs.sdes4j.ParseUtils;
+
 /**
  * KDR specifies the Key Derivation Rate, as described in Section 4.3.1 of
  * [RFC3711].
@@ -27,6 +32,8 @@ package ch.imvs.sdes4j.srtp;
  * @author Ingo Bauersachs
  */
 public class KdrSessionParam extends SrtpSessionParam {
+    static final String PREFIX = "KDR=";
+
     private int kdr;
 
     /**
@@ -46,9 +53,34 @@ public class KdrSessionParam extends SrtpSessionParam {
      * @param param The textual representation of the key derivation rate parameter.
      */
     public KdrSessionParam(String param) {
-        kdr = Integer.valueOf(param.substring("KDR=".length()));
-        if (kdr < 0 || kdr > 24)
+        kdr = parse(param, PREFIX.length(), param.length());
+    }
+
+    /**
+     * Parses the value of the key derivation rate parameter.
+     * 
+     * @param s The sequence containing the value.
+     * @param start The inclusive start of the value.
+     * @param end The exclusive end of the value.
+     * @return The parsed key derivation rate.
+     */
+    static int parse(CharSequence s, int start, int end) {
+        int kdr = tryParse(s, start, end);
+        if (kdr < 0)
             throw new IllegalArgumentException("kdr must be in range 0..24 inclusive");
+        return kdr;
+    }
+
+    /**
+     * Parses the value of the key derivation rate parameter without throwing.
+     * 
+     * @param s The sequence containing the value.
+     * @param start The inclusive start of the value.
+     * @param end The exclusive end of the value.
+     * @return The parsed key derivation rate, or -1 if the value is invalid.
+     */
+    static int tryParse(CharSequence s, int start, int end) {
+        return (int) ParseUtils.parseDecimal(s, start, end, 24);
     }
 
     /**
@@ -71,6 +103,22 @@ public class KdrSessionParam extends SrtpSessionParam {
 
     @Override
     public String encode() {
-        return "KDR=" + String.valueOf(kdr);
+        return PREFIX + String.valueOf(kdr);
+    }
+
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(PREFIX);
+        EncodeUtils.appendDecimal(out, kdr);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof KdrSessionParam && ((KdrSessionParam) obj).kdr == kdr;
+    }
+
+    @Override
+    public int hashCode() {
+        return PREFIX.hashCode() + kdr;
     }
 }
@@ -0,0 +1,266 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces the lifetime of master keys. The effective limit of a master key
+ * is the lifetime of its key parameter, capped by the SRTP and SRTCP
+ * lifetimes of the crypto suite; SRTP and SRTCP packets are counted
+ * separately.
+ * <p>
+ * Counting is lock-free, so the {@link Usage} of a master key can be shared
+ * by several media threads. When the number of remaining packets drops to
+ * the low watermark, the {@link Listener} is notified exactly once, leaving
+ * time to negotiate a new crypto attribute. Typical use:
+ * 
+ * <pre>
+ * KeyLifetimeTracker tracker = new KeyLifetimeTracker(1 &lt;&lt; 20, listener);
+ * KeyLifetimeTracker.Usage usage = tracker.track(attribute)[0];
+ * ...
+ * if (!usage.countSrtp())
+ *     // drop the packet, the master key must not be used anymore
+ * </pre>
+ * 
+ * Instances are thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class KeyLifetimeTracker {
+    /**
+     * Callback for the lifetime events of a master key. The methods are
+     * called on the thread that counted the packet and must not block.
+     */
+    public interface Listener {
+        /**
+         * Called once when the remaining packets of a master key reached the
+         * low watermark.
+         * 
+         * @param usage The usage of the master key.
+         * @param srtcp <code>true</code> if the SRTCP limit was reached,
+         *            <code>false</code> for the SRTP limit.
+         */
+        void onLowWatermark(Usage usage, boolean srtcp);
+
+        /**
+         * Called once when a master key was used for more packets than its
+         * lifetime permits.
+         * 
+         * @param usage The usage of the master key.
+         * @param srtcp <code>true</code> if the SRTCP limit was exceeded,
+         *            <code>false</code> for the SRTP limit.
+         */
+        void onExhausted(Usage usage, boolean srtcp);
+    }
+
+    private final long lowWatermark;
+    private final Listener listener;
+
+    /**
+     * Creates a tracker.
+     * 
+     * @param lowWatermark The number of remaining packets at which the
+     *            listener is notified.
+     * @param listener The listener for lifetime events, or <code>null</code>.
+     */
+    public KeyLifetimeTracker(long lowWatermark, Listener listener) {
+        if (lowWatermark < 0)
+            throw new IllegalArgumentException("low watermark must not be negative");
+        this.lowWatermark = lowWatermark;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts tracking all master keys of a crypto attribute.
+     * 
+     * @param attribute The negotiated crypto attribute.
+     * @return One usage per key parameter, in the same order.
+     */
+    public Usage[] track(SrtpCryptoAttribute attribute) {
+        SrtpKeyParam[] keys = attribute.getKeyParams();
+        Usage[] usages = new Usage[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            usages[i] = track(keys[i], attribute.getCryptoSuite());
+        return usages;
+    }
+
+    /**
+     * Starts tracking a master key.
+     * 
+     * @param key The master key.
+     * @param suite The crypto suite the key is used with.
+     * @return The usage of the key.
+     */
+    public Usage track(SrtpKeyParam key, SrtpCryptoSuite suite) {
+        return new Usage(key, limit(key.getLifetimeLong(), suite.getSrtpLifetime()),
+            limit(key.getLifetimeLong(), suite.getSrtcpLifetime()));
+    }
+
+    private static long limit(long keyLifetime, long suiteLifetime) {
+        if (keyLifetime <= 0)
+            return suiteLifetime;
+        return Math.min(keyLifetime, suiteLifetime);
+    }
+
+    /**
+     * The packet counters of a master key.
+     */
+    public final class Usage {
+        private final SrtpKeyParam key;
+        private final long srtpLimit;
+        private final long srtcpLimit;
+        private final long srtpMark;
+        private final long srtcpMark;
+        private final AtomicLong srtp = new AtomicLong();
+        private final AtomicLong srtcp = new AtomicLong();
+
+        private Usage(SrtpKeyParam key, long srtpLimit, long srtcpLimit) {
+            this.key = key;
+            this.srtpLimit = srtpLimit;
+            this.srtcpLimit = srtcpLimit;
+            this.srtpMark = Math.max(1, srtpLimit - lowWatermark);
+            this.srtcpMark = Math.max(1, srtcpLimit - lowWatermark);
+        }
+
+        /**
+         * Gets the tracked master key.
+         * 
+         * @return The master key.
+         */
+        public SrtpKeyParam getKeyParam() {
+            return key;
+        }
+
+        /**
+         * Gets the effective number of SRTP packets this key may protect.
+         * 
+         * @return The SRTP limit.
+         */
+        public long getSrtpLimit() {
+            return srtpLimit;
+        }
+
+        /**
+         * Gets the effective number of SRTCP packets this key may protect.
+         * 
+         * @return The SRTCP limit.
+         */
+        public long getSrtcpLimit() {
+            return srtcpLimit;
+        }
+
+        /**
+         * Gets the number of counted SRTP packets.
+         * 
+         * @return The SRTP packet count.
+         */
+        public long getSrtpCount() {
+            return srtp.get();
+        }
+
+        /**
+         * Gets the number of counted SRTCP packets.
+         * 
+         * @return The SRTCP packet count.
+         */
+        public long getSrtcpCount() {
+            return srtcp.get();
+        }
+
+        /**
+         * Gets the number of SRTP packets that may still be protected.
+         * 
+         * @return The remaining SRTP packets, 0 if the key is exhausted.
+         */
+        public long getRemainingSrtp() {
+            return Math.max(0, srtpLimit - srtp.get());
+        }
+
+        /**
+         * Gets the number of SRTCP packets that may still be protected.
+         * 
+         * @return The remaining SRTCP packets, 0 if the key is exhausted.
+         */
+        public long getRemainingSrtcp() {
+            return Math.max(0, srtcpLimit - srtcp.get());
+        }
+
+        /**
+         * Determines if the key reached its SRTP or SRTCP limit.
+         * 
+         * @return <code>true</code> if no more packets may be protected
+         *         with this key.
+         */
+        public boolean isExhausted() {
+            return srtp.get() >= srtpLimit || srtcp.get() >= srtcpLimit;
+        }
+
+        /**
+         * Counts one SRTP packet.
+         * 
+         * @return <code>false</code> if the packet exceeds the lifetime and
+         *         must not be protected with this key.
+         */
+        public boolean countSrtp() {
+            return count(srtp, 1, srtpLimit, srtpMark, false);
+        }
+
+        /**
+         * Counts a number of SRTP packets.
+         * 
+         * @param packets The number of packets.
+         * @return <code>false</code> if the packets exceed the lifetime.
+         */
+        public boolean countSrtp(int packets) {
+            return count(srtp, packets, srtpLimit, srtpMark, false);
+        }
+
+        /**
+         * Counts one SRTCP packet.
+         * 
+         * @return <code>false</code> if the packet exceeds the lifetime and
+         *         must not be protected with this key.
+         */
+        public boolean countSrtcp() {
+            return count(srtcp, 1, srtcpLimit, srtcpMark, true);
+        }
+
+        /**
+         * Counts a number of SRTCP packets.
+         * 
+         * @param packets The number of packets.
+         * @return <code>false</code> if the packets exceed the lifetime.
+         */
+        public boolean countSrtcp(int packets) {
+            return count(srtcp, packets, srtcpLimit, srtcpMark, true);
+        }
+
+        private boolean count(AtomicLong counter, int packets, long limit, long mark, boolean rtcp) {
+            if (packets < 1)
+                throw new IllegalArgumentException("packets must be positive");
+
+            long after = counter.addAndGet(packets);
+            long before = after - packets;
+            // only the thread whose increment crosses a threshold notifies
+            if (listener != null && before < mark && after >= mark && mark <= limit)
+                listener.onLowWatermark(this, rtcp);
+            if (after <= limit)
+                return true;
+            if (listener != null && before <= limit)
+                listener.onExhausted(this, rtcp);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of off-heap memory for master keys and salts. The memory is
+ * allocated in slabs of direct buffers that are divided into fixed size
+ * slots; each {@link SecretKeyMaterial} occupies one slot until it is closed,
+ * when the slot is wiped and reused. Keys that live in the pool are never
+ * moved by the garbage collector and parsing or generating them does not
+ * create key copies on the heap.
+ * <p>
+ * Slabs are allocated on demand, up to the configured maximum. Key material
+ * never leaves the pool: when it is exhausted, or a key is larger than a
+ * slot, the allocation fails and the overflow is counted, see
+ * {@link #getOverflowCount()} and {@link #getOverflowBytes()}. Size the pool
+ * so that this does not happen in normal operation.
+ * <p>
+ * Use it with {@link SrtpSDesFactory#setKeyMaterialPool(KeyMaterialPool)}.
+ * Instances are thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class KeyMaterialPool {
+    /**
+     * The default slot size, which fits the largest inline key of the known
+     * suites (256 bit master key and 112 bit salt).
+     */
+    public final static int DEFAULT_SLOT_SIZE = 48;
+
+    /**
+     * The default number of slots per slab.
+     */
+    public final static int DEFAULT_SLAB_SLOTS = 1024;
+
+    private final int slotSize;
+    private final int slabSlots;
+    private final ByteBuffer[] slabs;
+    private final int[] free;
+
+    private int slabCount;
+    private int freeCount;
+    private int inUse;
+    private int peakInUse;
+    private long allocations;
+    private long overflows;
+    private long overflowBytes;
+
+    /**
+     * Creates a pool for at least the specified number of keys, with the
+     * default slot and slab sizes.
+     * 
+     * @param capacity The number of keys the pool can hold.
+     */
+    public KeyMaterialPool(int capacity) {
+        this(DEFAULT_SLOT_SIZE, Math.min(capacity, DEFAULT_SLAB_SLOTS),
+            (capacity + DEFAULT_SLAB_SLOTS - 1) / DEFAULT_SLAB_SLOTS);
+    }
+
+    /**
+     * Creates a pool.
+     * 
+     * @param slotSize The size of a slot, i.e. of the largest key, in bytes.
+     * @param slabSlots The number of slots of a slab.
+     * @param maxSlabs The maximum number of slabs.
+     */
+    public KeyMaterialPool(int slotSize, int slabSlots, int maxSlabs) {
+        if (slotSize < 1 || slabSlots < 1 || maxSlabs < 1)
+            throw new IllegalArgumentException("slot size, slab slots and max slabs must be positive");
+        if ((long) slotSize * slabSlots > Integer.MAX_VALUE || (long) slabSlots * maxSlabs > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("pool too large");
+
+        this.slotSize = slotSize;
+        this.slabSlots = slabSlots;
+        this.slabs = new ByteBuffer[maxSlabs];
+        this.free = new int[slabSlots * maxSlabs];
+    }
+
+    /**
+     * Copies key material into the pool. The caller should wipe its copy
+     * afterwards.
+     * 
+     * @param key The array containing the key material.
+     * @param offset The index in <tt>key</tt> of the first byte.
+     * @param length The number of bytes of the key material.
+     * @return The pooled key material.
+     * @throws IllegalArgumentException when the key is larger than a slot.
+     * @throws IllegalStateException when all slots are in use.
+     */
+    public SecretKeyMaterial allocate(byte[] key, int offset, int length) {
+        if (offset < 0 || length < 0 || key.length - offset < length)
+            throw new IllegalArgumentException("Invalid range");
+        SecretKeyMaterial m = allocate(length);
+        m.buffer().duplicate().put(key, offset, length);
+        return m;
+    }
+
+    /**
+     * Decodes Base64 key material directly into the pool.
+     * 
+     * @param s The sequence containing the encoded key.
+     * @param start The inclusive start of the encoded key.
+     * @param end The exclusive end of the encoded key.
+     * @return The pooled key material.
+     * @throws IllegalArgumentException when the key is not valid Base64 or
+     *             larger than a slot.
+     * @throws IllegalStateException when all slots are in use.
+     */
+    SecretKeyMaterial decode(CharSequence s, int start, int end) {
+        int length = Base64Codec.decodedLength(s, start, end);
+        if (length < 0)
+            throw new IllegalArgumentException("key is not valid Base64");
+
+        SecretKeyMaterial m = allocate(length);
+        Base64Codec.decode(s, start, end, m.buffer().duplicate());
+        return m;
+    }
+
+    /**
+     * Copies key material from a buffer into the pool.
+     * 
+     * @param key The key, from its position to its limit. The position is
+     *            not changed.
+     * @return The pooled key material.
+     * @throws IllegalArgumentException when the key is larger than a slot.
+     * @throws IllegalStateException when all slots are in use.
+     */
+    SecretKeyMaterial allocate(ByteBuffer key) {
+        SecretKeyMaterial m = allocate(key.remaining());
+        m.buffer().duplicate().put(key.duplicate());
+        return m;
+    }
+
+    private SecretKeyMaterial allocate(int length) {
+        int slot;
+        synchronized (this) {
+            allocations++;
+            if (length > slotSize) {
+                overflow(length);
+                throw new IllegalArgumentException("Key of " + length + " bytes does not fit into a slot of "
+                    + slotSize + " bytes");
+            }
+            if (freeCount == 0 && slabCount < slabs.length) {
+                slabs[slabCount] = ByteBuffer.allocateDirect(slotSize * slabSlots);
+                int first = slabCount * slabSlots;
+                for (int i = first + slabSlots - 1; i >= first; i--)
+                    free[freeCount++] = i;
+                slabCount++;
+            }
+            if (freeCount == 0) {
+                overflow(length);
+                throw new IllegalStateException("Key material pool exhausted");
+            }
+            slot = free[--freeCount];
+            if (++inUse > peakInUse)
+                peakInUse = inUse;
+        }
+
+        ByteBuffer buffer = slabs[slot / slabSlots].duplicate();
+        int pos = (slot % slabSlots) * slotSize;
+        buffer.limit(pos + length).position(pos);
+        return new SecretKeyMaterial(this, slot, buffer.slice());
+    }
+
+    private void overflow(int length) {
+        overflows++;
+        overflowBytes += length;
+    }
+
+    /**
+     * Wipes the memory of closed key material and returns its slot.
+     */
+    void release(int slot, ByteBuffer buffer) {
+        for (int i = buffer.capacity() - 1; i >= 0; i--)
+            buffer.put(i, (byte) 0);
+        synchronized (this) {
+            free[freeCount++] = slot;
+            inUse--;
+        }
+    }
+
+    /**
+     * Gets the size of a slot.
+     * 
+     * @return The largest key that fits into a slot, in bytes.
+     */
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Gets the number of slots of all slabs, allocated or not.
+     * 
+     * @return The maximum number of pooled keys.
+     */
+    public int getCapacity() {
+        return free.length;
+    }
+
+    /**
+     * Gets the number of allocated slabs.
+     * 
+     * @return The number of slabs.
+     */
+    public synchronized int getSlabCount() {
+        return slabCount;
+    }
+
+    /**
+     * Gets the off-heap memory reserved by the allocated slabs.
+     * 
+     * @return The size of all slabs, in bytes.
+     */
+    public synchronized long getReservedBytes() {
+        return (long) slabCount * slabSlots * slotSize;
+    }
+
+    /**
+     * Gets the number of slots that hold key material that was not closed.
+     * 
+     * @return The number of used slots.
+     */
+    public synchronized int getInUse() {
+        return inUse;
+    }
+
+    /**
+     * Gets the highest number of slots that were used at the same time.
+     * 
+     * @return The peak number of used slots.
+     */
+    public synchronized int getPeakInUse() {
+        return peakInUse;
+    }
+
+    /**
+     * Gets the number of allocations, including overflows.
+     * 
+     * @return The number of allocations since the pool was created.
+     */
+    public synchronized long getAllocationCount() {
+        return allocations;
+    }
+
+    /**
+     * Gets the number of allocations that failed because the pool was
+     * exhausted or the key was larger than a slot.
+     * 
+     * @return The number of overflows since the pool was created.
+     */
+    public synchronized long getOverflowCount() {
+        return overflows;
+    }
+
+    /**
+     * Gets the total size of the keys of the failed allocations, see
+     * {@link #getOverflowCount()}.
+     * 
+     * @return The number of bytes that did not fit into the pool since it
+     *         was created.
+     */
+    public synchronized long getOverflowBytes() {
+        return overflowBytes;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A reservoir of pre-generated key material (concatenated master key and
+ * salt), so that key generation on the call setup path does not wait for the
+ * random generator.
+ * <p>
+ * There is one bounded, lock-free ring per block size. A background thread
+ * keeps the rings filled; it is woken up when a ring drops below half of its
+ * capacity. Each block is wiped in the ring as soon as it was handed out.
+ * The thread only runs after {@link #start()}; until then, the rings are
+ * only filled by explicit calls to {@link #refill()}. Use it with
+ * {@link SrtpSDesFactory#setKeyReservoir(KeyReservoir)}, which starts the
+ * thread; when a ring is empty, the factory falls back to generating the key
+ * inline.
+ * <p>
+ * Instances are thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class KeyReservoir implements Closeable {
+    /**
+     * The sizes of master key and salt of the AES-128, AES-192 and AES-256
+     * suites, in bytes.
+     */
+    private static final int[] DEFAULT_BLOCK_SIZES = { 30, 38, 46 };
+
+    private static final long IDLE_REFILL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Random random;
+    private final Ring[] rings;
+    private final AtomicLong refills = new AtomicLong();
+    private final AtomicLong takes = new AtomicLong();
+    private final AtomicLong underflows = new AtomicLong();
+    private volatile Thread refiller;
+    private volatile boolean closed;
+
+    /**
+     * Creates a reservoir for the key sizes of all AES suites, filled from a
+     * {@link SecureRandomPool}.
+     * 
+     * @param capacity The number of blocks per key size.
+     */
+    public KeyReservoir(int capacity) {
+        this(new SecureRandomPool(), capacity, DEFAULT_BLOCK_SIZES);
+    }
+
+    /**
+     * Creates a reservoir for specific key sizes.
+     * 
+     * @param random The generator that fills the reservoir.
+     * @param capacity The number of blocks per key size, rounded up to the
+     *            next power of two of at least 2.
+     * @param blockSizes The sizes of the concatenated master key and salt, in
+     *            bytes.
+     */
+    public KeyReservoir(Random random, int capacity, int... blockSizes) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        if (blockSizes.length == 0)
+            throw new IllegalArgumentException("at least one block size is required");
+
+        this.random = random;
+        this.rings = new Ring[blockSizes.length];
+        // the sequence scheme of the rings needs at least two slots
+        int slots = Integer.highestOneBit(Math.max(capacity, 2));
+        if (slots < capacity)
+            slots <<= 1;
+        for (int i = 0; i < blockSizes.length; i++) {
+            if (blockSizes[i] < 1)
+                throw new IllegalArgumentException("block sizes must be positive");
+            rings[i] = new Ring(blockSizes[i], slots);
+        }
+    }
+
+    /**
+     * Starts the background thread that fills the reservoir. The thread is a
+     * daemon and stops when the reservoir is closed. Calling this method again
+     * while the thread runs has no effect.
+     * 
+     * @throws IllegalStateException when the reservoir is closed.
+     */
+    public synchronized void start() {
+        if (closed)
+            throw new IllegalStateException("The reservoir is closed");
+        if (refiller != null)
+            return;
+
+        Thread t = new Thread("sdes4j key reservoir") {
+            @Override
+            public void run() {
+                while (!closed) {
+                    refill();
+                    LockSupport.parkNanos(this, IDLE_REFILL_NANOS);
+                }
+            }
+        };
+        t.setDaemon(true);
+        refiller = t;
+        t.start();
+    }
+
+    /**
+     * Fills all rings of the reservoir on the calling thread. Normally done by
+     * the background thread.
+     */
+    public void refill() {
+        for (Ring ring : rings) {
+            byte[] block = new byte[ring.blockSize];
+            while (!closed) {
+                random.nextBytes(block);
+                if (!ring.offer(block))
+                    break;
+                refills.incrementAndGet();
+            }
+            Arrays.fill(block, (byte) 0);
+        }
+    }
+
+    /**
+     * Takes a block of key material. The block size is the length of the
+     * destination array.
+     * 
+     * @param dst The array that receives the key material.
+     * @return <code>true</code> if the array was filled, <code>false</code>
+     *         if the reservoir has no block of this size available. In that
+     *         case the array is not changed.
+     */
+    public boolean take(byte[] dst) {
+        Ring ring = ring(dst.length);
+        if (ring == null || closed || !ring.poll(dst)) {
+            underflows.incrementAndGet();
+            wakeRefiller();
+            return false;
+        }
+
+        takes.incrementAndGet();
+        if (ring.available() < ring.capacity() / 2)
+            wakeRefiller();
+        return true;
+    }
+
+    private Ring ring(int blockSize) {
+        for (Ring ring : rings) {
+            if (ring.blockSize == blockSize)
+                return ring;
+        }
+        return null;
+    }
+
+    private void wakeRefiller() {
+        Thread t = refiller;
+        if (t != null)
+            LockSupport.unpark(t);
+    }
+
+    /**
+     * Gets the number of blocks that are ready to be taken.
+     * 
+     * @param blockSize The size of the blocks.
+     * @return The number of available blocks, or 0 for unknown sizes.
+     */
+    public int getAvailable(int blockSize) {
+        Ring ring = ring(blockSize);
+        return ring == null ? 0 : ring.available();
+    }
+
+    /**
+     * Gets the number of blocks that were generated into the reservoir.
+     * 
+     * @return The total number of refilled blocks.
+     */
+    public long getRefillCount() {
+        return refills.get();
+    }
+
+    /**
+     * Gets the number of blocks that were handed out.
+     * 
+     * @return The total number of successful calls to {@link #take(byte[])}.
+     */
+    public long getTakeCount() {
+        return takes.get();
+    }
+
+    /**
+     * Gets the number of times a block was requested while the reservoir had
+     * none of that size available.
+     * 
+     * @return The total number of failed calls to {@link #take(byte[])}.
+     */
+    public long getUnderflowCount() {
+        return underflows.get();
+    }
+
+    /**
+     * Stops the background thread and wipes all blocks that were not handed
+     * out.
+     */
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            closed = true;
+            t = refiller;
+            refiller = null;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] scratch = new byte[0];
+        for (Ring ring : rings) {
+            if (scratch.length != ring.blockSize)
+                scratch = new byte[ring.blockSize];
+            while (ring.poll(scratch)) {
+                // each poll wipes the slot
+            }
+            Arrays.fill(scratch, (byte) 0);
+        }
+    }
+
+    /**
+     * Bounded multi-producer, multi-consumer ring of fixed size blocks in a
+     * single slab (D. Vyukov's bounded MPMC queue). The sequence of each slot
+     * tells whether it is free for the producer of a lap or filled for the
+     * consumer of that lap.
+     */
+    private static final class Ring {
+        final int blockSize;
+        private final byte[] slab;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong enqueue = new AtomicLong();
+        private final AtomicLong dequeue = new AtomicLong();
+
+        Ring(int blockSize, int slots) {
+            this.blockSize = blockSize;
+            this.slab = new byte[blockSize * slots];
+            this.sequences = new AtomicLongArray(slots);
+            this.mask = slots - 1;
+            for (int i = 0; i < slots; i++)
+                sequences.set(i, i);
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int available() {
+            long available = enqueue.get() - dequeue.get();
+            return (int) Math.max(0, Math.min(available, capacity()));
+        }
+
+        boolean offer(byte[] block) {
+            long pos = enqueue.get();
+            int slot;
+            while (true) {
+                slot = (int) pos & mask;
+                long dif = sequences.get(slot) - pos;
+                if (dif == 0) {
+                    if (enqueue.compareAndSet(pos, pos + 1))
+                        break;
+                    pos = enqueue.get();
+                }
+                else if (dif < 0) {
+                    return false;
+                }
+                else {
+                    pos = enqueue.get();
+                }
+            }
+
+            System.arraycopy(block, 0, slab, slot * blockSize, blockSize);
+            sequences.lazySet(slot, pos + 1);
+            return true;
+        }
+
+        boolean poll(byte[] dst) {
+            long pos = dequeue.get();
+            int slot;
+            while (true) {
+                slot = (int) pos & mask;
+                long dif = sequences.get(slot) - (pos + 1);
+                if (dif == 0) {
+                    if (dequeue.compareAndSet(pos, pos + 1))
+                        break;
+                    pos = dequeue.get();
+                }
+                else if (dif < 0) {
+                    return false;
+                }
+                else {
+                    pos = dequeue.get();
+                }
+            }
+
+            int offset = slot * blockSize;
+            System.arraycopy(slab, offset, dst, 0, blockSize);
+            Arrays.fill(slab, offset, offset + blockSize, (byte) 0);
+            sequences.lazySet(slot, pos + mask + 1);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receive-side lookup of the master key that is referenced by the MKI field
+ * of an incoming SRTP or SRTCP packet.
+ * <p>
+ * The index is built once from the key parameters of a crypto attribute,
+ * including the keys of a <tt>FEC_KEY</tt> session parameter. All keys must
+ * use an MKI of the same length, as the receiver could otherwise not locate
+ * the MKI field in the packet. Lookups use an open addressing table and take
+ * constant time without allocating; MKIs of up to 4 bytes are stored as
+ * <tt>int</tt> values, longer MKIs are hashed and compared byte-wise.
+ * <p>
+ * Instances are immutable and thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class MkiIndex {
+    private final int mkiLength;
+    private final int mask;
+    private final int[] hashes;
+    private final SrtpKeyParam[] keys;
+    private final int size;
+
+    /**
+     * Creates the index for all master keys of a crypto attribute.
+     * 
+     * @param attribute The negotiated crypto attribute.
+     * @throws IllegalArgumentException when a key has no MKI, when the MKI
+     *             lengths differ or when two keys use the same MKI.
+     */
+    public MkiIndex(SrtpCryptoAttribute attribute) {
+        this(collect(attribute));
+    }
+
+    /**
+     * Creates the index for a set of master keys.
+     * 
+     * @param keyParams The master keys.
+     * @throws IllegalArgumentException when a key has no MKI, when the MKI
+     *             lengths differ or when two keys use the same MKI.
+     */
+    public MkiIndex(SrtpKeyParam[] keyParams) {
+        if (keyParams.length == 0)
+            throw new IllegalArgumentException("at least one key is required");
+
+        mkiLength = keyParams[0].getMkiLength();
+        int capacity = Integer.highestOneBit(keyParams.length * 2 - 1) << 1;
+        mask = capacity - 1;
+        hashes = new int[capacity];
+        keys = new SrtpKeyParam[capacity];
+        for (SrtpKeyParam kp : keyParams) {
+            if (kp.getMkiLength() == 0)
+                throw new IllegalArgumentException("key without mki");
+            if (kp.getMkiLength() != mkiLength)
+                throw new IllegalArgumentException("all keys must use the same mki length");
+            byte[] mki = kp.getMkiBytes();
+            insert(hash(mki, 0, mkiLength), mki, kp);
+        }
+        size = keyParams.length;
+    }
+
+    private static SrtpKeyParam[] collect(SrtpCryptoAttribute attribute) {
+        SrtpKeyParam[] keyParams = attribute.getKeyParams();
+        SrtpSessionParam[] params = attribute.getSessionParams();
+        if (params == null)
+            return keyParams;
+
+        for (SrtpSessionParam p : params) {
+            if (p instanceof FecKeySessionParam) {
+                SrtpKeyParam[] fec = ((FecKeySessionParam) p).getKeyParams();
+                SrtpKeyParam[] all = new SrtpKeyParam[keyParams.length + fec.length];
+                System.arraycopy(keyParams, 0, all, 0, keyParams.length);
+                System.arraycopy(fec, 0, all, keyParams.length, fec.length);
+                keyParams = all;
+            }
+        }
+        return keyParams;
+    }
+
+    private void insert(int h, byte[] mki, SrtpKeyParam kp) {
+        for (int i = spread(h) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == null) {
+                hashes[i] = h;
+                keys[i] = kp;
+                return;
+            }
+            if (hashes[i] == h && keys[i].mkiEquals(mki, 0))
+                throw new IllegalArgumentException("duplicate mki");
+        }
+    }
+
+    /**
+     * For MKIs of up to 4 bytes the hash is the MKI itself, which makes the
+     * comparison of the hash sufficient.
+     */
+    private static int hash(byte[] buf, int offset, int length) {
+        int h = 0;
+        if (length <= 4) {
+            for (int i = 0; i < length; i++)
+                h = (h << 8) | (buf[offset + i] & 0xff);
+        }
+        else {
+            for (int i = 0; i < length; i++)
+                h = 31 * h + buf[offset + i];
+        }
+        return h;
+    }
+
+    private static int hash(ByteBuffer buf, int offset, int length) {
+        int h = 0;
+        if (length <= 4) {
+            for (int i = 0; i < length; i++)
+                h = (h << 8) | (buf.get(offset + i) & 0xff);
+        }
+        else {
+            for (int i = 0; i < length; i++)
+                h = 31 * h + buf.get(offset + i);
+        }
+        return h;
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Gets the length of the MKI field in packets protected with the indexed
+     * keys.
+     * 
+     * @return The MKI length, in bytes.
+     */
+    public int getMkiLength() {
+        return mkiLength;
+    }
+
+    /**
+     * Gets the number of indexed keys.
+     * 
+     * @return The number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the master key for the MKI field of a packet.
+     * 
+     * @param packet The array containing the packet.
+     * @param offset The index in <tt>packet</tt> of the MKI field.
+     * @return The master key, or <code>null</code> if no key uses the MKI.
+     */
+    public SrtpKeyParam lookup(byte[] packet, int offset) {
+        if (offset < 0 || packet.length - offset < mkiLength)
+            return null;
+
+        int h = hash(packet, offset, mkiLength);
+        for (int i = spread(h) & mask;; i = (i + 1) & mask) {
+            SrtpKeyParam kp = keys[i];
+            if (kp == null)
+                return null;
+            if (hashes[i] == h && (mkiLength <= 4 || kp.mkiEquals(packet, offset)))
+                return kp;
+        }
+    }
+
+    /**
+     * Finds the master key for the MKI field of a packet.
+     * 
+     * @param packet The buffer containing the packet.
+     * @param offset The absolute index in <tt>packet</tt> of the MKI field.
+     * @return The master key, or <code>null</code> if no key uses the MKI.
+     */
+    public SrtpKeyParam lookup(ByteBuffer packet, int offset) {
+        if (offset < 0 || packet.limit() - offset < mkiLength)
+            return null;
+
+        int h = hash(packet, offset, mkiLength);
+        for (int i = spread(h) & mask;; i = (i + 1) & mask) {
+            SrtpKeyParam kp = keys[i];
+            if (kp == null)
+                return null;
+            if (hashes[i] == h && (mkiLength <= 4 || kp.mkiEquals(packet, offset)))
+                return kp;
+        }
+    }
+}
@@ -22,7 +22,7 @@ package ch.imvs.sdes4j.srtp;
  * @author Ingo Bauersachs
  */
 public class NoAuthSessionParam extends SrtpSessionParam {
-    private static final String UNAUTHENTICATED_SRTP = "UNAUTHENTICATED_SRTP";
+    static final String UNAUTHENTICATED_SRTP = "UNAUTHENTICATED_SRTP";
 
     @Override
     public String encode() {
@@ -36,6 +36,6 @@ public class NoAuthSessionParam extends SrtpSessionParam {
 
     @Override
     public boolean equals(Object obj) {
-        return UNAUTHENTICATED_SRTP.equals(obj);
+        return obj instanceof NoAuthSessionParam;
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseResult;
+
+/**
+ * Receives the first error of the parsers of this package, which report
+ * malformed input by returning <code>false</code> or <code>null</code>
+ * instead of throwing. The throwing constructors and methods create the
+ * exception from the status.
+ * 
+ * @author Ingo Bauersachs
+ */
+final class ParseStatus {
+    private ParseError error;
+    private int offset;
+
+    /**
+     * Records an error, unless an error was recorded before.
+     * 
+     * @param error The reason why the input is rejected.
+     * @param offset The index where the invalid part starts.
+     * @return Always <code>false</code>, for <tt>return status.fail(...)</tt>.
+     */
+    boolean fail(ParseError error, int offset) {
+        if (this.error == null) {
+            this.error = error;
+            this.offset = offset;
+        }
+        return false;
+    }
+
+    boolean failed() {
+        return error != null;
+    }
+
+    <T> ParseResult<T> result() {
+        return ParseResult.failure(error, offset);
+    }
+
+    IllegalArgumentException toException() {
+        return new IllegalArgumentException(error + " at offset " + offset);
+    }
+}
@@ -23,7 +23,7 @@ package ch.imvs.sdes4j.srtp;
  * @author Ingo Bauersachs
  */
 public class PlainSrtcpSessionParam extends SrtpSessionParam {
-    private static final String UNENCRYPTED_SRTCP = "UNENCRYPTED_SRTCP";
+    static final String UNENCRYPTED_SRTCP = "UNENCRYPTED_SRTCP";
 
     @Override
     public String encode() {
@@ -37,6 +37,6 @@ public class PlainSrtcpSessionParam extends SrtpSessionParam {
 
     @Override
     public boolean equals(Object obj) {
-        return UNENCRYPTED_SRTCP.equals(obj);
+        return obj instanceof PlainSrtcpSessionParam;
     }
 }
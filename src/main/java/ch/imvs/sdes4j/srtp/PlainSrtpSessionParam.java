@@ -23,7 +23,7 @@ package ch.imvs.sdes4j.srtp;
  * @author Ingo Bauersachs
  */
 public class PlainSrtpSessionParam extends SrtpSessionParam {
-    private static final String UNENCRYPTED_SRTP = "UNENCRYPTED_SRTP";
+    static final String UNENCRYPTED_SRTP = "UNENCRYPTED_SRTP";
 
     @Override
     public String encode() {
@@ -37,6 +37,6 @@ public class PlainSrtpSessionParam extends SrtpSessionParam {
 
     @Override
     public boolean equals(Object obj) {
-        return UNENCRYPTED_SRTP.equals(obj);
+        return obj instanceof PlainSrtpSessionParam;
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Master key and salt that are stored off-heap in a {@link KeyMaterialPool}.
+ * The key is read through views of the pooled memory, without copying it.
+ * <p>
+ * Closing the key material wipes it and returns the memory to the pool.
+ * Views obtained before must not be used after the key was closed, as the
+ * memory may then hold another key.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class SecretKeyMaterial implements AutoCloseable {
+    private final KeyMaterialPool pool;
+    private final int slot;
+    private final ByteBuffer buffer;
+    private volatile boolean closed;
+
+    SecretKeyMaterial(KeyMaterialPool pool, int slot, ByteBuffer buffer) {
+        this.pool = pool;
+        this.slot = slot;
+        this.buffer = buffer;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the length of the key material.
+     * 
+     * @return The number of bytes.
+     */
+    public int length() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Gets a read-only view of the key material, e.g. to initialize a cipher.
+     * The view's position is 0 and its limit is {@link #length()}.
+     * 
+     * @return A new view of the pooled memory.
+     * @throws IllegalStateException when the key material was closed.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        checkOpen();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the key material into a caller provided array.
+     * 
+     * @param dst The array that receives the key material.
+     * @param offset The index in <tt>dst</tt> of the first byte.
+     * @throws IllegalArgumentException when the key does not fit into
+     *             <tt>dst</tt>.
+     * @throws IllegalStateException when the key material was closed.
+     */
+    public void copyTo(byte[] dst, int offset) {
+        checkOpen();
+        if (offset < 0 || dst.length - offset < buffer.capacity())
+            throw new IllegalArgumentException("Destination too small");
+        buffer.duplicate().get(dst, offset, buffer.capacity());
+    }
+
+    /**
+     * Copies the key material into a new slot of the same pool.
+     * 
+     * @return The new key material, which must be closed on its own.
+     * @throws IllegalStateException when the key material was closed.
+     */
+    SecretKeyMaterial copy() {
+        checkOpen();
+        return pool.allocate(buffer);
+    }
+
+    /**
+     * Determines if the key material was closed.
+     * 
+     * @return <code>true</code> if the key material was wiped.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Wipes the key material and returns its memory to the pool. Subsequent
+     * calls have no effect.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        pool.release(slot, buffer);
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Key material was closed");
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * A random generator for key material that spreads the load over several
+ * independently seeded {@link SecureRandom} instances. Each thread always uses
+ * the same instance (its stripe), so concurrent key generation does not
+ * contend on the lock of a single generator.
+ * <p>
+ * Use it with {@link SrtpSDesFactory#setRandomGenerator(Random)} to choose
+ * the algorithm, e.g. <tt>SHA1PRNG</tt>, <tt>DRBG</tt> or
+ * <tt>NativePRNGNonBlocking</tt>. Instances are thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class SecureRandomPool extends Random {
+    private static final long serialVersionUID = 1L;
+
+    private final SecureRandom[] stripes;
+    private final String algorithm;
+
+    /**
+     * Creates a pool of <tt>SHA1PRNG</tt> generators, or of the system's
+     * default {@link SecureRandom} if SHA1PRNG is not available, with one
+     * stripe per available processor.
+     */
+    public SecureRandomPool() {
+        SecureRandom[] stripes = new SecureRandom[stripeCount(Runtime.getRuntime().availableProcessors())];
+        String algorithm = "SHA1PRNG";
+        try {
+            for (int i = 0; i < stripes.length; i++)
+                stripes[i] = SecureRandom.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            for (int i = 0; i < stripes.length; i++)
+                stripes[i] = new SecureRandom();
+            algorithm = stripes[0].getAlgorithm();
+        }
+
+        this.stripes = stripes;
+        this.algorithm = algorithm;
+        selfSeed();
+    }
+
+    /**
+     * Creates a pool with one stripe per available processor.
+     * 
+     * @param algorithm The name of the {@link SecureRandom} algorithm.
+     * @throws NoSuchAlgorithmException when no provider supports the
+     *             algorithm.
+     */
+    public SecureRandomPool(String algorithm) throws NoSuchAlgorithmException {
+        this(algorithm, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool with a specific number of stripes.
+     * 
+     * @param algorithm The name of the {@link SecureRandom} algorithm.
+     * @param stripes The number of generators, rounded up to the next power
+     *            of two.
+     * @throws NoSuchAlgorithmException when no provider supports the
+     *             algorithm.
+     */
+    public SecureRandomPool(String algorithm, int stripes) throws NoSuchAlgorithmException {
+        this.stripes = new SecureRandom[stripeCount(stripes)];
+        this.algorithm = algorithm;
+        for (int i = 0; i < this.stripes.length; i++)
+            this.stripes[i] = SecureRandom.getInstance(algorithm);
+        selfSeed();
+    }
+
+    private static int stripeCount(int stripes) {
+        if (stripes < 1)
+            throw new IllegalArgumentException("stripes must be positive");
+        int count = Integer.highestOneBit(stripes);
+        return count == stripes ? count : count << 1;
+    }
+
+    /**
+     * Makes each generator seed itself from the system's entropy source now,
+     * so that the instances are independent and a later call to
+     * {@link #setSeed(long)} only supplements their seed.
+     */
+    private void selfSeed() {
+        byte[] b = new byte[1];
+        for (SecureRandom r : stripes)
+            r.nextBytes(b);
+    }
+
+    private SecureRandom stripe() {
+        return stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+    }
+
+    /**
+     * Gets the name of the algorithm of the pooled generators.
+     * 
+     * @return The algorithm name.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Gets the number of pooled generators.
+     * 
+     * @return The number of stripes, a power of two.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Supplements the seed of all pooled generators. This never replaces
+     * their own entropy.
+     */
+    @Override
+    public void setSeed(long seed) {
+        // called by the constructor of Random before the stripes exist
+        if (stripes == null)
+            return;
+        for (SecureRandom r : stripes)
+            r.setSeed(seed);
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        stripe().nextBytes(bytes);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return stripe().nextInt() >>> (32 - bits);
+    }
+}
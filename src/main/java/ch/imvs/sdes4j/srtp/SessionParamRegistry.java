@@ -0,0 +1,311 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.util.Arrays;
+
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseUtils;
+
+/**
+ * The session parameters that an {@link SrtpSDesFactory} knows how to
+ * create. Every factory has its own registry, which initially contains the
+ * parameters of RFC 4568; applications can add and remove their own
+ * parameters without affecting other factories. Parameters that are not in
+ * the registry are kept as {@link UnknownSessionParam}.
+ * <p>
+ * The parameters are dispatched through a table that is indexed by the first
+ * character and the length of the name, i.e. the part before the <tt>=</tt>,
+ * so a lookup compares the name with at most one entry in practice.
+ * Instances are thread-safe; the table is copied on modification.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class SessionParamRegistry {
+    private final static class Entry {
+        final String name;
+        final int kind;
+        final SrtpSessionParam.Parser parser;
+        /** Next entry with the same first character and length. */
+        final Entry next;
+
+        Entry(String name, int kind, SrtpSessionParam.Parser parser, Entry next) {
+            this.name = name;
+            this.kind = kind;
+            this.parser = parser;
+            this.next = next;
+        }
+    }
+
+    private final static int TABLE_SIZE = 128;
+
+    /**
+     * The parameters of RFC 4568, used by the shared factory and by
+     * {@link SrtpSessionParam#create(String)}.
+     */
+    final static SessionParamRegistry RFC4568 = new SessionParamRegistry(false);
+
+    private final boolean modifiable;
+
+    /** Indexed by the first character and then by the name length. */
+    private volatile Entry[][] table = new Entry[TABLE_SIZE][];
+
+    /**
+     * Creates a registry with the session parameters of RFC 4568.
+     */
+    public SessionParamRegistry() {
+        this(true);
+    }
+
+    private SessionParamRegistry(boolean modifiable) {
+        add(KdrSessionParam.PREFIX, SessionParamSet.KDR, null);
+        add(PlainSrtpSessionParam.UNENCRYPTED_SRTP, SessionParamSet.UNENCRYPTED_SRTP, null);
+        add(PlainSrtcpSessionParam.UNENCRYPTED_SRTCP, SessionParamSet.UNENCRYPTED_SRTCP, null);
+        add(NoAuthSessionParam.UNAUTHENTICATED_SRTP, SessionParamSet.UNAUTHENTICATED_SRTP, null);
+        add(FecOrderSessionParam.PREFIX, SessionParamSet.FEC_ORDER, null);
+        add(FecKeySessionParam.PREFIX, SessionParamSet.FEC_KEY, null);
+        add(WshSessionParam.PREFIX, SessionParamSet.WSH, null);
+        this.modifiable = modifiable;
+    }
+
+    /**
+     * Registers an additional session parameter. Registered parameters are
+     * kept in the order they were parsed; they are not checked by
+     * {@link SrtpPolicy}.
+     * 
+     * @param name The name of the parameter, without <tt>=</tt>.
+     * @param parser Creates the parameter from its text based representation.
+     * @throws IllegalArgumentException when the name is empty, contains
+     *             <tt>=</tt>, whitespace or non US-ASCII characters, or is
+     *             already registered.
+     * @throws UnsupportedOperationException for the registry of the shared
+     *             factory.
+     */
+    public void register(String name, SrtpSessionParam.Parser parser) {
+        checkModifiable();
+        if (parser == null)
+            throw new IllegalArgumentException("parser must not be null");
+        checkName(name);
+        add(name, SessionParamSet.OTHER, parser);
+    }
+
+    /**
+     * Removes a session parameter that was added with
+     * {@link #register(String, SrtpSessionParam.Parser)}. Afterwards, the
+     * parameter is parsed as {@link UnknownSessionParam}.
+     * 
+     * @param name The name of the parameter, without <tt>=</tt>.
+     * @return <code>true</code> if the parameter was registered.
+     * @throws IllegalArgumentException when the name is one of the parameters
+     *             of RFC 4568.
+     * @throws UnsupportedOperationException for the registry of the shared
+     *             factory.
+     */
+    public synchronized boolean unregister(String name) {
+        checkModifiable();
+        checkName(name);
+        Entry e = lookup(name, 0, name.length());
+        if (e == null)
+            return false;
+        if (e.kind != SessionParamSet.OTHER)
+            throw new IllegalArgumentException("Session parameter " + name + " is defined by RFC 4568");
+
+        Entry[][] t = table.clone();
+        Entry[] byLength = t[name.charAt(0)].clone();
+        Entry chain = null;
+        for (Entry c = byLength[name.length()]; c != null; c = c.next) {
+            if (c != e)
+                chain = new Entry(c.name, c.kind, c.parser, chain);
+        }
+        byLength[name.length()] = chain;
+        t[name.charAt(0)] = byLength;
+        table = t;
+        return true;
+    }
+
+    /**
+     * Determines if a session parameter is known to this registry.
+     * 
+     * @param name The name of the parameter, without <tt>=</tt>.
+     * @return <code>true</code> for the parameters of RFC 4568 and registered
+     *         parameters.
+     */
+    public boolean contains(String name) {
+        return lookup(name, 0, name.length()) != null;
+    }
+
+    private void checkModifiable() {
+        if (!modifiable)
+            throw new UnsupportedOperationException("The shared factory cannot be configured");
+    }
+
+    private static void checkName(String name) {
+        if (name.length() == 0)
+            throw new IllegalArgumentException("name must not be empty");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '=' || c >= TABLE_SIZE || ParseUtils.isWhitespace(c))
+                throw new IllegalArgumentException("Invalid session parameter name " + name);
+        }
+    }
+
+    private synchronized void add(String name, int kind, SrtpSessionParam.Parser parser) {
+        int nameLength = name.endsWith("=") ? name.length() - 1 : name.length();
+        if (lookup(name, 0, nameLength) != null)
+            throw new IllegalArgumentException("Session parameter " + name + " is already defined");
+
+        Entry[][] t = table.clone();
+        Entry[] byLength = t[name.charAt(0)];
+        if (byLength == null)
+            byLength = new Entry[nameLength + 1];
+        else
+            byLength = Arrays.copyOf(byLength, Math.max(byLength.length, nameLength + 1));
+        byLength[nameLength] = new Entry(name.substring(0, nameLength), kind, parser, byLength[nameLength]);
+        t[name.charAt(0)] = byLength;
+        table = t;
+    }
+
+    private Entry lookup(CharSequence s, int start, int nameEnd) {
+        int length = nameEnd - start;
+        if (length <= 0)
+            return null;
+        char c = s.charAt(start);
+        if (c >= TABLE_SIZE)
+            return null;
+        Entry[] byLength = table[c];
+        if (byLength == null || length >= byLength.length)
+            return null;
+        for (Entry e = byLength[length]; e != null; e = e.next) {
+            if (ParseUtils.startsWith(s, start, nameEnd, e.name))
+                return e;
+        }
+        return null;
+    }
+
+    /**
+     * Determines the kind of a session parameter without creating it.
+     * 
+     * @param s The sequence containing the session parameter.
+     * @param start The inclusive start of the session parameter.
+     * @param end The exclusive end of the session parameter.
+     * @return One of the parameter constants of {@link SessionParamSet}, or
+     *         {@link SessionParamSet#OTHER} for registered and unknown
+     *         parameters.
+     */
+    int kindOf(CharSequence s, int start, int end) {
+        Entry e = lookup(s, start, nameEnd(s, start, end));
+        return e == null ? SessionParamSet.OTHER : e.kind;
+    }
+
+    private static int nameEnd(CharSequence s, int start, int end) {
+        int nameEnd = ParseUtils.indexOf(s, '=', start, end);
+        return nameEnd < 0 ? end : nameEnd;
+    }
+
+    /**
+     * Creates a session parameter from a range of a character sequence.
+     * 
+     * @param param The sequence containing the session parameter.
+     * @param start The inclusive start of the session parameter.
+     * @param end The exclusive end of the session parameter.
+     * @param lazyKeys <code>true</code> to defer decoding <tt>FEC_KEY</tt>
+     *            keys.
+     * @param pool The pool that stores <tt>FEC_KEY</tt> keys, or
+     *            <code>null</code> to keep them on the heap.
+     * @return The session parameter.
+     * @throws IllegalArgumentException when the parameter is invalid.
+     */
+    SrtpSessionParam create(CharSequence param, int start, int end, boolean lazyKeys, KeyMaterialPool pool) {
+        ParseStatus status = new ParseStatus();
+        SrtpSessionParam p = create(param, start, end, lazyKeys, pool, status);
+        if (p == null)
+            throw status.toException();
+        return p;
+    }
+
+    /**
+     * Creates a session parameter without throwing on malformed input.
+     * 
+     * @param param The sequence containing the session parameter.
+     * @param start The inclusive start of the session parameter.
+     * @param end The exclusive end of the session parameter.
+     * @param lazyKeys <code>true</code> to defer decoding <tt>FEC_KEY</tt>
+     *            keys.
+     * @param pool The pool that stores <tt>FEC_KEY</tt> keys, or
+     *            <code>null</code> to keep them on the heap.
+     * @param status Receives the error.
+     * @return The session parameter, or <code>null</code> if it is invalid.
+     */
+    SrtpSessionParam create(CharSequence param, int start, int end, boolean lazyKeys, KeyMaterialPool pool,
+            ParseStatus status) {
+        int nameEnd = nameEnd(param, start, end);
+        Entry e = lookup(param, start, nameEnd);
+        if (e == null) {
+            if (start >= end) {
+                status.fail(ParseError.INVALID_SESSION_PARAM, start);
+                return null;
+            }
+            return new UnknownSessionParam(param.subSequence(start, end).toString());
+        }
+
+        int valueStart = nameEnd < end ? nameEnd + 1 : end;
+        switch (e.kind) {
+            case SessionParamSet.KDR: {
+                int kdr = KdrSessionParam.tryParse(param, valueStart, end);
+                if (kdr >= 0)
+                    return new KdrSessionParam(kdr);
+                status.fail(ParseError.INVALID_KDR, valueStart);
+                return null;
+            }
+            case SessionParamSet.FEC_ORDER: {
+                int mode = FecOrderSessionParam.tryParse(param, valueStart, end);
+                if (mode >= 0)
+                    return new FecOrderSessionParam(mode);
+                status.fail(ParseError.INVALID_FEC_ORDER, valueStart);
+                return null;
+            }
+            case SessionParamSet.FEC_KEY: {
+                SrtpKeyParam[] keyParams = SrtpKeyParam.parseList(param, valueStart, end, lazyKeys, pool, status);
+                return keyParams == null ? null : new FecKeySessionParam(keyParams);
+            }
+            case SessionParamSet.WSH: {
+                int wsh = WshSessionParam.tryParse(param, valueStart, end);
+                if (wsh >= 0)
+                    return new WshSessionParam(wsh);
+                status.fail(ParseError.INVALID_WSH, valueStart);
+                return null;
+            }
+            case SessionParamSet.OTHER: {
+                SrtpSessionParam p = e.parser.parse(param, start, end);
+                if (p == null)
+                    status.fail(ParseError.REJECTED, start);
+                return p;
+            }
+        }
+
+        if (nameEnd < end) {
+            // a flag does not take a value
+            status.fail(ParseError.INVALID_SESSION_PARAM, start);
+            return null;
+        }
+        switch (e.kind) {
+            case SessionParamSet.UNENCRYPTED_SRTP:
+                return new PlainSrtpSessionParam();
+            case SessionParamSet.UNENCRYPTED_SRTCP:
+                return new PlainSrtcpSessionParam();
+            default:
+                return new NoAuthSessionParam();
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseUtils;
+
+/**
+ * Compact representation of the session parameters of an SRTP crypto
+ * attribute: a bit set of the present parameters and primitive fields for
+ * their values. Parsing fills the set without dispatching each parameter
+ * through the factory, and its typed accessors answer policy checks without
+ * scanning the array, see {@link SrtpCryptoAttribute#getSessionParamSet()}.
+ * <p>
+ * The order of the parameters is kept for encoding. If a parameter is
+ * repeated or is not one defined by RFC 4568, the set keeps the original
+ * parameter objects for encoding and the typed accessors return the first
+ * occurrence. Registered and optional unknown parameters have no bit in the
+ * set. Instances are immutable.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class SessionParamSet {
+    public final static int KDR = 1;
+    public final static int UNENCRYPTED_SRTP = 1 << 1;
+    public final static int UNENCRYPTED_SRTCP = 1 << 2;
+    public final static int UNAUTHENTICATED_SRTP = 1 << 3;
+    public final static int FEC_ORDER = 1 << 4;
+    public final static int WSH = 1 << 5;
+    public final static int FEC_KEY = 1 << 6;
+
+    /**
+     * A mandatory session parameter that is not understood, see
+     * {@link UnknownSessionParam#isMandatory()}.
+     */
+    public final static int OTHER = 1 << 7;
+
+    /**
+     * The set without any session parameters.
+     */
+    public final static SessionParamSet EMPTY = new SessionParamSet();
+
+    private final static int ORDER_BITS = 3;
+
+    private int present;
+    private int order;
+    private int size;
+    private int kdr = -1;
+    private int wsh = -1;
+    private int fecOrder = -1;
+    private FecKeySessionParam fecKey;
+    private SrtpSessionParam[] verbatim;
+
+    private SessionParamSet() {
+    }
+
+    /**
+     * Creates the set of an array of session parameters.
+     * 
+     * @param params The session parameters, or <code>null</code>.
+     * @return The set of the parameters.
+     */
+    public static SessionParamSet of(SrtpSessionParam[] params) {
+        if (params == null || params.length == 0)
+            return EMPTY;
+
+        SessionParamSet set = new SessionParamSet();
+        for (SrtpSessionParam p : params) {
+            int kind = kindOf(p);
+            if (kind == 0 || kind == OTHER) {
+                set.present |= kind;
+                set.verbatim = params.clone();
+                continue;
+            }
+            if (!set.add(kind)) {
+                set.verbatim = params.clone();
+                continue;
+            }
+            if (p instanceof KdrSessionParam)
+                set.kdr = ((KdrSessionParam) p).getKeyDerivationRate();
+            else if (p instanceof WshSessionParam)
+                set.wsh = ((WshSessionParam) p).getWindowSizeHint();
+            else if (p instanceof FecOrderSessionParam)
+                set.fecOrder = ((FecOrderSessionParam) p).getMode();
+            else if (p instanceof FecKeySessionParam)
+                set.fecKey = (FecKeySessionParam) p;
+        }
+        return set;
+    }
+
+    /**
+     * Parses whitespace separated session parameters without throwing on
+     * malformed input. Only <tt>FEC_KEY</tt> is created as an object. Unknown
+     * and repeated parameters are left to the caller.
+     * 
+     * @param s The sequence containing the session parameters.
+     * @param start The inclusive start of the session parameters.
+     * @param end The exclusive end of the session parameters.
+     * @param lazyKeys <code>true</code> to defer decoding <tt>FEC_KEY</tt>
+     *            keys.
+     * @param pool The pool that stores <tt>FEC_KEY</tt> keys, or
+     *            <code>null</code> to keep them on the heap.
+     * @param status Receives the error.
+     * @return The set of the parameters, or <code>null</code> if a parameter
+     *         is invalid, or if it is unknown or repeated and the caller has
+     *         to create the parameter objects; the status tells which.
+     */
+    static SessionParamSet parse(CharSequence s, int start, int end, boolean lazyKeys, KeyMaterialPool pool,
+            ParseStatus status) {
+        int pos = ParseUtils.skipWhitespace(s, start, end);
+        if (pos == end)
+            return EMPTY;
+
+        SessionParamSet set = new SessionParamSet();
+        if (!set.parseParams(s, pos, end, lazyKeys, pool, status)) {
+            set.wipeFecKey();
+            return null;
+        }
+        return set;
+    }
+
+    private boolean parseParams(CharSequence s, int pos, int end, boolean lazyKeys, KeyMaterialPool pool,
+            ParseStatus status) {
+        while (pos < end) {
+            int tokenEnd = ParseUtils.tokenEnd(s, pos, end);
+            int kind = SrtpSessionParam.kindOf(s, pos, tokenEnd);
+            if (kind == OTHER || !add(kind))
+                return false;
+
+            int nameEnd = ParseUtils.indexOf(s, '=', pos, tokenEnd);
+            int valueStart = nameEnd < 0 ? tokenEnd : nameEnd + 1;
+            switch (kind) {
+                case KDR:
+                    kdr = KdrSessionParam.tryParse(s, valueStart, tokenEnd);
+                    if (kdr < 0)
+                        return status.fail(ParseError.INVALID_KDR, valueStart);
+                    break;
+                case FEC_ORDER:
+                    fecOrder = FecOrderSessionParam.tryParse(s, valueStart, tokenEnd);
+                    if (fecOrder < 0)
+                        return status.fail(ParseError.INVALID_FEC_ORDER, valueStart);
+                    break;
+                case WSH:
+                    wsh = WshSessionParam.tryParse(s, valueStart, tokenEnd);
+                    if (wsh < 0)
+                        return status.fail(ParseError.INVALID_WSH, valueStart);
+                    break;
+                case FEC_KEY:
+                    SrtpKeyParam[] keyParams = SrtpKeyParam.parseList(s, valueStart, tokenEnd, lazyKeys, pool, status);
+                    if (keyParams == null)
+                        return false;
+                    fecKey = new FecKeySessionParam(keyParams);
+                    break;
+                default:
+                    if (nameEnd >= 0)
+                        return status.fail(ParseError.INVALID_SESSION_PARAM, pos);
+            }
+            pos = ParseUtils.skipWhitespace(s, tokenEnd, end);
+        }
+        return true;
+    }
+
+    private void wipeFecKey() {
+        if (fecKey != null)
+            FecKeySessionParam.release(fecKey.getKeyParams());
+    }
+
+    static int kindOf(SrtpSessionParam p) {
+        if (p instanceof KdrSessionParam)
+            return KDR;
+        if (p instanceof PlainSrtpSessionParam)
+            return UNENCRYPTED_SRTP;
+        if (p instanceof PlainSrtcpSessionParam)
+            return UNENCRYPTED_SRTCP;
+        if (p instanceof NoAuthSessionParam)
+            return UNAUTHENTICATED_SRTP;
+        if (p instanceof FecOrderSessionParam)
+            return FEC_ORDER;
+        if (p instanceof WshSessionParam)
+            return WSH;
+        if (p instanceof FecKeySessionParam)
+            return FEC_KEY;
+        if (p instanceof UnknownSessionParam && ((UnknownSessionParam) p).isMandatory())
+            return OTHER;
+        return 0;
+    }
+
+    private boolean add(int kind) {
+        if ((present & kind) != 0)
+            return false;
+        present |= kind;
+        order |= (Integer.numberOfTrailingZeros(kind) + 1) << (ORDER_BITS * size);
+        size++;
+        return true;
+    }
+
+    private int kindAt(int index) {
+        return 1 << (((order >>> (ORDER_BITS * index)) & 7) - 1);
+    }
+
+    /**
+     * Gets the present parameters.
+     * 
+     * @return A combination of the constants of this class.
+     */
+    public int getPresent() {
+        return present;
+    }
+
+    /**
+     * Determines if a parameter is present.
+     * 
+     * @param kind One of the constants of this class.
+     * @return <code>true</code> if the parameter is present.
+     */
+    public boolean contains(int kind) {
+        return (present & kind) != 0;
+    }
+
+    /**
+     * Gets the number of session parameters.
+     * 
+     * @return The number of parameters.
+     */
+    public int size() {
+        return verbatim == null ? size : verbatim.length;
+    }
+
+    /**
+     * Determines if <tt>UNENCRYPTED_SRTP</tt> is present.
+     * 
+     * @return <code>true</code> if SRTP payloads are not encrypted.
+     */
+    public boolean isUnencryptedSrtp() {
+        return (present & UNENCRYPTED_SRTP) != 0;
+    }
+
+    /**
+     * Determines if <tt>UNENCRYPTED_SRTCP</tt> is present.
+     * 
+     * @return <code>true</code> if SRTCP payloads are not encrypted.
+     */
+    public boolean isUnencryptedSrtcp() {
+        return (present & UNENCRYPTED_SRTCP) != 0;
+    }
+
+    /**
+     * Determines if <tt>UNAUTHENTICATED_SRTP</tt> is present.
+     * 
+     * @return <code>true</code> if SRTP packets are not authenticated.
+     */
+    public boolean isUnauthenticatedSrtp() {
+        return (present & UNAUTHENTICATED_SRTP) != 0;
+    }
+
+    /**
+     * Gets the key derivation rate.
+     * 
+     * @return The exponent n of the rate 2^n, or -1 if <tt>KDR</tt> is not
+     *         present.
+     */
+    public int getKeyDerivationRate() {
+        return kdr;
+    }
+
+    /**
+     * Gets the SRTP window size hint.
+     * 
+     * @return The window size, or -1 if <tt>WSH</tt> is not present.
+     */
+    public int getWindowSizeHint() {
+        return wsh;
+    }
+
+    /**
+     * Gets the order of FEC and SRTP processing.
+     * 
+     * @return {@link FecOrderSessionParam#FEC_SRTP} or
+     *         {@link FecOrderSessionParam#SRTP_FEC}, or -1 if
+     *         <tt>FEC_ORDER</tt> is not present.
+     */
+    public int getFecOrder() {
+        return fecOrder;
+    }
+
+    /**
+     * Gets the master keys of the FEC stream.
+     * 
+     * @return The <tt>FEC_KEY</tt> parameter, or <code>null</code> if it is
+     *         not present.
+     */
+    public FecKeySessionParam getFecKey() {
+        return fecKey;
+    }
+
+    /**
+     * Creates the session parameter objects, in their original order.
+     * 
+     * @return A new array of the parameters.
+     */
+    public SrtpSessionParam[] toArray() {
+        if (verbatim != null)
+            return verbatim.clone();
+        SrtpSessionParam[] params = new SrtpSessionParam[size];
+        for (int i = 0; i < size; i++)
+            params[i] = create(kindAt(i));
+        return params;
+    }
+
+    private SrtpSessionParam create(int kind) {
+        switch (kind) {
+            case KDR:
+                return new KdrSessionParam(kdr);
+            case UNENCRYPTED_SRTP:
+                return new PlainSrtpSessionParam();
+            case UNENCRYPTED_SRTCP:
+                return new PlainSrtcpSessionParam();
+            case UNAUTHENTICATED_SRTP:
+                return new NoAuthSessionParam();
+            case FEC_ORDER:
+                return new FecOrderSessionParam(fecOrder);
+            case WSH:
+                return new WshSessionParam(wsh);
+            default:
+                return fecKey;
+        }
+    }
+
+    /**
+     * Writes the parameters in their original order, each preceded by a
+     * space.
+     * 
+     * @param out The destination of the encoded parameters.
+     * @throws IOException when the destination fails.
+     */
+    public void encodeTo(Appendable out) throws IOException {
+        if (verbatim != null) {
+            for (SrtpSessionParam p : verbatim) {
+                out.append(' ');
+                p.encodeTo(out);
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            out.append(' ');
+            int kind = kindAt(i);
+            switch (kind) {
+                case UNENCRYPTED_SRTP:
+                    out.append(PlainSrtpSessionParam.UNENCRYPTED_SRTP);
+                    break;
+                case UNENCRYPTED_SRTCP:
+                    out.append(PlainSrtcpSessionParam.UNENCRYPTED_SRTCP);
+                    break;
+                case UNAUTHENTICATED_SRTP:
+                    out.append(NoAuthSessionParam.UNAUTHENTICATED_SRTP);
+                    break;
+                case FEC_KEY:
+                    fecKey.encodeTo(out);
+                    break;
+                default:
+                    create(kind).encodeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Compares the present parameters, their values and their order.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!(obj instanceof SessionParamSet))
+            return false;
+
+        SessionParamSet other = (SessionParamSet) obj;
+        return order == other.order
+            && kdr == other.kdr
+            && wsh == other.wsh
+            && fecOrder == other.fecOrder
+            && (fecKey == null ? other.fecKey == null : fecKey.equals(other.fecKey))
+            && Arrays.equals(verbatim, other.verbatim);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = order;
+        h = 31 * h + kdr;
+        h = 31 * h + wsh;
+        h = 31 * h + fecOrder;
+        h = 31 * h + (fecKey == null ? 0 : fecKey.hashCode());
+        return 31 * h + Arrays.hashCode(verbatim);
+    }
+}
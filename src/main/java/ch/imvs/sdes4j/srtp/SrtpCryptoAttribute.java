@@ -1,13 +1,31 @@
 package ch.imvs.sdes4j.srtp;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import ch.imvs.sdes4j.AsciiSequence;
 import ch.imvs.sdes4j.CryptoAttribute;
+import ch.imvs.sdes4j.KeyParam;
+import ch.imvs.sdes4j.ParseContext;
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseResult;
+import ch.imvs.sdes4j.ParseUtils;
+import ch.imvs.sdes4j.SDesFactory;
+import ch.imvs.sdes4j.SessionParam;
 
 /**
  * Security descriptions attribute for SRTP media streams.
  * 
  * @author Ingo Bauersachs
  */
-public class SrtpCryptoAttribute extends CryptoAttribute {
+public class SrtpCryptoAttribute extends CryptoAttribute implements AutoCloseable {
+    /**
+     * The session params as a set; <code>null</code> until it is requested,
+     * unless the params were parsed. Discarded by {@link #invalidate()}.
+     */
+    private volatile SessionParamSet sessionParamSet;
+    private boolean shared;
+
     SrtpCryptoAttribute(){
     }
 
@@ -18,7 +36,225 @@ public class SrtpCryptoAttribute extends CryptoAttribute {
      * @return The parsed crypto data.
      */
     public static SrtpCryptoAttribute create(String encoded){
-        return (SrtpCryptoAttribute)CryptoAttribute.create(encoded, new SrtpSDesFactory());
+        return tryParse(encoded).getOrThrow();
+    }
+
+    /**
+     * Parses an SRTP crypto attribute without throwing on malformed input.
+     * 
+     * @param encoded The textual representation of the attribute.
+     * @return The parsed attribute, or the reason why it was rejected.
+     * @see #tryParse(CharSequence, int, int, SrtpSDesFactory)
+     */
+    public static ParseResult<SrtpCryptoAttribute> tryParse(String encoded) {
+        return tryParse(encoded, 0, encoded.length(), SrtpSDesFactory.getInstance());
+    }
+
+    /**
+     * Parses an SRTP crypto attribute from a range of a character sequence
+     * without throwing on malformed input.
+     * 
+     * @param s The sequence containing the attribute.
+     * @param start The inclusive start of the attribute.
+     * @param end The exclusive end of the attribute.
+     * @return The parsed attribute, or the reason why it was rejected.
+     * @see #tryParse(CharSequence, int, int, SrtpSDesFactory)
+     */
+    public static ParseResult<SrtpCryptoAttribute> tryParse(CharSequence s, int start, int end) {
+        return tryParse(s, start, end, SrtpSDesFactory.getInstance());
+    }
+
+    /**
+     * Parses an SRTP crypto attribute from US-ASCII encoded bytes in an array
+     * without throwing on malformed input. The error offset is relative to
+     * <tt>offset</tt>.
+     * 
+     * @param buf The array containing the textual representation of the
+     *            attribute.
+     * @param offset The index of the first byte of the attribute.
+     * @param length The number of bytes of the attribute.
+     * @return The parsed attribute, or the reason why it was rejected.
+     */
+    public static ParseResult<SrtpCryptoAttribute> tryParse(byte[] buf, int offset, int length) {
+        return tryParse(new AsciiSequence(buf, offset, length), 0, length, SrtpSDesFactory.getInstance());
+    }
+
+    /**
+     * Parses an SRTP crypto attribute from a range of a character sequence
+     * without throwing on malformed input. The parsers of the parts report
+     * errors as a code and an offset instead of an exception, so a flood of
+     * malformed offers does not spend its time in filling stack traces.
+     * <p>
+     * The attribute is created with
+     * {@link SrtpSDesFactory#createCryptoAttribute()}, and its parts with the
+     * settings and the {@link SessionParamRegistry} of the factory, but not
+     * with its other create methods.
+     * 
+     * @param s The sequence containing the attribute.
+     * @param start The inclusive start of the attribute.
+     * @param end The exclusive end of the attribute.
+     * @param f The factory that creates the attribute.
+     * @return The parsed attribute, or the reason why it was rejected and the
+     *         index in <tt>s</tt> where the invalid part starts.
+     */
+    public static ParseResult<SrtpCryptoAttribute> tryParse(CharSequence s, int start, int end, SrtpSDesFactory f) {
+        ParseStatus status = new ParseStatus();
+        SrtpCryptoAttribute a = parse(s, start, end, f, status);
+        return a != null ? ParseResult.success(a) : status.<SrtpCryptoAttribute>result();
+    }
+
+    private static SrtpCryptoAttribute parse(CharSequence s, int start, int end, SrtpSDesFactory f, ParseStatus status) {
+        int pos = ParseUtils.skipWhitespace(s, start, end);
+        int tokenEnd = ParseUtils.tokenEnd(s, pos, end);
+        long tag = ParseUtils.parseDecimal(s, pos, tokenEnd, 99999999);
+        if (tag < 0) {
+            status.fail(ParseError.INVALID_TAG, pos);
+            return null;
+        }
+
+        pos = ParseUtils.skipWhitespace(s, tokenEnd, end);
+        if (pos == end) {
+            status.fail(ParseError.MISSING_CRYPTO_SUITE, pos);
+            return null;
+        }
+        tokenEnd = ParseUtils.tokenEnd(s, pos, end);
+        SrtpCryptoSuite suite = SrtpCryptoSuite.lookup(s, pos, tokenEnd);
+        if (suite == null || !suite.isSupported()) {
+            status.fail(suite == null ? ParseError.UNKNOWN_CRYPTO_SUITE : ParseError.UNSUPPORTED_CRYPTO_SUITE, pos);
+            return null;
+        }
+
+        pos = ParseUtils.skipWhitespace(s, tokenEnd, end);
+        if (pos == end) {
+            status.fail(ParseError.MISSING_KEY_PARAMS, pos);
+            return null;
+        }
+        tokenEnd = ParseUtils.tokenEnd(s, pos, end);
+        boolean lazy = f.isLazyKeyDecoding();
+        KeyMaterialPool pool = f.getKeyMaterialPool();
+        SrtpKeyParam[] keyParams = SrtpKeyParam.parseList(s, pos, tokenEnd, lazy, pool, status);
+        if (keyParams == null)
+            return null;
+
+        try {
+            SrtpCryptoAttribute result = f.createCryptoAttribute();
+            result.tag = (int) tag;
+            result.cryptoSuite = suite;
+            result.keyParams = keyParams;
+            SessionParamSet set = SessionParamSet.parse(s, tokenEnd, end, lazy, pool, status);
+            if (set != null) {
+                result.sessionParamSet = set;
+                return result;
+            }
+            if (!status.failed()) {
+                // unknown or repeated params
+                result.sessionParams = createSessionParams(s, tokenEnd, end, f, status);
+                if (result.sessionParams != null)
+                    return result;
+            }
+        }
+        catch (RuntimeException e) {
+            // e.g. an exhausted key material pool
+            FecKeySessionParam.release(keyParams);
+            throw e;
+        }
+        FecKeySessionParam.release(keyParams);
+        return null;
+    }
+
+    private static SrtpSessionParam[] createSessionParams(CharSequence s, int start, int end, SrtpSDesFactory f,
+            ParseStatus status) {
+        int count = 0;
+        for (int pos = ParseUtils.skipWhitespace(s, start, end); pos < end; count++)
+            pos = ParseUtils.skipWhitespace(s, ParseUtils.tokenEnd(s, pos, end), end);
+
+        SrtpSessionParam[] params = f.createSessionParamArray(count);
+        SessionParamRegistry registry = f.getSessionParamRegistry();
+        int pos = ParseUtils.skipWhitespace(s, start, end);
+        for (int i = 0; i < count; i++) {
+            int tokenEnd = ParseUtils.tokenEnd(s, pos, end);
+            try {
+                params[i] = registry.create(s, pos, tokenEnd, f.isLazyKeyDecoding(), f.getKeyMaterialPool(), status);
+            }
+            catch (RuntimeException e) {
+                releaseFecKeys(params);
+                throw e;
+            }
+            if (params[i] == null) {
+                releaseFecKeys(params);
+                return null;
+            }
+            pos = ParseUtils.skipWhitespace(s, tokenEnd, end);
+        }
+        return params;
+    }
+
+    private static void releaseFecKeys(SessionParam[] params) {
+        if (params == null)
+            return;
+        for (SessionParam p : params) {
+            if (p instanceof FecKeySessionParam)
+                FecKeySessionParam.release(((FecKeySessionParam) p).getKeyParams());
+        }
+    }
+
+    /**
+     * Creates an SRTP crypto attribute from US-ASCII encoded bytes in a
+     * buffer, without decoding them into a String first. The inline keys are
+     * decoded straight from the buffer.
+     * 
+     * @param buf The buffer containing the textual representation of the
+     *            attribute.
+     * @param offset The absolute index of the first byte of the attribute.
+     * @param length The number of bytes of the attribute.
+     * @return The parsed crypto data.
+     */
+    public static SrtpCryptoAttribute parse(ByteBuffer buf, int offset, int length){
+        return tryParse(new AsciiSequence(buf, offset, length), 0, length).getOrThrow();
+    }
+
+    /**
+     * Creates an SRTP crypto attribute from US-ASCII encoded bytes in an
+     * array, without decoding them into a String first.
+     * 
+     * @param buf The array containing the textual representation of the
+     *            attribute.
+     * @param offset The index of the first byte of the attribute.
+     * @param length The number of bytes of the attribute.
+     * @return The parsed crypto data.
+     */
+    public static SrtpCryptoAttribute parse(byte[] buf, int offset, int length){
+        return tryParse(buf, offset, length).getOrThrow();
+    }
+
+    /**
+     * Creates an SRTP crypto attribute from US-ASCII encoded bytes in a
+     * buffer, reusing the scratch state of a parse context.
+     * 
+     * @param buf The buffer containing the textual representation of the
+     *            attribute.
+     * @param offset The absolute index of the first byte of the attribute.
+     * @param length The number of bytes of the attribute.
+     * @param ctx The scratch state, e.g. {@link ParseContext#forCurrentThread()}.
+     * @return The parsed crypto data.
+     */
+    public static SrtpCryptoAttribute parse(ByteBuffer buf, int offset, int length, ParseContext ctx){
+        return (SrtpCryptoAttribute)CryptoAttribute.parse(buf, offset, length, SrtpSDesFactory.getInstance(), ctx);
+    }
+
+    /**
+     * Creates an SRTP crypto attribute from US-ASCII encoded bytes in an
+     * array, reusing the scratch state of a parse context.
+     * 
+     * @param buf The array containing the textual representation of the
+     *            attribute.
+     * @param offset The index of the first byte of the attribute.
+     * @param length The number of bytes of the attribute.
+     * @param ctx The scratch state, e.g. {@link ParseContext#forCurrentThread()}.
+     * @return The parsed crypto data.
+     */
+    public static SrtpCryptoAttribute parse(byte[] buf, int offset, int length, ParseContext ctx){
+        return (SrtpCryptoAttribute)CryptoAttribute.parse(buf, offset, length, SrtpSDesFactory.getInstance(), ctx);
     }
 
     /**
@@ -35,7 +271,7 @@ public class SrtpCryptoAttribute extends CryptoAttribute {
      * @return a parsed SRTP crypto attribute.
      */
     public static SrtpCryptoAttribute create(String tag, String cryptoSuite, String keyParams, String sessionParams){
-        return (SrtpCryptoAttribute) CryptoAttribute.create(tag, cryptoSuite, keyParams, sessionParams, new SrtpSDesFactory());
+        return (SrtpCryptoAttribute) CryptoAttribute.create(tag, cryptoSuite, keyParams, sessionParams, SrtpSDesFactory.getInstance());
     }
 
     /**
@@ -56,13 +292,135 @@ public class SrtpCryptoAttribute extends CryptoAttribute {
         return (SrtpCryptoSuite) super.getCryptoSuite();
     }
 
+    /**
+     * {@inheritDoc} The array is a copy if the attribute is shared by a
+     * {@link SrtpParseCache}.
+     */
     @Override
     public SrtpKeyParam[] getKeyParams() {
-        return (SrtpKeyParam[]) super.getKeyParams();
+        SrtpKeyParam[] keyParams = (SrtpKeyParam[]) super.getKeyParams();
+        return shared ? keyParams.clone() : keyParams;
     }
 
+    /**
+     * {@inheritDoc} After parsing, the array is only created on the first
+     * call; until then, the protected {@link #sessionParams} field is
+     * <code>null</code>. The array is a copy if the attribute is shared by a
+     * {@link SrtpParseCache}.
+     */
     @Override
     public SrtpSessionParam[] getSessionParams() {
-        return (SrtpSessionParam[]) super.getSessionParams();
+        SrtpSessionParam[] sessionParams = (SrtpSessionParam[]) super.getSessionParams();
+        if (sessionParams == null) {
+            sessionParams = sessionParamSet.toArray();
+            this.sessionParams = sessionParams;
+        }
+        return shared ? sessionParams.clone() : sessionParams;
+    }
+
+    /**
+     * Gets the session params as a compact set with typed accessors, e.g. to
+     * check for <tt>UNENCRYPTED_SRTP</tt> without scanning the array.
+     * 
+     * @return The set of session params, never <code>null</code>.
+     */
+    public SessionParamSet getSessionParamSet() {
+        SessionParamSet set = sessionParamSet;
+        if (set == null) {
+            set = SessionParamSet.of((SrtpSessionParam[]) super.getSessionParams());
+            sessionParamSet = set;
+        }
+        return set;
+    }
+
+    @Override
+    protected void parseSessionParams(CharSequence s, int start, int end, SDesFactory f, ParseContext ctx) {
+        SrtpSDesFactory sf = f instanceof SrtpSDesFactory ? (SrtpSDesFactory) f : null;
+        ParseStatus status = new ParseStatus();
+        SessionParamSet set = SessionParamSet.parse(s, start, end, sf != null && sf.isLazyKeyDecoding(),
+            sf == null ? null : sf.getKeyMaterialPool(), status);
+        if (status.failed())
+            throw status.toException();
+        if (set == null) {
+            // unknown or repeated params, create them with the factory
+            super.parseSessionParams(s, start, end, f, ctx);
+            return;
+        }
+        // the array is created on demand by getSessionParams()
+        super.invalidate();
+        sessionParams = null;
+        sessionParamSet = set;
+    }
+
+    @Override
+    protected void invalidate() {
+        super.invalidate();
+        // keep the params that were only parsed into the set
+        if (sessionParams == null && sessionParamSet != null)
+            sessionParams = sessionParamSet.toArray();
+        sessionParamSet = null;
+    }
+
+    @Override
+    protected void encodeSessionParamsTo(Appendable out) throws IOException {
+        SessionParamSet set = sessionParamSet;
+        if (set != null)
+            set.encodeTo(out);
+        else
+            super.encodeSessionParamsTo(out);
+    }
+
+    /**
+     * Copies the key params, as {@link #close()} releases them.
+     */
+    @Override
+    protected KeyParam[] adoptKeyParams(KeyParam[] keyParams) {
+        SrtpKeyParam[] copy = new SrtpKeyParam[keyParams.length];
+        try {
+            for (int i = 0; i < copy.length; i++)
+                copy[i] = ((SrtpKeyParam) keyParams[i]).copy();
+        }
+        catch (RuntimeException e) {
+            FecKeySessionParam.release(copy);
+            throw e;
+        }
+        return copy;
+    }
+
+    /**
+     * Wipes the keys of the key params and of <tt>FEC_KEY</tt>: off-heap key
+     * material is returned to its pool (see
+     * {@link SrtpSDesFactory#setKeyMaterialPool}), keys on the heap are
+     * overwritten with zeros, and the cached encoded form of the attribute is
+     * dropped. Afterwards, the keys can neither be read nor encoded. Arrays
+     * passed to the constructors of the key params are wiped as well.
+     * 
+     * @throws IllegalStateException when the attribute is shared by a
+     *             {@link SrtpParseCache}.
+     */
+    @Override
+    public void close() {
+        if (shared)
+            throw new IllegalStateException("The attribute is shared by a parse cache");
+        FecKeySessionParam.release(getKeyParams());
+        releaseFecKeys(getSessionParams());
+        invalidate();
+    }
+
+    /**
+     * Makes the attribute read-only, as it is shared by the callers of a
+     * {@link SrtpParseCache}: the arrays of key and session params and the
+     * keys are handed out as copies, and {@link #close()} is rejected. Lazy
+     * keys are decoded now, so that the attribute is not modified after it
+     * was published to other threads.
+     */
+    void share() {
+        for (SrtpKeyParam k : getKeyParams())
+            k.share();
+        for (SrtpSessionParam p : getSessionParams()) {
+            if (p instanceof FecKeySessionParam)
+                ((FecKeySessionParam) p).share();
+        }
+        shared = true;
     }
 }
@@ -13,7 +13,12 @@
  */
 package ch.imvs.sdes4j.srtp;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import ch.imvs.sdes4j.AsciiAppendable;
 import ch.imvs.sdes4j.CryptoSuite;
+import ch.imvs.sdes4j.ParseUtils;
 
 /**
  * Crypto suite details for the SRTP grammar.
@@ -44,148 +49,174 @@ public class SrtpCryptoSuite implements CryptoSuite {
     public final static int HASH_SEED128_CCM_80 = 3;
     public final static int HASH_SEED128_GCM_96 = 4;
 
+    /**
+     * The size of tables indexed by {@link #getIndex()}.
+     */
+    static final int INDEX_COUNT = 32;
+
+    /**
+     * Shared instances of all known suites, indexed by {@link #hash}.
+     */
+    private static final SrtpCryptoSuite[] SUITES = new SrtpCryptoSuite[INDEX_COUNT];
+
+    static {
+        // as per http://www.iana.org/assignments/sdp-security-descriptions
+        register(new SrtpCryptoSuite(AES_CM_128_HMAC_SHA1_80, ENCRYPTION_AES128_CM, HASH_HMAC_SHA1, 128, 112, 80, 80, 160, 160, 0x1000000000000L, 0x80000000L, true));
+        register(new SrtpCryptoSuite(AES_CM_128_HMAC_SHA1_32, ENCRYPTION_AES128_CM, HASH_HMAC_SHA1, 128, 112, 32, 80, 160, 160, 0x1000000000000L, 0x80000000L, true));
+        register(new SrtpCryptoSuite(F8_128_HMAC_SHA1_80, ENCRYPTION_AES128_F8, HASH_HMAC_SHA1, 128, 112, 80, 80, 160, 160, 0x1000000000000L, 0x80000000L, true));
+        // FIXME all that SEED stuff is not precisely declared in RFC5669
+        register(new SrtpCryptoSuite(SEED_CTR_128_HMAC_SHA1_80, ENCRYPTION_SEED128_CTR, HASH_HMAC_SHA1, 128, 128, 80, 80, -1, -1, 0x1000000000000L, 0x80000000L, false));
+        register(new SrtpCryptoSuite(SEED_128_CCM_80, ENCRYPTION_SEED128_CCM_80, HASH_SEED128_CCM_80, 128, 128, 80, 80, -1, -1, 0x1000000000000L, 0x80000000L, false));
+        register(new SrtpCryptoSuite(SEED_128_GCM_96, ENCRYPTION_SEED128_GCM_96, HASH_SEED128_GCM_96, 128, 128, 96, 96, -1, -1, 0x1000000000000L, 0x80000000L, false));
+        register(new SrtpCryptoSuite(AES_192_CM_HMAC_SHA1_80, ENCRYPTION_AES192_CM, HASH_HMAC_SHA1, 192, 112, 80, 80, 160, 160, 0x80000000L, 0x80000000L, true));
+        register(new SrtpCryptoSuite(AES_192_CM_HMAC_SHA1_32, ENCRYPTION_AES192_CM, HASH_HMAC_SHA1, 192, 112, 32, 80, 160, 160, 0x80000000L, 0x80000000L, true));
+        register(new SrtpCryptoSuite(AES_256_CM_HMAC_SHA1_80, ENCRYPTION_AES256_CM, HASH_HMAC_SHA1, 256, 112, 80, 80, 160, 160, 0x80000000L, 0x80000000L, true));
+        register(new SrtpCryptoSuite(AES_256_CM_HMAC_SHA1_32, ENCRYPTION_AES256_CM, HASH_HMAC_SHA1, 256, 112, 32, 80, 160, 160, 0x80000000L, 0x80000000L, true));
+    }
+
     private final String suite;
+    private final int index;
 
-    private int encryptionAlgorithm;
-    private int hashAlgoritm;
-    private int encKeyLength;
-    private int saltKeyLength;
-    private int srtpAuthTagLength;
-    private int srtcpAuthTagLength;
-    private int srtpAuthKeyLength;
-    private int srtcpAuthKeyLength;
-    private long srtpLifetime;
-    private long srtcpLifetime;
+    private final int encryptionAlgorithm;
+    private final int hashAlgoritm;
+    private final int encKeyLength;
+    private final int saltKeyLength;
+    private final int srtpAuthTagLength;
+    private final int srtcpAuthTagLength;
+    private final int srtpAuthKeyLength;
+    private final int srtcpAuthKeyLength;
+    private final long srtpLifetime;
+    private final long srtcpLifetime;
+    private final boolean supported;
 
+    /**
+     * Creates a copy of the shared instance of a suite. The copy is equal to
+     * the shared instance, but is not the same object.
+     * 
+     * @param suite The suite name that defines the cryptographic parameters.
+     * @deprecated Use {@link #forName(String)}, which returns the shared
+     *             instance without allocating a new object.
+     */
+    @Deprecated
     public SrtpCryptoSuite(String suite) {
+        this(forName(suite));
+    }
+
+    private SrtpCryptoSuite(SrtpCryptoSuite other) {
+        this(other.suite, other.encryptionAlgorithm, other.hashAlgoritm,
+            other.encKeyLength, other.saltKeyLength,
+            other.srtpAuthTagLength, other.srtcpAuthTagLength,
+            other.srtpAuthKeyLength, other.srtcpAuthKeyLength,
+            other.srtpLifetime, other.srtcpLifetime, other.supported);
+    }
+
+    private SrtpCryptoSuite(String suite, int encryptionAlgorithm, int hashAlgoritm,
+            int encKeyLength, int saltKeyLength,
+            int srtpAuthTagLength, int srtcpAuthTagLength,
+            int srtpAuthKeyLength, int srtcpAuthKeyLength,
+            long srtpLifetime, long srtcpLifetime, boolean supported) {
         this.suite = suite;
-        // as per http://www.iana.org/assignments/sdp-security-descriptions
-        if (suite.equals(AES_CM_128_HMAC_SHA1_80)) {
-            encryptionAlgorithm = ENCRYPTION_AES128_CM;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 128;
-            saltKeyLength = 112;
-            srtpAuthTagLength = 80;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = 160;
-            srtcpAuthKeyLength = 160;
-            srtpLifetime = 0x1000000000000L;
-            srtcpLifetime = 0x80000000L;
-        }
-        else if (suite.equals(AES_CM_128_HMAC_SHA1_32)) {
-            encryptionAlgorithm = ENCRYPTION_AES128_CM;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 128;
-            saltKeyLength = 112;
-            srtpAuthTagLength = 32;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = 160;
-            srtcpAuthKeyLength = 160;
-            srtpLifetime = 0x1000000000000L;
-            srtcpLifetime = 0x80000000L;
-        }
-        else if (suite.equals(F8_128_HMAC_SHA1_80)) {
-            encryptionAlgorithm = ENCRYPTION_AES128_F8;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 128;
-            saltKeyLength = 112;
-            srtpAuthTagLength = 80;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = 160;
-            srtcpAuthKeyLength = 160;
-            srtpLifetime = 0x1000000000000L;
-            srtcpLifetime = 0x80000000L;
-        }
-        // FIXME all that SEED stuff is not precisely declared in RFC5669
-        else if (suite.equals(SEED_CTR_128_HMAC_SHA1_80)) {
-            encryptionAlgorithm = ENCRYPTION_SEED128_CTR;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 128;
-            saltKeyLength = 128;
-            srtpAuthTagLength = 80;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = -1;
-            srtcpAuthKeyLength = -1;
-            srtpLifetime = 0x1000000000000L;
-            srtcpLifetime = 0x80000000L;
-            throw new UnsupportedOperationException("SEED parameters are not known for sure");
-        }
-        else if (suite.equals(SEED_128_CCM_80)) {
-            encryptionAlgorithm = ENCRYPTION_SEED128_CCM_80;
-            hashAlgoritm = HASH_SEED128_CCM_80;
-            encKeyLength = 128;
-            saltKeyLength = 128;
-            srtpAuthTagLength = 80;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = -1;
-            srtcpAuthKeyLength = -1;
-            srtpLifetime = 0x1000000000000L;
-            srtcpLifetime = 0x80000000L;
-            throw new UnsupportedOperationException("SEED parameters are not known for sure");
-        }
-        else if (suite.equals(SEED_128_GCM_96)) {
-            encryptionAlgorithm = ENCRYPTION_SEED128_GCM_96;
-            hashAlgoritm = HASH_SEED128_GCM_96;
-            encKeyLength = 128;
-            saltKeyLength = 128;
-            srtpAuthTagLength = 96;
-            srtcpAuthTagLength = 96;
-            srtpAuthKeyLength = -1;
-            srtcpAuthKeyLength = -1;
-            srtpLifetime = 0x1000000000000L;
-            srtcpLifetime = 0x80000000L;
-            throw new UnsupportedOperationException("SEED parameters are not known for sure");
-        }
-        else if (suite.equals(AES_192_CM_HMAC_SHA1_80)) {
-            encryptionAlgorithm = ENCRYPTION_AES192_CM;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 192;
-            saltKeyLength = 112;
-            srtpAuthTagLength = 80;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = 160;
-            srtcpAuthKeyLength = 160;
-            srtpLifetime = 0x80000000L;
-            srtcpLifetime = 0x80000000L;
-        }
-        else if (suite.equals(AES_192_CM_HMAC_SHA1_32)) {
-            encryptionAlgorithm = ENCRYPTION_AES192_CM;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 192;
-            saltKeyLength = 112;
-            srtpAuthTagLength = 32;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = 160;
-            srtcpAuthKeyLength = 160;
-            srtpLifetime = 0x80000000L;
-            srtcpLifetime = 0x80000000L;
-        }
-        else if (suite.equals(AES_256_CM_HMAC_SHA1_80)) {
-            encryptionAlgorithm = ENCRYPTION_AES256_CM;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 256;
-            saltKeyLength = 112;
-            srtpAuthTagLength = 80;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = 160;
-            srtcpAuthKeyLength = 160;
-            srtpLifetime = 0x80000000L;
-            srtcpLifetime = 0x80000000L;
-        }
-        else if (suite.equals(AES_256_CM_HMAC_SHA1_32)) {
-            encryptionAlgorithm = ENCRYPTION_AES256_CM;
-            hashAlgoritm = HASH_HMAC_SHA1;
-            encKeyLength = 256;
-            saltKeyLength = 112;
-            srtpAuthTagLength = 32;
-            srtcpAuthTagLength = 80;
-            srtpAuthKeyLength = 160;
-            srtcpAuthKeyLength = 160;
-            srtpLifetime = 0x80000000L;
-            srtcpLifetime = 0x80000000L;
-        }
-        else
+        this.index = hash(suite, 0, suite.length());
+        this.encryptionAlgorithm = encryptionAlgorithm;
+        this.hashAlgoritm = hashAlgoritm;
+        this.encKeyLength = encKeyLength;
+        this.saltKeyLength = saltKeyLength;
+        this.srtpAuthTagLength = srtpAuthTagLength;
+        this.srtcpAuthTagLength = srtcpAuthTagLength;
+        this.srtpAuthKeyLength = srtpAuthKeyLength;
+        this.srtcpAuthKeyLength = srtcpAuthKeyLength;
+        this.srtpLifetime = srtpLifetime;
+        this.srtcpLifetime = srtcpLifetime;
+        this.supported = supported;
+    }
+
+    private static void register(SrtpCryptoSuite suite) {
+        int h = hash(suite.suite, 0, suite.suite.length());
+        if (SUITES[h] != null)
+            throw new IllegalStateException("Suite hash collision for " + suite.suite);
+        SUITES[h] = suite;
+    }
+
+    /**
+     * Perfect hash over the known suite names, derived from the length and
+     * two characters of the name.
+     */
+    private static int hash(CharSequence s, int start, int end) {
+        int length = end - start;
+        if (length < 5)
+            return -1;
+        return (s.charAt(start + 4) + s.charAt(end - 1) + length) & (INDEX_COUNT - 1);
+    }
+
+    /**
+     * Gets the shared, immutable instance of a suite.
+     * 
+     * @param suite The suite name that defines the cryptographic parameters.
+     * @return The shared instance of the suite.
+     * @throws IllegalArgumentException when the suite is not known.
+     * @throws UnsupportedOperationException when the suite is known but its
+     *             parameters are not.
+     */
+    public static SrtpCryptoSuite forName(String suite) {
+        return forName(suite, 0, suite.length());
+    }
+
+    /**
+     * Gets the shared, immutable instance of a suite whose name is contained
+     * in a range of a character sequence. The lookup takes constant time and
+     * does not create a String.
+     * 
+     * @param s The sequence containing the suite name.
+     * @param start The inclusive start of the suite name.
+     * @param end The exclusive end of the suite name.
+     * @return The shared instance of the suite.
+     * @throws IllegalArgumentException when the suite is not known.
+     * @throws UnsupportedOperationException when the suite is known but its
+     *             parameters are not.
+     */
+    public static SrtpCryptoSuite forName(CharSequence s, int start, int end) {
+        SrtpCryptoSuite suite = lookup(s, start, end);
+        if (suite == null)
             throw new IllegalArgumentException("Unknown crypto suite");
+        if (!suite.supported)
+            throw new UnsupportedOperationException("SEED parameters are not known for sure");
+        return suite;
+    }
+
+    /**
+     * Looks up a suite, including the unsupported ones, without throwing.
+     * 
+     * @param s The sequence containing the suite name.
+     * @param start The inclusive start of the suite name.
+     * @param end The exclusive end of the suite name.
+     * @return The shared instance of the suite, or <code>null</code> if the
+     *         suite is not known.
+     */
+    static SrtpCryptoSuite lookup(CharSequence s, int start, int end) {
+        int h = hash(s, start, end);
+        SrtpCryptoSuite suite = h < 0 ? null : SUITES[h];
+        if (suite == null || !ParseUtils.regionEquals(s, start, end, suite.suite))
+            return null;
+        return suite;
+    }
+
+    /**
+     * Determines if the parameters of this suite are known.
+     * 
+     * @return <code>false</code> for the SEED suites.
+     */
+    boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Gets the slot of this suite in the registry, which is unique among the
+     * known suites and can be used to index small lookup tables.
+     * 
+     * @return The index in the range 0..{@value #INDEX_COUNT}-1.
+     */
+    int getIndex() {
+        return index;
     }
 
     public int getEncryptionAlgorithm() {
@@ -233,9 +264,27 @@ public class SrtpCryptoSuite implements CryptoSuite {
         return suite;
     }
 
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(suite);
+    }
+
+    @Override
+    public void encodeTo(ByteBuffer out) {
+        try {
+            encodeTo(new AsciiAppendable(out));
+        }
+        catch (IOException e) {
+            // AsciiAppendable does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
-        if(obj instanceof SrtpCryptoSuite && obj != null)
+        if (obj == this)
+            return true;
+        if (obj instanceof SrtpCryptoSuite)
             return suite.equals(((SrtpCryptoSuite)obj).suite);
         return false;
     }
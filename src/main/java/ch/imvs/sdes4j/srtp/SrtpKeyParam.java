@@ -13,10 +13,15 @@
  */
 package ch.imvs.sdes4j.srtp;
 
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.codec.binary.StringUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+import ch.imvs.sdes4j.AsciiAppendable;
+import ch.imvs.sdes4j.EncodeUtils;
 import ch.imvs.sdes4j.KeyParam;
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseUtils;
 
 /**
  * SRTP security descriptions define the use of the "inline" key method. Use of
@@ -27,6 +32,9 @@ import ch.imvs.sdes4j.KeyParam;
  * and all policy related to that master key, including how long it can be used
  * (lifetime) and whether it uses a master key identifier (MKI) to associate an
  * incoming SRTP packet with a particular master key.
+ * <p>
+ * The key is either kept on the heap, or off-heap as {@link SecretKeyMaterial}
+ * when the key parameter was created with a {@link KeyMaterialPool}.
  * 
  * @author Ingo Bauersachs
  * 
@@ -37,11 +45,22 @@ public class SrtpKeyParam implements KeyParam {
      */
     public final static String KEYMETHOD_INLINE = "inline";
 
+    final static String KEYMETHOD_INLINE_PREFIX = KEYMETHOD_INLINE + ":";
+
+    private final static byte[] NO_MKI = new byte[0];
+
     private final String keyMethod = KEYMETHOD_INLINE;
-    private byte[] key;
-    private int lifetime;
-    private int mki;
-    private int mkiLength;
+    private volatile byte[] key;
+    private SecretKeyMaterial material;
+    private String encoded;
+    private int encodedStart;
+    private int encodedEnd;
+    private int keyStart;
+    private int keyEnd;
+    private long lifetime;
+    private byte[] mki = NO_MKI;
+    private volatile boolean released;
+    private boolean shared;
 
     /**
      * Creates a new instance of this class from known parameters.
@@ -58,15 +77,87 @@ public class SrtpKeyParam implements KeyParam {
      * @param mkiLength Length of the MKI field in SRTP packets.
      */
     public SrtpKeyParam(String keyMethod, byte[] key, int lifetime, int mki, int mkiLength) {
+        this(keyMethod, key, (long) lifetime, mki, mkiLength);
+    }
+
+    /**
+     * Creates a new instance of this class from known parameters with a
+     * lifetime beyond the range of an <tt>int</tt>.
+     * 
+     * @param keyMethod The key method for this key parameter. Only
+     *            {@value #KEYMETHOD_INLINE} is currently supported.
+     * @param key Concatenated master key and salt.
+     * @param lifetime The master key lifetime (max number of SRTP or SRTCP packets
+     *            using this master key)
+     * @param mki The master key identifier in the SRTP packets.
+     * @param mkiLength Length of the MKI field in SRTP packets.
+     */
+    public SrtpKeyParam(String keyMethod, byte[] key, long lifetime, int mki, int mkiLength) {
+        this(keyMethod, key, lifetime, toMki(mki, mkiLength));
+    }
+
+    /**
+     * Creates a new instance of this class from known parameters with an MKI
+     * of arbitrary length.
+     * 
+     * @param keyMethod The key method for this key parameter. Only
+     *            {@value #KEYMETHOD_INLINE} is currently supported.
+     * @param key Concatenated master key and salt.
+     * @param lifetime The master key lifetime (max number of SRTP or SRTCP packets
+     *            using this master key)
+     * @param mki The master key identifier as it appears in the SRTP packets,
+     *            1 to 128 bytes, or <code>null</code> if no MKI is used.
+     */
+    public SrtpKeyParam(String keyMethod, byte[] key, long lifetime, byte[] mki) {
+        this(keyMethod, lifetime, mki);
+        this.key = key;
+    }
+
+    /**
+     * Creates a new instance of this class from known parameters with
+     * off-heap key material. The key parameter does not take ownership of
+     * the key material; closing it is up to the caller, e.g. with
+     * {@link SrtpCryptoAttribute#close()}.
+     * 
+     * @param keyMethod The key method for this key parameter. Only
+     *            {@value #KEYMETHOD_INLINE} is currently supported.
+     * @param key Concatenated master key and salt.
+     * @param lifetime The master key lifetime (max number of SRTP or SRTCP packets
+     *            using this master key)
+     * @param mki The master key identifier as it appears in the SRTP packets,
+     *            1 to 128 bytes, or <code>null</code> if no MKI is used.
+     */
+    public SrtpKeyParam(String keyMethod, SecretKeyMaterial key, long lifetime, byte[] mki) {
+        this(keyMethod, lifetime, mki);
+        if (key == null)
+            throw new IllegalArgumentException("key must be present");
+        this.material = key;
+    }
+
+    private SrtpKeyParam(String keyMethod, long lifetime, byte[] mki) {
         if (!keyMethod.equals(KEYMETHOD_INLINE))
             throw new IllegalArgumentException("key method must be inline");
-        if (mkiLength < 0 || mkiLength > 128)
+        if (lifetime < 0)
+            throw new IllegalArgumentException("lifetime must not be negative");
+        if (mki != null && mki.length > 128)
             throw new IllegalArgumentException("mki length must be in range 1..128 inclusive or 0 to indicate default");
 
-        this.key = key;
         this.lifetime = lifetime;
-        this.mki = mki;
-        this.mkiLength = mkiLength;
+        this.mki = mki == null || mki.length == 0 ? NO_MKI : mki.clone();
+    }
+
+    private static byte[] toMki(int mki, int mkiLength) {
+        if (mkiLength < 0 || mkiLength > 128)
+            throw new IllegalArgumentException("mki length must be in range 1..128 inclusive or 0 to indicate default");
+        if (mkiLength == 0)
+            return NO_MKI;
+        if (mki < 0 || (mkiLength < 4 && mki >>> (mkiLength * 8) != 0))
+            throw new IllegalArgumentException("mki does not fit into the mki length");
+
+        byte[] b = new byte[mkiLength];
+        for (int i = mkiLength - 1, v = mki; i >= 0 && v != 0; i--, v >>>= 8)
+            b[i] = (byte) v;
+        return b;
     }
 
     /**
@@ -75,30 +166,211 @@ public class SrtpKeyParam implements KeyParam {
      * @param keyParam The textual representation of the key parameter.
      */
     public SrtpKeyParam(String keyParam) {
-        if (!keyParam.startsWith(keyMethod + ":"))
-            throw new IllegalArgumentException("Unknown key method in <" + keyParam + ">");
+        this(keyParam, 0, keyParam.length());
+    }
 
-        keyParam = keyParam.substring(KEYMETHOD_INLINE.length() + 1);
-        String[] parts = keyParam.split("\\|");
-        key = Base64.decodeBase64(parts[0]);
-        if(key.length == 0)
-            throw new IllegalArgumentException("key must be present");
+    /**
+     * Creates a new instance of this class from a range of a character sequence
+     * that contains the textual representation.
+     * 
+     * @param keyParam The sequence containing the key parameter.
+     * @param start The inclusive start of the key parameter.
+     * @param end The exclusive end of the key parameter.
+     */
+    public SrtpKeyParam(CharSequence keyParam, int start, int end) {
+        this(keyParam, start, end, false);
+    }
+
+    /**
+     * Creates a new instance of this class from a range of a character sequence
+     * that contains the textual representation, optionally without decoding
+     * the key material.
+     * <p>
+     * In lazy mode, the key is only validated and the text of the key
+     * parameter is kept: by reference if the String holds nothing else, and
+     * as a copy of the key parameter otherwise, so that e.g. a whole SDP body
+     * is not retained. The key is decoded on the first call to
+     * {@link #getKey()} and {@link #encode()} returns the original text
+     * as-is.
+     * 
+     * @param keyParam The sequence containing the key parameter.
+     * @param start The inclusive start of the key parameter.
+     * @param end The exclusive end of the key parameter.
+     * @param lazy <code>true</code> to defer decoding the key until it is
+     *            used.
+     */
+    public SrtpKeyParam(CharSequence keyParam, int start, int end, boolean lazy) {
+        this(keyParam, start, end, lazy, null);
+    }
+
+    /**
+     * Creates a new instance of this class from a range of a character sequence
+     * that contains the textual representation. The key is decoded directly
+     * into a slot of a pool, without a copy on the heap. The key parameter
+     * does not take ownership of the key material, see
+     * {@link #getKeyMaterial()}.
+     * 
+     * @param keyParam The sequence containing the key parameter.
+     * @param start The inclusive start of the key parameter.
+     * @param end The exclusive end of the key parameter.
+     * @param pool The pool that stores the key material.
+     */
+    public SrtpKeyParam(CharSequence keyParam, int start, int end, KeyMaterialPool pool) {
+        this(keyParam, start, end, false, pool);
+    }
+
+    SrtpKeyParam(CharSequence keyParam, int start, int end, boolean lazy, KeyMaterialPool pool) {
+        ParseStatus status = new ParseStatus();
+        if (!init(keyParam, start, end, lazy, pool, status))
+            throw status.toException();
+    }
+
+    /**
+     * Parses a key parameter without throwing on malformed input.
+     * 
+     * @param s The sequence containing the key parameter.
+     * @param start The inclusive start of the key parameter.
+     * @param end The exclusive end of the key parameter.
+     * @param lazy <code>true</code> to defer decoding the key.
+     * @param pool The pool that stores the key, or <code>null</code> to keep
+     *            it on the heap.
+     * @param status Receives the error.
+     * @return The key parameter, or <code>null</code> if it is invalid.
+     */
+    static SrtpKeyParam parse(CharSequence s, int start, int end, boolean lazy, KeyMaterialPool pool, ParseStatus status) {
+        SrtpKeyParam k = new SrtpKeyParam(KEYMETHOD_INLINE, 0, NO_MKI);
+        return k.init(s, start, end, lazy, pool, status) ? k : null;
+    }
 
-        int partIndex = 1;
-        if (parts.length > 1 && !parts[1].contains(":")) {
-            if(parts[1].startsWith("2^"))
-                lifetime = (int)Math.pow(2, Double.valueOf(parts[1].substring(2)));
-            else
-                lifetime = Integer.valueOf(parts[1]);
-            partIndex++;
+    /**
+     * Parses a list of key parameters separated by <tt>;</tt> without
+     * throwing on malformed input. If one is invalid, or the key material
+     * pool is exhausted, the keys of those before it are released.
+     * 
+     * @param s The sequence containing the key parameters.
+     * @param start The inclusive start of the key parameters.
+     * @param end The exclusive end of the key parameters.
+     * @param lazy <code>true</code> to defer decoding the keys.
+     * @param pool The pool that stores the keys, or <code>null</code> to keep
+     *            them on the heap.
+     * @param status Receives the error.
+     * @return The key parameters, or <code>null</code> if one is invalid.
+     */
+    static SrtpKeyParam[] parseList(CharSequence s, int start, int end, boolean lazy, KeyMaterialPool pool, ParseStatus status) {
+        SrtpKeyParam[] keyParams = new SrtpKeyParam[ParseUtils.count(s, ';', start, end) + 1];
+        int pos = start;
+        for (int i = 0; i < keyParams.length; i++) {
+            int paramEnd = ParseUtils.indexOf(s, ';', pos, end);
+            if (paramEnd < 0)
+                paramEnd = end;
+            try {
+                keyParams[i] = parse(s, pos, paramEnd, lazy, pool, status);
+            }
+            catch (RuntimeException e) {
+                FecKeySessionParam.release(keyParams);
+                throw e;
+            }
+            if (keyParams[i] == null) {
+                FecKeySessionParam.release(keyParams);
+                return null;
+            }
+            pos = paramEnd + 1;
         }
-        if (parts.length > partIndex && parts[partIndex].contains(":")) {
-            String[] mkiParts = parts[partIndex].split(":");
-            mki = Integer.valueOf(mkiParts[0]);
-            mkiLength = Integer.valueOf(mkiParts[1]);
-            if (mkiLength < 1 || mkiLength > 128)
-                throw new IllegalArgumentException("mki length must be in range 1..128 inclusive");
+        return keyParams;
+    }
+
+    private boolean init(CharSequence keyParam, int start, int end, boolean lazy, KeyMaterialPool pool, ParseStatus status) {
+        if (!ParseUtils.startsWith(keyParam, start, end, KEYMETHOD_INLINE_PREFIX))
+            return status.fail(ParseError.UNKNOWN_KEY_METHOD, start);
+
+        int pos = start + KEYMETHOD_INLINE_PREFIX.length();
+        int fieldEnd = fieldEnd(keyParam, pos, end);
+        int keyLength = Base64Codec.decodedLength(keyParam, pos, fieldEnd);
+        if (keyLength <= 0 || (pool != null && keyLength > pool.getSlotSize()))
+            return status.fail(ParseError.INVALID_KEY, pos);
+
+        // the optional fields are parsed before the key is stored, so that
+        // invalid input does not take a slot of the pool
+        if (!parseLifetimeAndMki(keyParam, fieldEnd, end, status))
+            return false;
+
+        if (pool != null) {
+            material = pool.decode(keyParam, pos, fieldEnd);
+        }
+        else if (lazy) {
+            if (keyParam instanceof String && start == 0 && end == keyParam.length()) {
+                encoded = (String) keyParam;
+                encodedStart = start;
+                encodedEnd = end;
+                keyStart = pos;
+                keyEnd = fieldEnd;
+            }
+            else {
+                encoded = keyParam.subSequence(start, end).toString();
+                encodedEnd = end - start;
+                keyStart = pos - start;
+                keyEnd = fieldEnd - start;
+            }
+        }
+        else {
+            key = Base64Codec.decode(keyParam, pos, fieldEnd);
+        }
+        return true;
+    }
+
+    private boolean parseLifetimeAndMki(CharSequence keyParam, int fieldEnd, int end, ParseStatus status) {
+        if (fieldEnd == end)
+            return true;
+
+        int pos = fieldEnd + 1;
+        fieldEnd = fieldEnd(keyParam, pos, end);
+        int colon = ParseUtils.indexOf(keyParam, ':', pos, fieldEnd);
+        if (colon < 0) {
+            long lifetime = tryParseLifetime(keyParam, pos, fieldEnd);
+            if (lifetime < 0)
+                return status.fail(ParseError.INVALID_LIFETIME, pos);
+            this.lifetime = lifetime;
+            if (fieldEnd == end)
+                return true;
+
+            pos = fieldEnd + 1;
+            fieldEnd = fieldEnd(keyParam, pos, end);
+            colon = ParseUtils.indexOf(keyParam, ':', pos, fieldEnd);
         }
+
+        if (colon < 0 || fieldEnd != end)
+            return status.fail(ParseError.INVALID_KEY_PARAM, pos);
+
+        int mkiLength = (int) ParseUtils.parseDecimal(keyParam, colon + 1, end, 128);
+        if (mkiLength < 1)
+            return status.fail(ParseError.INVALID_MKI, pos);
+        byte[] mki = new byte[mkiLength];
+        if (!ParseUtils.parseDecimal(keyParam, pos, colon, mki, 0, mkiLength))
+            return status.fail(ParseError.INVALID_MKI, pos);
+        this.mki = mki;
+        return true;
+    }
+
+    private static int fieldEnd(CharSequence s, int pos, int end) {
+        int fieldEnd = ParseUtils.indexOf(s, '|', pos, end);
+        return fieldEnd < 0 ? end : fieldEnd;
+    }
+
+    /**
+     * Parses a lifetime that is either a decimal number or a power of 2,
+     * without throwing.
+     * 
+     * @param s The sequence containing the lifetime.
+     * @param start The inclusive start of the lifetime.
+     * @param end The exclusive end of the lifetime.
+     * @return The lifetime, or -1 if it is invalid.
+     */
+    static long tryParseLifetime(CharSequence s, int start, int end) {
+        if (ParseUtils.startsWith(s, start, end, "2^")) {
+            long exponent = ParseUtils.parseDecimal(s, start + 2, end, 62);
+            return exponent < 0 ? -1 : 1L << exponent;
+        }
+        return ParseUtils.parseDecimal(s, start, end, Long.MAX_VALUE);
     }
 
     /**
@@ -111,29 +383,180 @@ public class SrtpKeyParam implements KeyParam {
     }
 
     /**
-     * Gets the concatenated master key and salt.
+     * Gets the concatenated master key and salt. If this key parameter was
+     * parsed in lazy mode, the key is decoded on the first call. For off-heap
+     * keys, each call returns a new copy that the caller should wipe; use
+     * {@link #getKeyMaterial()} to read them without a copy. Keys of a
+     * {@link SrtpParseCache} are returned as copies as well.
      * @return the concatenated master key and salt.
+     * @throws IllegalStateException when the key was released with
+     *             {@link SrtpCryptoAttribute#close()}.
      */
     public byte[] getKey() {
-        return key;
+        checkReleased();
+        SecretKeyMaterial material = this.material;
+        if (material != null) {
+            byte[] copy = new byte[material.length()];
+            material.copyTo(copy, 0);
+            return copy;
+        }
+
+        byte[] key = this.key;
+        if (key == null && encoded != null) {
+            key = Base64Codec.decode(encoded, keyStart, keyEnd);
+            this.key = key;
+        }
+        return shared && key != null ? key.clone() : key;
+    }
+
+    /**
+     * Gets the length of the concatenated master key and salt without
+     * decoding a lazily parsed key.
+     * 
+     * @return The length of the key material, in bytes.
+     */
+    int getKeyLength() {
+        checkReleased();
+        if (material != null)
+            return material.length();
+        byte[] key = this.key;
+        if (key == null && encoded != null)
+            return Base64Codec.decodedLength(encoded, keyStart, keyEnd);
+        return key == null ? 0 : key.length;
+    }
+
+    /**
+     * Copies the concatenated master key and salt into a caller provided
+     * array. If this key parameter was parsed in lazy mode and the key was
+     * not decoded yet, it is decoded directly into the array.
+     * 
+     * @param dst The array that receives the key.
+     * @param offset The index in <tt>dst</tt> of the first key byte.
+     * @return The length of the key.
+     * @throws IllegalArgumentException when the key does not fit into
+     *             <tt>dst</tt>.
+     * @throws IllegalStateException when the key was released with
+     *             {@link SrtpCryptoAttribute#close()}, or when this key
+     *             parameter was created without a key.
+     */
+    public int getKey(byte[] dst, int offset) {
+        checkReleased();
+        SecretKeyMaterial material = this.material;
+        if (material != null) {
+            material.copyTo(dst, offset);
+            return material.length();
+        }
+
+        byte[] key = this.key;
+        if (key == null && encoded != null)
+            return Base64Codec.decode(encoded, keyStart, keyEnd, dst, offset);
+        if (key == null)
+            throw new IllegalStateException("No key present");
+
+        if (offset < 0 || dst.length - offset < key.length)
+            throw new IllegalArgumentException("Destination too small");
+        System.arraycopy(key, 0, dst, offset, key.length);
+        return key.length;
+    }
+
+    /**
+     * Gets the off-heap concatenated master key and salt.
+     * 
+     * @return The key material, or <code>null</code> if the key is stored on
+     *         the heap.
+     */
+    public SecretKeyMaterial getKeyMaterial() {
+        return material;
     }
 
     /**
      * Gets the master key lifetime (max number of SRTP or SRTCP packets using
      * this master key)
      * 
-     * @return The master key lifetime.
+     * @return The master key lifetime, 0 if it was not specified, or
+     *         {@link Integer#MAX_VALUE} if it is larger than that.
+     * @see #getLifetimeLong()
      */
     public int getLifetime() {
+        return (int) Math.min(lifetime, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the master key lifetime (max number of SRTP or SRTCP packets using
+     * this master key) over its full range, e.g. 2^48 for SRTP.
+     * 
+     * @return The master key lifetime, 0 if it was not specified.
+     */
+    public long getLifetimeLong() {
         return lifetime;
     }
 
     /**
-     * Gets the master key identifier in the SRTP packets.
-     * @return The master key identifier in the SRTP packets.
+     * Gets the master key identifier as it appears in the SRTP packets. The
+     * MKI field can be up to 128 bytes long, so this is the only accessor
+     * that works for every MKI.
+     * @return A copy of the big-endian MKI of {@link #getMkiLength()} bytes,
+     *         empty if no MKI is used.
      */
+    public byte[] getMkiBytes() {
+        return mki.clone();
+    }
+
+    /**
+     * Gets the master key identifier in the SRTP packets as a number.
+     * @return The master key identifier in the SRTP packets, 0 if no MKI is
+     *         used.
+     * @throws IllegalStateException when the value of the MKI is larger than
+     *             {@link Integer#MAX_VALUE}, which is possible for every MKI
+     *             of 4 or more bytes.
+     * @deprecated An MKI does not generally fit into an <tt>int</tt>; use
+     *             {@link #getMkiBytes()}.
+     */
+    @Deprecated
     public int getMki() {
-        return mki;
+        long v = 0;
+        for (byte b : mki) {
+            v = (v << 8) | (b & 0xff);
+            if (v > Integer.MAX_VALUE)
+                throw new IllegalStateException("mki does not fit into an int");
+        }
+        return (int) v;
+    }
+
+    /**
+     * Compares the MKI with the MKI field of a packet.
+     * 
+     * @param buf The array containing the packet.
+     * @param offset The index in <tt>buf</tt> of the MKI field.
+     * @return <code>true</code> if the MKI is present and equal to the
+     *         {@link #getMkiLength()} bytes at <tt>offset</tt>.
+     */
+    public boolean mkiEquals(byte[] buf, int offset) {
+        if (mki.length == 0 || offset < 0 || buf.length - offset < mki.length)
+            return false;
+        for (int i = 0; i < mki.length; i++) {
+            if (buf[offset + i] != mki[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares the MKI with the MKI field of a packet.
+     * 
+     * @param buf The buffer containing the packet.
+     * @param offset The absolute index in <tt>buf</tt> of the MKI field.
+     * @return <code>true</code> if the MKI is present and equal to the
+     *         {@link #getMkiLength()} bytes at <tt>offset</tt>.
+     */
+    public boolean mkiEquals(ByteBuffer buf, int offset) {
+        if (mki.length == 0 || offset < 0 || buf.limit() - offset < mki.length)
+            return false;
+        for (int i = 0; i < mki.length; i++) {
+            if (buf.get(offset + i) != mki[i])
+                return false;
+        }
+        return true;
     }
 
     /**
@@ -141,25 +564,183 @@ public class SrtpKeyParam implements KeyParam {
      * @return The length of the MKI field in SRTP packets.
      */
     public int getMkiLength() {
-        return mkiLength;
+        return mki.length;
     }
 
+    /**
+     * @throws IllegalStateException when the key was released with
+     *             {@link SrtpCryptoAttribute#close()}.
+     */
     @Override
     public String encode() {
+        checkReleased();
+        if (encoded != null)
+            return encoded.substring(encodedStart, encodedEnd);
+
         StringBuilder sb = new StringBuilder();
-        sb.append(keyMethod);
-        sb.append(':');
-        sb.append(StringUtils.newStringUtf8(Base64.encodeBase64(key, false)));
-        if (lifetime > 0) {
-            sb.append('|');
-            sb.append(lifetime);
+        try {
+            encodeTo(sb);
         }
-        if (mkiLength > 0) {
-            sb.append('|');
-            sb.append(mki);
-            sb.append(':');
-            sb.append(mkiLength);
+        catch (IOException e) {
+            // StringBuilder does not throw
+            throw new IllegalStateException(e);
         }
         return sb.toString();
     }
+
+    /**
+     * @throws IllegalStateException when the key was released with
+     *             {@link SrtpCryptoAttribute#close()}.
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        checkReleased();
+        if (encoded != null) {
+            out.append(encoded, encodedStart, encodedEnd);
+            return;
+        }
+
+        out.append(keyMethod);
+        out.append(':');
+        if (material != null)
+            Base64Codec.encodeTo(out, material.asReadOnlyBuffer());
+        else
+            Base64Codec.encodeTo(out, key);
+        if (lifetime > 0) {
+            out.append('|');
+            EncodeUtils.appendDecimal(out, lifetime);
+        }
+        if (mki.length > 0) {
+            out.append('|');
+            EncodeUtils.appendDecimal(out, mki, 0, mki.length);
+            out.append(':');
+            EncodeUtils.appendDecimal(out, mki.length);
+        }
+    }
+
+    @Override
+    public void encodeTo(ByteBuffer out) {
+        try {
+            encodeTo(new AsciiAppendable(out));
+        }
+        catch (IOException e) {
+            // AsciiAppendable does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compares the key method, the decoded key material, the lifetime and the
+     * MKI of two key parameters. A released key parameter is only equal to
+     * itself.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!(obj instanceof SrtpKeyParam))
+            return false;
+
+        SrtpKeyParam other = (SrtpKeyParam) obj;
+        if (released || other.released)
+            return false;
+        if (lifetime != other.lifetime
+            || !Arrays.equals(mki, other.mki)
+            || !keyMethod.equals(other.keyMethod))
+            return false;
+        try {
+            return keyEquals(keyBuffer(), other.keyBuffer());
+        }
+        catch (IllegalStateException e) {
+            // one of the keys was released concurrently
+            return false;
+        }
+    }
+
+    /**
+     * Hashes the key method, the lifetime and the MKI. The key is left out so
+     * that the hash code neither changes when the key is released nor
+     * reveals anything about it.
+     */
+    @Override
+    public int hashCode() {
+        int h = keyMethod.hashCode();
+        h = 31 * h + (int) (lifetime ^ (lifetime >>> 32));
+        h = 31 * h + Arrays.hashCode(mki);
+        return h;
+    }
+
+    private ByteBuffer keyBuffer() {
+        if (material != null)
+            return material.asReadOnlyBuffer();
+        byte[] key = getKey();
+        return key == null ? null : ByteBuffer.wrap(key);
+    }
+
+    private static boolean keyEquals(ByteBuffer a, ByteBuffer b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Creates a key parameter with the same fields that does not share the
+     * key with this one: off-heap key material is copied into a new slot of
+     * its pool, and a key on the heap is cloned.
+     * 
+     * @return The copy, which must be released on its own.
+     * @throws IllegalStateException when the key was released.
+     */
+    SrtpKeyParam copy() {
+        checkReleased();
+        SrtpKeyParam copy = new SrtpKeyParam(keyMethod, lifetime, mki);
+        if (material != null) {
+            copy.material = material.copy();
+            return copy;
+        }
+
+        byte[] key = this.key;
+        copy.key = key == null ? null : key.clone();
+        // the text of a lazily parsed key is immutable and can be shared
+        copy.encoded = encoded;
+        copy.encodedStart = encodedStart;
+        copy.encodedEnd = encodedEnd;
+        copy.keyStart = keyStart;
+        copy.keyEnd = keyEnd;
+        return copy;
+    }
+
+    /**
+     * Wipes the key: off-heap key material is closed, a key on the heap is
+     * overwritten with zeros, and the text of a lazily parsed key is dropped.
+     * Afterwards, the key can neither be read nor encoded. Subsequent calls
+     * have no effect.
+     */
+    void release() {
+        released = true;
+        SecretKeyMaterial material = this.material;
+        if (material != null)
+            material.close();
+        byte[] key = this.key;
+        if (key != null)
+            Arrays.fill(key, (byte) 0);
+        encoded = null;
+        encodedStart = 0;
+        encodedEnd = 0;
+        keyStart = 0;
+        keyEnd = 0;
+    }
+
+    /**
+     * Marks the key as shared by several owners, see
+     * {@link SrtpCryptoAttribute#share()}. Must be called before the key
+     * parameter is published to other threads.
+     */
+    void share() {
+        getKey();
+        shared = true;
+    }
+
+    private void checkReleased() {
+        if (released)
+            throw new IllegalStateException("The key was released");
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.util.Arrays;
+
+/**
+ * Selects the best acceptable crypto attribute of a remote offer and creates
+ * the matching answer, as described in Section 7.1.2 of [RFC4568].
+ * <p>
+ * The offer is walked once; each attribute is first ranked by its suite with
+ * the precompiled {@link SrtpPolicy}, so that attributes which could not
+ * replace the current best one are skipped without further checks.
+ * <p>
+ * Instances are stateless and thread-safe; one negotiator can serve all
+ * calls that share a policy.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class SrtpNegotiator {
+    private final SrtpPolicy policy;
+    private final SrtpSDesFactory factory;
+
+    /**
+     * Creates a negotiator that creates the answer keys with the shared
+     * factory.
+     * 
+     * @param policy The local policy.
+     */
+    public SrtpNegotiator(SrtpPolicy policy) {
+        this(policy, SrtpSDesFactory.getInstance());
+    }
+
+    /**
+     * Creates a negotiator.
+     * 
+     * @param policy The local policy.
+     * @param factory The factory that creates the answer keys.
+     */
+    public SrtpNegotiator(SrtpPolicy policy, SrtpSDesFactory factory) {
+        this.policy = policy;
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the local policy.
+     * 
+     * @return The policy passed to the constructor.
+     */
+    public SrtpPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Selects the acceptable attribute with the most preferred suite. Among
+     * attributes with the same suite, the first one in the offer wins.
+     * 
+     * @param offer The crypto attributes of a remote media description.
+     * @return The selected attribute, or <code>null</code> if none is
+     *         acceptable.
+     */
+    public SrtpCryptoAttribute select(SrtpCryptoAttribute[] offer) {
+        SrtpCryptoAttribute best = null;
+        int bestRank = Integer.MAX_VALUE;
+        for (SrtpCryptoAttribute a : offer) {
+            int rank = policy.rank(a.getCryptoSuite());
+            if (rank < 0 || rank >= bestRank)
+                continue;
+            if (policy.accepts(a)) {
+                best = a;
+                bestRank = rank;
+                if (rank == 0)
+                    break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Selects the best acceptable attribute and creates the answer with the
+     * same tag and suite, the accepted session parameters and a fresh master
+     * key.
+     * 
+     * @param offer The crypto attributes of a remote media description.
+     * @return The answer attribute, or <code>null</code> if no attribute of
+     *         the offer is acceptable.
+     * @see #answer(SrtpCryptoAttribute)
+     */
+    public SrtpCryptoAttribute answer(SrtpCryptoAttribute[] offer) {
+        SrtpCryptoAttribute selected = select(offer);
+        if (selected == null)
+            return null;
+        return answer(selected);
+    }
+
+    /**
+     * Creates the answer to a selected attribute with the same tag and suite
+     * and a fresh master key. Only the session parameters of the offer that
+     * the policy allows are copied; unknown parameters are dropped, and so is
+     * <tt>FEC_KEY</tt>, as it carries the keys of the offerer.
+     * 
+     * @param selected The attribute returned by {@link #select}.
+     * @return The answer attribute.
+     */
+    public SrtpCryptoAttribute answer(SrtpCryptoAttribute selected) {
+        SrtpSessionParam[] params = selected.getSessionParams();
+        SrtpSessionParam[] accepted = null;
+        if (params != null) {
+            int allowed = policy.getAllowedParams();
+            int count = 0;
+            accepted = new SrtpSessionParam[params.length];
+            for (SrtpSessionParam p : params) {
+                if ((SessionParamSet.kindOf(p) & allowed) != 0)
+                    accepted[count++] = p;
+            }
+            if (count < accepted.length)
+                accepted = Arrays.copyOf(accepted, count);
+        }
+        return factory.createCryptoAttribute(selected.getTag(), selected.getCryptoSuite(), accepted);
+    }
+}
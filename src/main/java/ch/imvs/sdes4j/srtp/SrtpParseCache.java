@@ -0,0 +1,417 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import ch.imvs.sdes4j.AsciiSequence;
+import ch.imvs.sdes4j.CryptoAttribute;
+
+/**
+ * Bounded cache of parsed crypto attributes, for forked INVITEs,
+ * retransmissions and B2BUA legs that carry byte-identical
+ * <tt>a=crypto</tt> values.
+ * <p>
+ * Entries are keyed by a 64 bit hash of the attribute value; a hit is
+ * confirmed by comparing the cached text, so a lookup never allocates. The
+ * cache is split into segments with their own lock. Each segment evicts
+ * with the clock algorithm: a hit sets the reference bit of an entry, and
+ * the clock hand evicts the first entry whose bit is clear, clearing the
+ * bits it passes.
+ * <p>
+ * Every entry expires after a time-to-live. Expired entries are removed when
+ * they are looked up or passed by the clock hand, so in an idle cache they
+ * stay referenced, including their key material, until the next access.
+ * Call {@link #purgeExpired()} periodically, e.g. from a scheduled executor,
+ * to bound the retention by the time-to-live plus the purge interval.
+ * Expired entries are not wiped, as the instances may still be in use.
+ * <p>
+ * The returned attributes are shared between all callers and are read-only:
+ * the arrays of key and session params and the keys are handed out as
+ * copies, and {@link SrtpCryptoAttribute#close()} throws an
+ * {@link IllegalStateException}. For the same reason, the cache does not work
+ * with a factory that stores keys in a {@link KeyMaterialPool}: such keys must
+ * be closed by their single owner. Instances are thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class SrtpParseCache {
+    /**
+     * Rough size of an entry, the parsed attribute and the String headers,
+     * excluding the characters of the text.
+     */
+    private static final int ENTRY_OVERHEAD = 320;
+
+    private final SrtpSDesFactory factory;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Segment[] segments;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder memory = new LongAdder();
+
+    /**
+     * Creates a cache that parses with the shared factory.
+     * 
+     * @param capacity The maximum number of cached attributes.
+     * @param ttl The time after which an entry expires.
+     * @param unit The unit of <tt>ttl</tt>.
+     */
+    public SrtpParseCache(int capacity, long ttl, TimeUnit unit) {
+        this(SrtpSDesFactory.getInstance(), capacity, ttl, unit);
+    }
+
+    /**
+     * Creates a cache.
+     * 
+     * @param factory The factory that parses the attributes on a miss.
+     * @param capacity The maximum number of cached attributes.
+     * @param ttl The time after which an entry expires.
+     * @param unit The unit of <tt>ttl</tt>.
+     * @throws IllegalArgumentException when the factory has a
+     *             {@link KeyMaterialPool}.
+     */
+    public SrtpParseCache(SrtpSDesFactory factory, int capacity, long ttl, TimeUnit unit) {
+        this(factory, capacity, unit.toNanos(ttl), System::nanoTime);
+    }
+
+    SrtpParseCache(SrtpSDesFactory factory, int capacity, long ttlNanos, LongSupplier clock) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        if (ttlNanos <= 0)
+            throw new IllegalArgumentException("ttl must be positive");
+        if (factory.getKeyMaterialPool() != null)
+            throw new IllegalArgumentException("pooled keys cannot be shared by a cache");
+
+        this.factory = factory;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+        this.capacity = capacity;
+        // keep enough entries per segment for the clock to be meaningful
+        int count = Math.min(16, Integer.highestOneBit(Math.max(1, capacity / 8)));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            segments[i] = new Segment((capacity + count - 1 - i) / count);
+    }
+
+    /**
+     * Gets a parsed attribute from the cache, or parses and caches it.
+     * 
+     * @param attribute The attribute value, without <tt>a=crypto:</tt>.
+     * @return The shared parsed attribute.
+     */
+    public SrtpCryptoAttribute parse(String attribute) {
+        return parse(attribute, 0, attribute.length());
+    }
+
+    /**
+     * Gets a parsed attribute from the cache, or parses and caches it.
+     * 
+     * @param buf The buffer containing the US-ASCII encoded attribute value.
+     * @param offset The absolute index of the first byte of the attribute.
+     * @param length The number of bytes of the attribute.
+     * @return The shared parsed attribute.
+     */
+    public SrtpCryptoAttribute parse(ByteBuffer buf, int offset, int length) {
+        return parse(new AsciiSequence(buf, offset, length), 0, length);
+    }
+
+    /**
+     * Gets a parsed attribute from the cache, or parses and caches it.
+     * 
+     * @param s The sequence containing the attribute value.
+     * @param start The inclusive start of the attribute.
+     * @param end The exclusive end of the attribute.
+     * @return The shared parsed attribute.
+     * @throws IllegalStateException when a {@link KeyMaterialPool} was set on
+     *             the factory after the cache was created.
+     */
+    public SrtpCryptoAttribute parse(CharSequence s, int start, int end) {
+        long h = hash(s, start, end);
+        Segment segment = segments[(int) (h ^ (h >>> 32)) & (segments.length - 1)];
+        long now = clock.getAsLong();
+        SrtpCryptoAttribute a = segment.get(h, s, start, end, now);
+        if (a != null) {
+            hits.increment();
+            return a;
+        }
+
+        misses.increment();
+        if (factory.getKeyMaterialPool() != null)
+            throw new IllegalStateException("pooled keys cannot be shared by a cache");
+        a = (SrtpCryptoAttribute) CryptoAttribute.parse(s, start, end, factory);
+        a.share();
+        return segment.put(h, s.subSequence(start, end).toString(), a, now);
+    }
+
+    /**
+     * 64 bit FNV-1a.
+     */
+    private static long hash(CharSequence s, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (Segment s : segments)
+            s.clear();
+    }
+
+    /**
+     * Removes all entries whose time-to-live has passed.
+     * 
+     * @return The number of removed entries.
+     */
+    public int purgeExpired() {
+        long now = clock.getAsLong();
+        int purged = 0;
+        for (Segment s : segments)
+            purged += s.purgeExpired(now);
+        return purged;
+    }
+
+    /**
+     * Gets the number of cached attributes, including expired entries that
+     * were not removed yet. See {@link #purgeExpired()}.
+     * 
+     * @return The number of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment s : segments)
+            size += s.size();
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of cached attributes.
+     * 
+     * @return The capacity passed to the constructor.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of lookups that found a cached attribute.
+     * 
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that parsed the attribute.
+     * 
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of entries that were evicted to make room.
+     * 
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of entries that were removed after their time-to-live.
+     * 
+     * @return The number of expirations.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Gets the ratio of hits to all lookups.
+     * 
+     * @return The hit ratio in the range 0..1, or 0 before the first lookup.
+     */
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Gets an estimate of the heap memory retained by the cached entries.
+     * 
+     * @return The estimated memory use, in bytes.
+     */
+    public long getEstimatedMemoryUsage() {
+        return memory.sum();
+    }
+
+    private static long weigh(String text) {
+        // the text, plus the encoded form and key material of the attribute
+        return ENTRY_OVERHEAD + 3L * text.length();
+    }
+
+    private static final class Entry {
+        final long hash;
+        final String text;
+        final SrtpCryptoAttribute attribute;
+        final long expires;
+        final int slot;
+        boolean referenced;
+        Entry next;
+
+        Entry(long hash, String text, SrtpCryptoAttribute attribute, long expires, int slot) {
+            this.hash = hash;
+            this.text = text;
+            this.attribute = attribute;
+            this.expires = expires;
+            this.slot = slot;
+        }
+
+        boolean matches(long h, CharSequence s, int start, int end) {
+            if (hash != h || text.length() != end - start)
+                return false;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) != s.charAt(start + i))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private final class Segment {
+        private final Entry[] table;
+        private final Entry[] ring;
+        private int hand;
+        private int size;
+
+        Segment(int capacity) {
+            ring = new Entry[capacity];
+            table = new Entry[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        }
+
+        private int bucket(long h) {
+            return (int) (h >>> 40) & (table.length - 1);
+        }
+
+        synchronized SrtpCryptoAttribute get(long h, CharSequence s, int start, int end, long now) {
+            for (Entry e = table[bucket(h)]; e != null; e = e.next) {
+                if (e.matches(h, s, start, end)) {
+                    if (now - e.expires >= 0) {
+                        remove(e);
+                        expirations.increment();
+                        return null;
+                    }
+                    e.referenced = true;
+                    return e.attribute;
+                }
+            }
+            return null;
+        }
+
+        synchronized SrtpCryptoAttribute put(long h, String text, SrtpCryptoAttribute a, long now) {
+            int b = bucket(h);
+            for (Entry e = table[b]; e != null; e = e.next) {
+                // another thread parsed the same attribute first
+                if (e.matches(h, text, 0, text.length()) && now - e.expires < 0)
+                    return e.attribute;
+            }
+
+            int slot = freeSlot(now);
+            Entry e = new Entry(h, text, a, now + ttlNanos, slot);
+            e.next = table[b];
+            table[b] = e;
+            ring[slot] = e;
+            size++;
+            memory.add(weigh(text));
+            return a;
+        }
+
+        private int freeSlot(long now) {
+            for (;;) {
+                int slot = hand;
+                hand = (hand + 1) % ring.length;
+                Entry e = ring[slot];
+                if (e == null)
+                    return slot;
+                if (now - e.expires >= 0) {
+                    remove(e);
+                    expirations.increment();
+                    return slot;
+                }
+                if (!e.referenced) {
+                    remove(e);
+                    evictions.increment();
+                    return slot;
+                }
+                e.referenced = false;
+            }
+        }
+
+        private void remove(Entry entry) {
+            int b = bucket(entry.hash);
+            Entry prev = null;
+            for (Entry e = table[b]; e != null; prev = e, e = e.next) {
+                if (e == entry) {
+                    if (prev == null)
+                        table[b] = e.next;
+                    else
+                        prev.next = e.next;
+                    break;
+                }
+            }
+            ring[entry.slot] = null;
+            size--;
+            memory.add(-weigh(entry.text));
+        }
+
+        synchronized int purgeExpired(long now) {
+            int purged = 0;
+            for (Entry e : ring) {
+                if (e != null && now - e.expires >= 0) {
+                    remove(e);
+                    expirations.increment();
+                    purged++;
+                }
+            }
+            return purged;
+        }
+
+        synchronized void clear() {
+            for (Entry e : ring) {
+                if (e != null)
+                    remove(e);
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import java.util.Arrays;
+
+/**
+ * Immutable local policy for the negotiation of SRTP crypto attributes, see
+ * {@link SrtpNegotiator}.
+ * <p>
+ * The policy is compiled once into a preference table that is indexed by the
+ * crypto suite, and a bit mask of the allowed session parameters. Checking a
+ * remote attribute therefore does not compare any strings.
+ * <p>
+ * <tt>FEC_KEY</tt> is never accepted, as answering it requires a separate
+ * set of keys for the FEC stream. Unknown session parameters are accepted
+ * only if they are optional, see {@link UnknownSessionParam#isMandatory()}.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class SrtpPolicy {
+    public final static int PARAM_KDR = SessionParamSet.KDR;
+    public final static int PARAM_UNENCRYPTED_SRTP = SessionParamSet.UNENCRYPTED_SRTP;
+    public final static int PARAM_UNENCRYPTED_SRTCP = SessionParamSet.UNENCRYPTED_SRTCP;
+    public final static int PARAM_UNAUTHENTICATED_SRTP = SessionParamSet.UNAUTHENTICATED_SRTP;
+    public final static int PARAM_FEC_ORDER = SessionParamSet.FEC_ORDER;
+    public final static int PARAM_WSH = SessionParamSet.WSH;
+
+    /**
+     * The session parameters that do not weaken the protection of the media.
+     */
+    public final static int DEFAULT_PARAMS = PARAM_KDR | PARAM_FEC_ORDER | PARAM_WSH;
+
+    private final int[] ranks = new int[SrtpCryptoSuite.INDEX_COUNT];
+    private final SrtpCryptoSuite[] suites;
+    private final int allowedParams;
+    private final int minEncKeyLength;
+    private final boolean mkiAllowed;
+
+    /**
+     * Creates a policy that allows the {@link #DEFAULT_PARAMS} and MKIs.
+     * 
+     * @param suites The acceptable crypto suites, most preferred first.
+     */
+    public SrtpPolicy(String... suites) {
+        this(suites, DEFAULT_PARAMS, 0, true);
+    }
+
+    /**
+     * Creates a policy.
+     * 
+     * @param suites The acceptable crypto suites, most preferred first.
+     * @param allowedParams The allowed session parameters, a combination of
+     *            the <tt>PARAM_</tt> constants.
+     * @param minEncKeyLength The minimal length of the encryption key, in
+     *            bits. Suites with a shorter key are not accepted.
+     * @param mkiAllowed <code>false</code> to reject attributes with a
+     *            master key identifier.
+     * @throws IllegalArgumentException when a suite is not known or listed
+     *             twice.
+     */
+    public SrtpPolicy(String[] suites, int allowedParams, int minEncKeyLength, boolean mkiAllowed) {
+        if (suites.length == 0)
+            throw new IllegalArgumentException("at least one suite is required");
+
+        Arrays.fill(ranks, -1);
+        this.suites = new SrtpCryptoSuite[suites.length];
+        for (int i = 0; i < suites.length; i++) {
+            SrtpCryptoSuite suite = SrtpCryptoSuite.forName(suites[i]);
+            for (int j = 0; j < i; j++) {
+                if (this.suites[j] == suite)
+                    throw new IllegalArgumentException("Suite " + suites[i] + " is listed twice");
+            }
+            this.suites[i] = suite;
+            if (suite.getEncKeyLength() >= minEncKeyLength)
+                ranks[suite.getIndex()] = i;
+        }
+        this.allowedParams = allowedParams & ~(SessionParamSet.FEC_KEY | SessionParamSet.OTHER);
+        this.minEncKeyLength = minEncKeyLength;
+        this.mkiAllowed = mkiAllowed;
+    }
+
+    /**
+     * Gets the acceptable crypto suites.
+     * 
+     * @return The suites, most preferred first.
+     */
+    public SrtpCryptoSuite[] getSuites() {
+        return suites.clone();
+    }
+
+    /**
+     * Gets the allowed session parameters.
+     * 
+     * @return A combination of the <tt>PARAM_</tt> constants.
+     */
+    public int getAllowedParams() {
+        return allowedParams;
+    }
+
+    /**
+     * Gets the minimal length of the encryption key.
+     * 
+     * @return The minimal key length, in bits.
+     */
+    public int getMinEncKeyLength() {
+        return minEncKeyLength;
+    }
+
+    /**
+     * Determines if master key identifiers are accepted.
+     * 
+     * @return <code>true</code> if keys with an MKI are accepted.
+     */
+    public boolean isMkiAllowed() {
+        return mkiAllowed;
+    }
+
+    /**
+     * Gets the preference of a suite.
+     * 
+     * @param suite The suite to look up.
+     * @return The position in the preference order, or -1 if the suite is not
+     *         acceptable.
+     */
+    public int rank(SrtpCryptoSuite suite) {
+        return ranks[suite.getIndex()];
+    }
+
+    /**
+     * Checks an attribute against this policy, except for the suite
+     * preference.
+     * 
+     * @param attribute The remote attribute.
+     * @return <code>true</code> if the keys and session parameters are
+     *         acceptable.
+     */
+    public boolean accepts(SrtpCryptoAttribute attribute) {
+        SrtpCryptoSuite suite = attribute.getCryptoSuite();
+        if (rank(suite) < 0)
+            return false;
+
+        int keyLength = (suite.getEncKeyLength() + suite.getSaltKeyLength()) / 8;
+        for (SrtpKeyParam kp : attribute.getKeyParams()) {
+            if (kp.getKeyLength() != keyLength)
+                return false;
+            if (!mkiAllowed && kp.getMkiLength() > 0)
+                return false;
+        }
+
+        return (attribute.getSessionParamSet().getPresent() & ~allowedParams) == 0;
+    }
+}
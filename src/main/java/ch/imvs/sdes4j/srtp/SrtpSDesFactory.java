@@ -13,25 +13,87 @@
  */
 package ch.imvs.sdes4j.srtp;
 
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import ch.imvs.sdes4j.*;
 
 /**
  * Factory for the SRTP grammar of RFC4568.
+ * <p>
+ * Instances are thread-safe. For parsing with the default settings, use the
+ * shared instance returned by {@link #getInstance()} instead of creating a
+ * factory per call.
  * 
  * @author Ingo Bauersachs
  */
 public class SrtpSDesFactory implements SDesFactory {
-    private Random r = null;
+    private static final class SharedFactory extends SrtpSDesFactory {
+        SharedFactory() {
+            super(SessionParamRegistry.RFC4568);
+        }
+
+        @Override
+        public void setRandomGenerator(Random r) {
+            throw new UnsupportedOperationException("The shared factory cannot be configured");
+        }
+
+        @Override
+        public void setLazyKeyDecoding(boolean lazy) {
+            throw new UnsupportedOperationException("The shared factory cannot be configured");
+        }
+
+        @Override
+        public void setKeyReservoir(KeyReservoir reservoir) {
+            throw new UnsupportedOperationException("The shared factory cannot be configured");
+        }
+
+        @Override
+        public void setKeyMaterialPool(KeyMaterialPool pool) {
+            throw new UnsupportedOperationException("The shared factory cannot be configured");
+        }
+    }
+
+    private static final SrtpSDesFactory INSTANCE = new SharedFactory();
+
+    private volatile Random r = null;
+    private volatile boolean lazyKeyDecoding;
+    private volatile KeyReservoir reservoir;
+    private volatile KeyMaterialPool keyMaterialPool;
+    private final SessionParamRegistry sessionParamRegistry;
+
+    /**
+     * Creates a factory with the default settings and its own registry of
+     * session parameters.
+     */
+    public SrtpSDesFactory() {
+        this(new SessionParamRegistry());
+    }
+
+    private SrtpSDesFactory(SessionParamRegistry sessionParamRegistry) {
+        this.sessionParamRegistry = sessionParamRegistry;
+    }
+
+    /**
+     * Gets the shared factory. It decodes keys eagerly, uses the default
+     * random generator and cannot be reconfigured. Create a new instance to
+     * change the settings.
+     * 
+     * @return The shared, thread-safe factory.
+     */
+    public static SrtpSDesFactory getInstance() {
+        return INSTANCE;
+    }
 
     /**
      * Creates an SRTP crypto attribute with the specified parameters, for use in an SDP.
      * <p>
-     * If no random generator is set with {@link #setRandomGenerator(Random)} then the
-     * SHA1PRNG, or if not available, the system's default {@link SecureRandom} will be used.
+     * If no random generator is set with {@link #setRandomGenerator(Random)} then a
+     * {@link SecureRandomPool} of SHA1PRNG, or if not available, the system's default
+     * {@link SecureRandom} will be used.
      * 
      * @param tag decimal number used as an identifier for a particular crypto attribute
      * @param keyAlg identifier that describes the encryption and authentication algorithms
@@ -50,24 +112,218 @@ public class SrtpSDesFactory implements SDesFactory {
      * @return SRTP crypto attribute without session parameters.
      */
     public SrtpCryptoAttribute createCryptoAttribute(int tag, String keyAlg, SrtpSessionParam[] params) {
-        SrtpCryptoSuite suite = createCryptoSuite(keyAlg);
+        return createCryptoAttribute(tag, createCryptoSuite(keyAlg), params);
+    }
+
+    /**
+     * Creates an SRTP crypto attribute for an already resolved crypto suite,
+     * for use in an SDP.
+     * 
+     * @param tag decimal number used as an identifier for a particular crypto attribute
+     * @param suite the encryption and authentication algorithms
+     * @param params Session parameters for the crypto attribute
+     * @return SRTP crypto attribute with a fresh master key.
+     */
+    public SrtpCryptoAttribute createCryptoAttribute(int tag, SrtpCryptoSuite suite, SrtpSessionParam[] params) {
         byte[] keyData = new byte[(suite.getEncKeyLength() + suite.getSaltKeyLength()) / 8];
-        getRandom().nextBytes(keyData);
-        SrtpKeyParam key = new SrtpKeyParam(
-                SrtpKeyParam.KEYMETHOD_INLINE,
-                keyData,
-                0, 0, 0
-        );
+        KeyReservoir reservoir = this.reservoir;
+        if (reservoir == null || !reservoir.take(keyData))
+            getRandom().nextBytes(keyData);
+        SrtpKeyParam key = createKeyParam(keyData);
         return new SrtpCryptoAttribute(tag, suite, new SrtpKeyParam[] { key }, params);
     }
     
+    /**
+     * Creates an SRTP crypto attribute on an executor, so that the caller is
+     * not blocked while the key material is generated.
+     * 
+     * @param tag decimal number used as an identifier for a particular crypto attribute
+     * @param keyAlg identifier that describes the encryption and authentication algorithms
+     * @param executor the executor that generates the key material
+     * @return a future that completes with the SRTP crypto attribute
+     * @see #createCryptoAttribute(int, String)
+     */
+    public CompletableFuture<SrtpCryptoAttribute> createCryptoAttributeAsync(int tag, String keyAlg, Executor executor) {
+        return createCryptoAttributeAsync(tag, keyAlg, null, executor);
+    }
+
+    /**
+     * Creates an SRTP crypto attribute on an executor, so that the caller is
+     * not blocked while the key material is generated.
+     * 
+     * @param tag decimal number used as an identifier for a particular crypto attribute
+     * @param keyAlg identifier that describes the encryption and authentication algorithms
+     * @param params Session parameters for the crypto attribute
+     * @param executor the executor that generates the key material
+     * @return a future that completes with the SRTP crypto attribute, or
+     *         exceptionally if the suite is unknown
+     * @see #createCryptoAttribute(int, String, SrtpSessionParam[])
+     */
+    public CompletableFuture<SrtpCryptoAttribute> createCryptoAttributeAsync(final int tag, final String keyAlg,
+            final SrtpSessionParam[] params, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> createCryptoAttribute(tag, keyAlg, params), executor);
+    }
+
+    /**
+     * Creates the crypto attributes of one media stream for all offered
+     * suites on an executor.
+     * 
+     * @param suites The offered crypto suites, in order of preference.
+     * @param params Session parameters for all attributes, or
+     *            <code>null</code>.
+     * @param executor the executor that generates the key material
+     * @return a future that completes with one attribute per suite
+     * @see #createCryptoAttributes(String[], SrtpSessionParam[])
+     */
+    public CompletableFuture<SrtpCryptoAttribute[]> createCryptoAttributesAsync(final String[] suites,
+            final SrtpSessionParam[] params, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> createCryptoAttributes(suites, params), executor);
+    }
+
+    /**
+     * Creates the crypto attributes of one media stream for all offered
+     * suites, with sequential tags starting at 1. The key material of all
+     * attributes is drawn from the random generator at once.
+     * 
+     * @param suites The offered crypto suites, in order of preference.
+     * @param params Session parameters for all attributes, or
+     *            <code>null</code>.
+     * @return One attribute per suite.
+     */
+    public SrtpCryptoAttribute[] createCryptoAttributes(String[] suites, SrtpSessionParam[] params) {
+        return createCryptoAttributesForStreams(suites, new SrtpSessionParam[][] { params })[0];
+    }
+
+    /**
+     * Creates the crypto attributes of several media streams for all offered
+     * suites. The tags of each stream start at 1. The key material of the
+     * whole offer is drawn from the random generator at once (or taken from
+     * the key reservoir, if one is set) and every attribute gets its own key.
+     * Every attribute also gets its own copy of the session parameters of its
+     * stream, including the keys of <tt>FEC_KEY</tt>, so that closing one
+     * attribute does not wipe the keys of another.
+     * 
+     * @param suites The offered crypto suites, in order of preference.
+     * @param streamParams The session parameters per media stream; its
+     *            length determines the number of streams. An element may be
+     *            <code>null</code> for a stream without session parameters.
+     * @return The attributes, indexed by stream and then by suite.
+     */
+    public SrtpCryptoAttribute[][] createCryptoAttributesForStreams(String[] suites, SrtpSessionParam[][] streamParams) {
+        SrtpCryptoSuite[] resolved = new SrtpCryptoSuite[suites.length];
+        for (int i = 0; i < suites.length; i++)
+            resolved[i] = createCryptoSuite(suites[i]);
+
+        // keys[k] is the key of suite k % suites.length in stream
+        // k / suites.length; null until it is taken from the reservoir
+        byte[][] keys = new byte[streamParams.length * suites.length][];
+        int missing = 0;
+        KeyReservoir reservoir = this.reservoir;
+        for (int k = 0; k < keys.length; k++) {
+            SrtpCryptoSuite suite = resolved[k % suites.length];
+            int length = (suite.getEncKeyLength() + suite.getSaltKeyLength()) / 8;
+            if (reservoir != null) {
+                byte[] key = new byte[length];
+                if (reservoir.take(key)) {
+                    keys[k] = key;
+                    continue;
+                }
+            }
+            missing += length;
+        }
+
+        if (missing > 0) {
+            byte[] random = new byte[missing];
+            getRandom().nextBytes(random);
+            int pos = 0;
+            for (int k = 0; k < keys.length; k++) {
+                if (keys[k] == null) {
+                    SrtpCryptoSuite suite = resolved[k % suites.length];
+                    int length = (suite.getEncKeyLength() + suite.getSaltKeyLength()) / 8;
+                    keys[k] = Arrays.copyOfRange(random, pos, pos + length);
+                    pos += length;
+                }
+            }
+            Arrays.fill(random, (byte) 0);
+        }
+
+        SrtpCryptoAttribute[][] result = new SrtpCryptoAttribute[streamParams.length][];
+        int k = 0;
+        try {
+            for (int s = 0; s < streamParams.length; s++) {
+                result[s] = new SrtpCryptoAttribute[suites.length];
+                for (int i = 0; i < suites.length; i++, k++) {
+                    SrtpKeyParam key = createKeyParam(keys[k]);
+                    SrtpSessionParam[] params;
+                    try {
+                        params = copySessionParams(streamParams[s]);
+                    }
+                    catch (RuntimeException e) {
+                        key.release();
+                        throw e;
+                    }
+                    result[s][i] = new SrtpCryptoAttribute(i + 1, resolved[i], new SrtpKeyParam[] { key }, params);
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            // the key material pool is exhausted: wipe the whole offer
+            for (SrtpCryptoAttribute[] stream : result) {
+                for (int i = 0; stream != null && i < stream.length; i++) {
+                    if (stream[i] != null)
+                        stream[i].close();
+                }
+            }
+            for (; k < keys.length; k++)
+                Arrays.fill(keys[k], (byte) 0);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Copies session parameters for one attribute. Only <tt>FEC_KEY</tt> has
+     * state that is released with the attribute, the others are immutable.
+     */
+    private static SrtpSessionParam[] copySessionParams(SrtpSessionParam[] params) {
+        if (params == null)
+            return null;
+        SrtpSessionParam[] copy = params.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof FecKeySessionParam)
+                copy[i] = ((FecKeySessionParam) copy[i]).copy();
+        }
+        return copy;
+    }
+
+    /**
+     * Creates the key parameter of a generated key. With a key material pool,
+     * the key is moved into the pool and the array is wiped, also when the pool
+     * is exhausted.
+     */
+    private SrtpKeyParam createKeyParam(byte[] keyData) {
+        KeyMaterialPool pool = keyMaterialPool;
+        if (pool == null)
+            return new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, keyData, 0, 0, 0);
+
+        try {
+            SecretKeyMaterial material = pool.allocate(keyData, 0, keyData.length);
+            return new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, material, 0, null);
+        }
+        finally {
+            Arrays.fill(keyData, (byte) 0);
+        }
+    }
+
     private Random getRandom(){
+        Random r = this.r;
         if(r == null){
-            try {
-                r = SecureRandom.getInstance("SHA1PRNG");
-            }
-            catch (NoSuchAlgorithmException e) {
-                r = new SecureRandom();
+            synchronized (this) {
+                r = this.r;
+                if (r == null) {
+                    r = new SecureRandomPool();
+                    this.r = r;
+                }
             }
         }
         return r;
@@ -78,6 +334,84 @@ public class SrtpSDesFactory implements SDesFactory {
         this.r = r;
     }
 
+    /**
+     * Sets a reservoir of pre-generated key material for
+     * {@link #createCryptoAttribute(int, String)}. If the reservoir has no
+     * block of the required size, the key is generated inline with the
+     * random generator. The background thread of the reservoir is started
+     * if it is not running yet.
+     * 
+     * @param reservoir The reservoir to take keys from, or <code>null</code>
+     *            to always generate keys inline (the default).
+     * @throws IllegalStateException when the reservoir is already closed.
+     */
+    public void setKeyReservoir(KeyReservoir reservoir) {
+        if (reservoir != null)
+            reservoir.start();
+        this.reservoir = reservoir;
+    }
+
+    /**
+     * Sets a pool of off-heap memory for the key material of generated and
+     * parsed key parameters, including those of <tt>FEC_KEY</tt>. The keys
+     * are then only available as {@link SecretKeyMaterial} and must be wiped
+     * with {@link SrtpCryptoAttribute#close()} when the attribute is no
+     * longer needed. A pool takes precedence over lazy key decoding.
+     * Parsing or generating keys throws an {@link IllegalStateException}
+     * when the pool is exhausted, and keys larger than a slot are rejected.
+     * 
+     * @param pool The pool for the key material, or <code>null</code> to
+     *            keep keys on the heap (the default).
+     */
+    public void setKeyMaterialPool(KeyMaterialPool pool) {
+        this.keyMaterialPool = pool;
+    }
+
+    /**
+     * Gets the pool for the key material.
+     * 
+     * @return The pool, or <code>null</code> if keys are kept on the heap.
+     * @see #setKeyMaterialPool(KeyMaterialPool)
+     */
+    public KeyMaterialPool getKeyMaterialPool() {
+        return keyMaterialPool;
+    }
+
+    /**
+     * Enables or disables lazy decoding of the key material of parsed key
+     * parameters. When enabled, parsed {@link SrtpKeyParam}s only keep the
+     * encoded key and decode it on the first call to
+     * {@link SrtpKeyParam#getKey()}, and encode to their original text. This
+     * avoids the decoding work for offered attributes that are never used.
+     * 
+     * @param lazy <code>true</code> to defer decoding keys, <code>false</code>
+     *            (the default) to decode them while parsing.
+     */
+    public void setLazyKeyDecoding(boolean lazy) {
+        this.lazyKeyDecoding = lazy;
+    }
+
+    /**
+     * Determines if key material is decoded lazily.
+     * 
+     * @return <code>true</code> if keys are decoded on first use.
+     * @see #setLazyKeyDecoding(boolean)
+     */
+    public boolean isLazyKeyDecoding() {
+        return lazyKeyDecoding;
+    }
+
+    /**
+     * Gets the session parameters that this factory creates. Parameters that
+     * are registered here are only known to this factory; the registry of
+     * the shared factory cannot be modified.
+     * 
+     * @return The registry of this factory.
+     */
+    public SessionParamRegistry getSessionParamRegistry() {
+        return sessionParamRegistry;
+    }
+
     @Override
     public SrtpCryptoAttribute createCryptoAttribute() {
         return new SrtpCryptoAttribute();
@@ -85,12 +419,22 @@ public class SrtpSDesFactory implements SDesFactory {
 
     @Override
     public SrtpCryptoSuite createCryptoSuite(String suite) {
-        return new SrtpCryptoSuite(suite);
+        return SrtpCryptoSuite.forName(suite);
+    }
+
+    @Override
+    public SrtpCryptoSuite createCryptoSuite(CharSequence s, int start, int end) {
+        return SrtpCryptoSuite.forName(s, start, end);
     }
 
     @Override
     public SrtpKeyParam createKeyParam(String keyParam) {
-        return new SrtpKeyParam(keyParam);
+        return new SrtpKeyParam(keyParam, 0, keyParam.length(), lazyKeyDecoding, keyMaterialPool);
+    }
+
+    @Override
+    public SrtpKeyParam createKeyParam(CharSequence s, int start, int end) {
+        return new SrtpKeyParam(s, start, end, lazyKeyDecoding, keyMaterialPool);
     }
 
     @Override
@@ -100,7 +444,12 @@ public class SrtpSDesFactory implements SDesFactory {
 
     @Override
     public SrtpSessionParam createSessionParam(String sessionParam) {
-        return SrtpSessionParam.create(sessionParam);
+        return sessionParamRegistry.create(sessionParam, 0, sessionParam.length(), lazyKeyDecoding, keyMaterialPool);
+    }
+
+    @Override
+    public SrtpSessionParam createSessionParam(CharSequence s, int start, int end) {
+        return sessionParamRegistry.create(s, start, end, lazyKeyDecoding, keyMaterialPool);
     }
 
     @Override
@@ -17,35 +17,73 @@ import ch.imvs.sdes4j.SessionParam;
 
 /**
  * Base class for SRTP specific session parameters.
+ * <p>
+ * Session parameters are created through the {@link SessionParamRegistry}
+ * of a factory, to which applications can add their own parameters.
+ * Parameters that are neither defined by RFC 4568 nor registered are kept as
+ * {@link UnknownSessionParam} instead of failing the whole attribute.
  * 
  * @author Ingo Bauersachs
  */
 public abstract class SrtpSessionParam implements SessionParam {
-    SrtpSessionParam() {
+    /**
+     * Creates session parameters of a registered name, see
+     * {@link SessionParamRegistry#register(String, Parser)}.
+     */
+    public interface Parser {
+        /**
+         * Parses a session parameter.
+         * 
+         * @param s The sequence containing the session parameter.
+         * @param start The inclusive start of the parameter, i.e. the first
+         *            character of its name.
+         * @param end The exclusive end of the parameter.
+         * @return The session parameter, or <code>null</code> to reject the
+         *         value, which rejects the whole attribute with
+         *         {@link ch.imvs.sdes4j.ParseError#REJECTED}.
+         */
+        SrtpSessionParam parse(CharSequence s, int start, int end);
+    }
+
+    protected SrtpSessionParam() {
+    }
+
+    /**
+     * Determines the kind of a session parameter without creating it.
+     * 
+     * @param s The sequence containing the session parameter.
+     * @param start The inclusive start of the session parameter.
+     * @param end The exclusive end of the session parameter.
+     * @return One of the parameter constants of {@link SessionParamSet}, or
+     *         {@link SessionParamSet#OTHER} for registered and unknown
+     *         parameters.
+     */
+    static int kindOf(CharSequence s, int start, int end) {
+        return SessionParamRegistry.RFC4568.kindOf(s, start, end);
     }
 
     /**
      * Creates instances from the text based representation of SRTP session parameters. 
+     * Only the parameters of RFC 4568 are known; use
+     * {@link SrtpSDesFactory#createSessionParam(String)} for registered ones.
      * 
      * @param param The text based representation of a session parameter.
      * @return The instance of a SRTP session parameter.
      */
     public static SrtpSessionParam create(String param) {
-        if (param.startsWith("KDR="))
-            return new KdrSessionParam(param);
-        else if (param.equals("UNENCRYPTED_SRTP"))
-            return new PlainSrtpSessionParam();
-        else if (param.equals("UNENCRYPTED_SRTCP"))
-            return new PlainSrtcpSessionParam();
-        else if (param.equals("UNAUTHENTICATED_SRTP"))
-            return new NoAuthSessionParam();
-        else if (param.startsWith("FEC_ORDER="))
-            return new FecOrderSessionParam(param);
-        else if (param.startsWith("FEC_KEY="))
-            return new FecKeySessionParam(param);
-        else if (param.startsWith("WSH="))
-            return new WshSessionParam(param);
+        return create(param, 0, param.length());
+    }
 
-        throw new IllegalArgumentException("Unknown session parameter");
+    /**
+     * Creates instances from a range of a character sequence that contains the
+     * text based representation of SRTP session parameters.
+     * 
+     * @param param The sequence containing the session parameter.
+     * @param start The inclusive start of the session parameter.
+     * @param end The exclusive end of the session parameter.
+     * @return The instance of a SRTP session parameter.
+     */
+    public static SrtpSessionParam create(CharSequence param, int start, int end) {
+        return SessionParamRegistry.RFC4568.create(param, start, end, false, null);
     }
 }
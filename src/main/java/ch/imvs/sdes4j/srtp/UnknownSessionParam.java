@@ -0,0 +1,87 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+/**
+ * A session parameter that is neither defined by RFC 4568 nor registered in
+ * the {@link SessionParamRegistry} of the factory. The
+ * parameter is kept as text so that it can be encoded again.
+ * <p>
+ * Section 6.3.7 of RFC 4568 lets an endpoint ignore unknown parameters whose
+ * name starts with <tt>-</tt>; any other unknown parameter is mandatory and
+ * the attribute must be rejected, see {@link #isMandatory()}.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class UnknownSessionParam extends SrtpSessionParam {
+    private final String param;
+
+    /**
+     * Creates a new instance of this class from the textual representation.
+     * 
+     * @param param The complete session parameter, e.g. <tt>-FOO=1</tt>.
+     */
+    public UnknownSessionParam(String param) {
+        if (param == null || param.length() == 0)
+            throw new IllegalArgumentException("param must not be empty");
+        this.param = param;
+    }
+
+    /**
+     * Gets the name of the parameter, i.e. the part before the first
+     * <tt>=</tt>.
+     * 
+     * @return The name of the parameter.
+     */
+    public String getName() {
+        int i = param.indexOf('=');
+        return i < 0 ? param : param.substring(0, i);
+    }
+
+    /**
+     * Gets the value of the parameter, i.e. the part after the first
+     * <tt>=</tt>.
+     * 
+     * @return The value of the parameter, or <code>null</code> if it has
+     *         none.
+     */
+    public String getValue() {
+        int i = param.indexOf('=');
+        return i < 0 ? null : param.substring(i + 1);
+    }
+
+    /**
+     * Determines if the parameter must be understood by the receiver.
+     * 
+     * @return <code>false</code> if the name starts with <tt>-</tt>.
+     */
+    public boolean isMandatory() {
+        return param.charAt(0) != '-';
+    }
+
+    @Override
+    public String encode() {
+        return param;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof UnknownSessionParam && ((UnknownSessionParam) obj).param.equals(param);
+    }
+
+    @Override
+    public int hashCode() {
+        return param.hashCode();
+    }
+}
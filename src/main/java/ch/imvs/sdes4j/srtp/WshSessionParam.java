@@ -13,6 +13,11 @@
  */
 package ch.imvs.sdes4j.srtp;
 
+import java.io.IOException;
+
+import ch.imvs.sdes4j.EncodeUtils;
+import ch.imvs.sdes4j.ParseUtils;
+
 /**
  * SRTP defines the SRTP-WINDOW-SIZE [RFC3711, Section 3.3.2] parameter to
  * protect against replay attacks. The Window Size Hint (WSH) session parameter
@@ -24,6 +29,8 @@ package ch.imvs.sdes4j.srtp;
  * @author Ingo Bauersachs
  */
 public class WshSessionParam extends SrtpSessionParam {
+    static final String PREFIX = "WSH=";
+
     private int wsh;
 
     /**
@@ -43,9 +50,37 @@ public class WshSessionParam extends SrtpSessionParam {
      * @param param The textual representation of the WSH parameter.
      */
     public WshSessionParam(String param) {
-        wsh = Integer.valueOf(param.split("=")[1]);
+        wsh = parse(param, param.indexOf('=') + 1, param.length());
+    }
+
+    /**
+     * Parses the value of the window size hint parameter.
+     * 
+     * @param s The sequence containing the value.
+     * @param start The inclusive start of the value.
+     * @param end The exclusive end of the value.
+     * @return The parsed window size hint.
+     */
+    static int parse(CharSequence s, int start, int end) {
+        long wsh = ParseUtils.parseDecimal(s, start, end, Integer.MAX_VALUE);
+        if (wsh < 0)
+            throw new IllegalArgumentException("WSH must be a decimal number");
         if (wsh < 64)
             throw new IllegalArgumentException("Minimum size is 64");
+        return (int) wsh;
+    }
+
+    /**
+     * Parses the value of the window size hint without throwing.
+     * 
+     * @param s The sequence containing the value.
+     * @param start The inclusive start of the value.
+     * @param end The exclusive end of the value.
+     * @return The parsed window size hint, or -1 if the value is invalid.
+     */
+    static int tryParse(CharSequence s, int start, int end) {
+        long wsh = ParseUtils.parseDecimal(s, start, end, Integer.MAX_VALUE);
+        return wsh < 64 ? -1 : (int) wsh;
     }
 
     /**
@@ -59,6 +94,22 @@ public class WshSessionParam extends SrtpSessionParam {
 
     @Override
     public String encode() {
-        return "WSH=" + wsh;
+        return PREFIX + wsh;
+    }
+
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(PREFIX);
+        EncodeUtils.appendDecimal(out, wsh);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof WshSessionParam && ((WshSessionParam) obj).wsh == wsh;
+    }
+
+    @Override
+    public int hashCode() {
+        return PREFIX.hashCode() + wsh;
     }
 }
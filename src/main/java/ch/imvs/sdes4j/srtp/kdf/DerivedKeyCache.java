@@ -0,0 +1,259 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp.kdf;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of derived session keys, so that the same key is not
+ * derived again for the SRTP and SRTCP contexts of a stream, for forked
+ * dialogs or for retransmissions.
+ * <p>
+ * Entries are keyed by the identity of the master key (usually the
+ * {@link ch.imvs.sdes4j.srtp.SrtpKeyParam} the derivation was created from),
+ * the label and the derivation index <tt>r = index DIV 2^kdr</tt>, so a new
+ * key is derived exactly when the key derivation rate requires it. The least
+ * recently used entry is evicted when the cache is full; evicted keys are
+ * overwritten with zeroes.
+ * <p>
+ * Instances are thread-safe. The key derivation passed to the methods is only
+ * used while holding the lock of the cache.
+ * 
+ * @author Ingo Bauersachs
+ */
+public class DerivedKeyCache {
+    private final int capacity;
+    private final LinkedHashMap<Key, byte[]> entries;
+    private final Key probe = new Key();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache.
+     * 
+     * @param capacity The maximum number of cached session keys.
+     */
+    public DerivedKeyCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, byte[]>(capacity * 4 / 3 + 1, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                if (size() <= DerivedKeyCache.this.capacity)
+                    return false;
+                Arrays.fill(eldest.getValue(), (byte) 0);
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets a session key from the cache, or derives and caches it.
+     * 
+     * @param masterKey The object identifying the master key.
+     * @param kdf The key derivation for the master key.
+     * @param label One of the <tt>LABEL_</tt> constants of
+     *            {@link SrtpKeyDerivation}.
+     * @param index The SRTP packet index or the SRTCP index.
+     * @param dst The array that receives the key.
+     * @param offset The index in <tt>dst</tt> of the first key byte.
+     * @param length The length of the key, in bytes.
+     * @return <code>true</code> if the key was found in the cache.
+     */
+    public synchronized boolean derive(Object masterKey, SrtpKeyDerivation kdf, int label, long index,
+            byte[] dst, int offset, int length) {
+        if (offset < 0 || length < 0 || dst.length - offset < length)
+            throw new IllegalArgumentException("Destination too small");
+
+        long r = kdf.getDerivationIndex(index);
+        probe.set(masterKey, label, r, length);
+        byte[] key = entries.get(probe);
+        boolean hit = key != null;
+        if (hit) {
+            hits++;
+        }
+        else {
+            misses++;
+            key = new byte[length];
+            kdf.deriveWithIndex(label, r, key, 0, length);
+            Key k = new Key();
+            k.set(masterKey, label, r, length);
+            entries.put(k, key);
+        }
+        System.arraycopy(key, 0, dst, offset, length);
+        probe.set(null, 0, 0, 0);
+        return hit;
+    }
+
+    /**
+     * Gets the SRTP session keys for a packet index from the cache, or
+     * derives and caches them.
+     * 
+     * @param masterKey The object identifying the master key.
+     * @param kdf The key derivation for the master key.
+     * @param index The 48 bit SRTP packet index.
+     * @param keys The holder that receives the keys.
+     */
+    public void deriveSrtpKeys(Object masterKey, SrtpKeyDerivation kdf, long index, SessionKeys keys) {
+        derive(masterKey, kdf, SrtpKeyDerivation.LABEL_RTP_ENCRYPTION, index, keys.getEncKey());
+        derive(masterKey, kdf, SrtpKeyDerivation.LABEL_RTP_MSG_AUTH, index, keys.getAuthKey());
+        derive(masterKey, kdf, SrtpKeyDerivation.LABEL_RTP_SALT, index, keys.getSaltKey());
+    }
+
+    /**
+     * Gets the SRTCP session keys for an SRTCP index from the cache, or
+     * derives and caches them.
+     * 
+     * @param masterKey The object identifying the master key.
+     * @param kdf The key derivation for the master key.
+     * @param index The 31 bit SRTCP index.
+     * @param keys The holder that receives the keys.
+     */
+    public void deriveSrtcpKeys(Object masterKey, SrtpKeyDerivation kdf, long index, SessionKeys keys) {
+        if (index > 0x7FFFFFFFL)
+            throw new IllegalArgumentException("SRTCP index must be a 31 bit unsigned value");
+        derive(masterKey, kdf, SrtpKeyDerivation.LABEL_RTCP_ENCRYPTION, index, keys.getEncKey());
+        derive(masterKey, kdf, SrtpKeyDerivation.LABEL_RTCP_MSG_AUTH, index, keys.getAuthKey());
+        derive(masterKey, kdf, SrtpKeyDerivation.LABEL_RTCP_SALT, index, keys.getSaltKey());
+    }
+
+    private void derive(Object masterKey, SrtpKeyDerivation kdf, int label, long index, byte[] dst) {
+        derive(masterKey, kdf, label, index, dst, 0, dst.length);
+    }
+
+    /**
+     * Removes and wipes all keys derived from a master key, e.g. when the
+     * master key expired.
+     * 
+     * @param masterKey The object identifying the master key.
+     * @return The number of removed keys.
+     */
+    public synchronized int remove(Object masterKey) {
+        int n = 0;
+        for (Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Key, byte[]> e = it.next();
+            if (e.getKey().masterKey == masterKey) {
+                Arrays.fill(e.getValue(), (byte) 0);
+                it.remove();
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Removes and wipes all keys.
+     */
+    public synchronized void clear() {
+        for (byte[] key : entries.values())
+            Arrays.fill(key, (byte) 0);
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of cached keys.
+     * 
+     * @return The number of cached keys.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the maximum number of cached keys.
+     * 
+     * @return The capacity passed to the constructor.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of lookups that found a cached key.
+     * 
+     * @return The number of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that derived a new key.
+     * 
+     * @return The number of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of keys that were evicted because the cache was full.
+     * 
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Gets the ratio of hits to all lookups.
+     * 
+     * @return The hit ratio in the range 0..1, or 0 before the first lookup.
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Cache key; the master key is compared by identity.
+     */
+    private static final class Key {
+        private Object masterKey;
+        private int label;
+        private long r;
+        private int length;
+
+        void set(Object masterKey, int label, long r, int length) {
+            this.masterKey = masterKey;
+            this.label = label;
+            this.r = r;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key k = (Key) obj;
+            return k.masterKey == masterKey && k.label == label && k.r == r && k.length == length;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(masterKey);
+            h = 31 * h + label;
+            h = 31 * h + (int) (r ^ (r >>> 32));
+            return 31 * h + length;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp.kdf;
+
+import java.util.Arrays;
+
+import ch.imvs.sdes4j.srtp.SrtpCryptoSuite;
+
+/**
+ * Pre-sized holder for the session keys of one direction of SRTP or SRTCP:
+ * the encryption key, the authentication key and the salt.
+ * {@link SrtpKeyDerivation} writes into the arrays of an instance, so that a
+ * re-keying does not allocate.
+ * <p>
+ * The getters return the internal arrays and not a copy. Instances are not
+ * thread-safe.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class SessionKeys {
+    private final byte[] encKey;
+    private final byte[] authKey;
+    private final byte[] saltKey;
+
+    /**
+     * Creates a holder with explicit key sizes.
+     * 
+     * @param encKeyLength The length of the encryption key, in bytes.
+     * @param authKeyLength The length of the authentication key, in bytes.
+     * @param saltKeyLength The length of the salt, in bytes.
+     */
+    public SessionKeys(int encKeyLength, int authKeyLength, int saltKeyLength) {
+        if (encKeyLength < 0 || authKeyLength < 0 || saltKeyLength < 0)
+            throw new IllegalArgumentException("key lengths must not be negative");
+        encKey = new byte[encKeyLength];
+        authKey = new byte[authKeyLength];
+        saltKey = new byte[saltKeyLength];
+    }
+
+    /**
+     * Creates a holder sized for the SRTP session keys of a suite.
+     * 
+     * @param suite The negotiated crypto suite.
+     * @return An empty holder.
+     */
+    public static SessionKeys forSrtp(SrtpCryptoSuite suite) {
+        return new SessionKeys(suite.getEncKeyLength() / 8, suite.getSrtpAuthKeyLength() / 8,
+            suite.getSaltKeyLength() / 8);
+    }
+
+    /**
+     * Creates a holder sized for the SRTCP session keys of a suite.
+     * 
+     * @param suite The negotiated crypto suite.
+     * @return An empty holder.
+     */
+    public static SessionKeys forSrtcp(SrtpCryptoSuite suite) {
+        return new SessionKeys(suite.getEncKeyLength() / 8, suite.getSrtcpAuthKeyLength() / 8,
+            suite.getSaltKeyLength() / 8);
+    }
+
+    /**
+     * Gets the session encryption key.
+     * 
+     * @return The internal array holding the key.
+     */
+    public byte[] getEncKey() {
+        return encKey;
+    }
+
+    /**
+     * Gets the session authentication key.
+     * 
+     * @return The internal array holding the key.
+     */
+    public byte[] getAuthKey() {
+        return authKey;
+    }
+
+    /**
+     * Gets the session salt.
+     * 
+     * @return The internal array holding the salt.
+     */
+    public byte[] getSaltKey() {
+        return saltKey;
+    }
+
+    /**
+     * Overwrites all keys with zeroes.
+     */
+    public void wipe() {
+        Arrays.fill(encKey, (byte) 0);
+        Arrays.fill(authKey, (byte) 0);
+        Arrays.fill(saltKey, (byte) 0);
+    }
+}
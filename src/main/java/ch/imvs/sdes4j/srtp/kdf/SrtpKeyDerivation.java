@@ -0,0 +1,300 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp.kdf;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import ch.imvs.sdes4j.srtp.KdrSessionParam;
+import ch.imvs.sdes4j.srtp.SrtpCryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpCryptoSuite;
+import ch.imvs.sdes4j.srtp.SrtpKeyParam;
+import ch.imvs.sdes4j.srtp.SrtpSessionParam;
+
+/**
+ * Session key derivation as described in Section 4.3 of [RFC3711], using the
+ * AES-CM pseudo-random function of Section 4.3.3. The same function is used
+ * for the AES-192 and AES-256 suites of [RFC6188] and for the F8 suite.
+ * <p>
+ * The AES cipher is initialized once with the master key; each derivation
+ * encrypts a counter block in place and writes the keystream into a caller
+ * provided array, so no objects are created after construction.
+ * <p>
+ * With a key derivation rate (<tt>KDR</tt>), the session keys change every
+ * 2^kdr packets. Use {@link #getDerivationIndex(long)} to detect when a new
+ * derivation is due. Without a key derivation rate, the keys are derived once
+ * and the packet index is ignored.
+ * <p>
+ * Instances are not thread-safe; use one instance per thread or stream.
+ * 
+ * @author Ingo Bauersachs
+ */
+public final class SrtpKeyDerivation {
+    public final static int LABEL_RTP_ENCRYPTION = 0x00;
+    public final static int LABEL_RTP_MSG_AUTH = 0x01;
+    public final static int LABEL_RTP_SALT = 0x02;
+    public final static int LABEL_RTCP_ENCRYPTION = 0x03;
+    public final static int LABEL_RTCP_MSG_AUTH = 0x04;
+    public final static int LABEL_RTCP_SALT = 0x05;
+
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * The salt is 112 bits; the key id (8 bit label and 48 bit index) is
+     * aligned to its end.
+     */
+    private static final int SALT_LENGTH = 14;
+    private static final int LABEL_OFFSET = 7;
+
+    private final SrtpCryptoSuite suite;
+    private final Cipher cipher;
+    private final byte[] masterSalt = new byte[SALT_LENGTH];
+    private final int kdr;
+    private final byte[] iv = new byte[BLOCK_SIZE];
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    /**
+     * Creates the key derivation for the first master key and the key
+     * derivation rate of a crypto attribute.
+     * 
+     * @param attribute The negotiated crypto attribute.
+     * @throws UnsupportedOperationException when the suite does not use the
+     *             AES-CM key derivation.
+     */
+    public SrtpKeyDerivation(SrtpCryptoAttribute attribute) {
+        this(attribute.getCryptoSuite(), attribute.getKeyParams()[0], findKdr(attribute.getSessionParams()));
+    }
+
+    /**
+     * Creates the key derivation for a master key.
+     * 
+     * @param suite The negotiated crypto suite.
+     * @param keyParam The key parameter holding the concatenated master key
+     *            and salt.
+     * @param kdr The key derivation rate, or <code>null</code> if it was not
+     *            signalled.
+     * @throws UnsupportedOperationException when the suite does not use the
+     *             AES-CM key derivation.
+     */
+    public SrtpKeyDerivation(SrtpCryptoSuite suite, SrtpKeyParam keyParam, KdrSessionParam kdr) {
+        this.suite = checkSuite(suite);
+        this.kdr = kdr == null ? -1 : kdr.getKeyDerivationRate();
+        int keyLength = suite.getEncKeyLength() / 8;
+        int saltLength = suite.getSaltKeyLength() / 8;
+        byte[] material = new byte[keyLength + saltLength];
+        try {
+            if (keyParam.getKey(material, 0) != material.length)
+                throw new IllegalArgumentException("Master key length does not match the crypto suite");
+            System.arraycopy(material, keyLength, masterSalt, 0, saltLength);
+            cipher = initCipher(material, keyLength);
+        }
+        finally {
+            Arrays.fill(material, (byte) 0);
+        }
+    }
+
+    /**
+     * Creates the key derivation for a master key and salt.
+     * 
+     * @param suite The negotiated crypto suite.
+     * @param masterKey The master key.
+     * @param masterSalt The master salt.
+     * @param kdr The key derivation rate, or <code>null</code> if it was not
+     *            signalled.
+     * @throws UnsupportedOperationException when the suite does not use the
+     *             AES-CM key derivation.
+     */
+    public SrtpKeyDerivation(SrtpCryptoSuite suite, byte[] masterKey, byte[] masterSalt, KdrSessionParam kdr) {
+        this.suite = checkSuite(suite);
+        this.kdr = kdr == null ? -1 : kdr.getKeyDerivationRate();
+        if (masterKey.length != suite.getEncKeyLength() / 8)
+            throw new IllegalArgumentException("Master key length does not match the crypto suite");
+        if (masterSalt.length != suite.getSaltKeyLength() / 8)
+            throw new IllegalArgumentException("Master salt length does not match the crypto suite");
+        System.arraycopy(masterSalt, 0, this.masterSalt, 0, masterSalt.length);
+        cipher = initCipher(masterKey, masterKey.length);
+    }
+
+    private static SrtpCryptoSuite checkSuite(SrtpCryptoSuite suite) {
+        switch (suite.getEncryptionAlgorithm()) {
+            case SrtpCryptoSuite.ENCRYPTION_AES128_CM:
+            case SrtpCryptoSuite.ENCRYPTION_AES128_F8:
+            case SrtpCryptoSuite.ENCRYPTION_AES192_CM:
+            case SrtpCryptoSuite.ENCRYPTION_AES256_CM:
+                if (suite.getSaltKeyLength() / 8 != SALT_LENGTH)
+                    break;
+                return suite;
+        }
+        throw new UnsupportedOperationException("No AES-CM key derivation for " + suite.encode());
+    }
+
+    private static KdrSessionParam findKdr(SrtpSessionParam[] params) {
+        if (params != null) {
+            for (SrtpSessionParam p : params) {
+                if (p instanceof KdrSessionParam)
+                    return (KdrSessionParam) p;
+            }
+        }
+        return null;
+    }
+
+    private static Cipher initCipher(byte[] key, int length) {
+        try {
+            Cipher c = Cipher.getInstance("AES/ECB/NoPadding");
+            c.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, 0, length, "AES"));
+            return c;
+        }
+        catch (GeneralSecurityException e) {
+            // AES is a mandatory algorithm of every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the crypto suite for which the keys are derived.
+     * 
+     * @return The crypto suite.
+     */
+    public SrtpCryptoSuite getCryptoSuite() {
+        return suite;
+    }
+
+    /**
+     * Gets the key derivation rate.
+     * 
+     * @return The exponent n of the rate 2^n, or -1 if the keys are derived
+     *         only once.
+     */
+    public int getKeyDerivationRate() {
+        return kdr;
+    }
+
+    /**
+     * Computes <tt>r = index DIV key_derivation_rate</tt>. The session keys
+     * for two packet indices are the same if and only if their derivation
+     * index is the same.
+     * 
+     * @param index The SRTP packet index or the SRTCP index.
+     * @return The derivation index, always 0 without a key derivation rate.
+     */
+    public long getDerivationIndex(long index) {
+        if (index < 0 || index > 0xFFFFFFFFFFFFL)
+            throw new IllegalArgumentException("index must be a 48 bit unsigned value");
+        return kdr < 0 ? 0 : index >>> kdr;
+    }
+
+    /**
+     * Derives the SRTP session keys for a packet index.
+     * 
+     * @param index The 48 bit SRTP packet index.
+     * @param keys The holder that receives the keys, see
+     *            {@link SessionKeys#forSrtp(SrtpCryptoSuite)}.
+     */
+    public void deriveSrtpKeys(long index, SessionKeys keys) {
+        long r = getDerivationIndex(index);
+        deriveWithIndex(LABEL_RTP_ENCRYPTION, r, keys.getEncKey(), 0, keys.getEncKey().length);
+        deriveWithIndex(LABEL_RTP_MSG_AUTH, r, keys.getAuthKey(), 0, keys.getAuthKey().length);
+        deriveWithIndex(LABEL_RTP_SALT, r, keys.getSaltKey(), 0, keys.getSaltKey().length);
+    }
+
+    /**
+     * Derives the SRTCP session keys for an SRTCP index.
+     * 
+     * @param index The 31 bit SRTCP index.
+     * @param keys The holder that receives the keys, see
+     *            {@link SessionKeys#forSrtcp(SrtpCryptoSuite)}.
+     */
+    public void deriveSrtcpKeys(long index, SessionKeys keys) {
+        if (index > 0x7FFFFFFFL)
+            throw new IllegalArgumentException("SRTCP index must be a 31 bit unsigned value");
+        long r = getDerivationIndex(index);
+        deriveWithIndex(LABEL_RTCP_ENCRYPTION, r, keys.getEncKey(), 0, keys.getEncKey().length);
+        deriveWithIndex(LABEL_RTCP_MSG_AUTH, r, keys.getAuthKey(), 0, keys.getAuthKey().length);
+        deriveWithIndex(LABEL_RTCP_SALT, r, keys.getSaltKey(), 0, keys.getSaltKey().length);
+    }
+
+    /**
+     * Derives a single session key.
+     * 
+     * @param label One of the <tt>LABEL_</tt> constants.
+     * @param index The SRTP packet index or the SRTCP index.
+     * @param dst The array that receives the key.
+     * @param offset The index in <tt>dst</tt> of the first key byte.
+     * @param length The length of the key, in bytes.
+     */
+    public void derive(int label, long index, byte[] dst, int offset, int length) {
+        deriveWithIndex(label, getDerivationIndex(index), dst, offset, length);
+    }
+
+    /**
+     * Derives a single session key for a derivation index as returned by
+     * {@link #getDerivationIndex(long)}.
+     * 
+     * @param label One of the <tt>LABEL_</tt> constants.
+     * @param r The derivation index.
+     * @param dst The array that receives the key.
+     * @param offset The index in <tt>dst</tt> of the first key byte.
+     * @param length The length of the key, in bytes.
+     */
+    public void deriveWithIndex(int label, long r, byte[] dst, int offset, int length) {
+        if (label < 0 || label > 0xFF)
+            throw new IllegalArgumentException("label must be an 8 bit value");
+        if (offset < 0 || length < 0 || dst.length - offset < length)
+            throw new IllegalArgumentException("Destination too small");
+
+        // x = (label || r) XOR master_salt, IV = x * 2^16
+        System.arraycopy(masterSalt, 0, iv, 0, SALT_LENGTH);
+        iv[LABEL_OFFSET] ^= (byte) label;
+        for (int i = SALT_LENGTH - 1; i > LABEL_OFFSET; i--) {
+            iv[i] ^= (byte) r;
+            r >>>= 8;
+        }
+        iv[SALT_LENGTH] = 0;
+        iv[SALT_LENGTH + 1] = 0;
+
+        try {
+            int pos = offset;
+            int end = offset + length;
+            while (pos < end) {
+                cipher.update(iv, 0, BLOCK_SIZE, block, 0);
+                int n = Math.min(BLOCK_SIZE, end - pos);
+                System.arraycopy(block, 0, dst, pos, n);
+                pos += n;
+                // the 16 bit counter cannot overflow for keys below 1 MiB
+                if (++iv[BLOCK_SIZE - 1] == 0)
+                    iv[BLOCK_SIZE - 2]++;
+            }
+        }
+        catch (GeneralSecurityException e) {
+            // the block array always has room for one block
+            throw new IllegalStateException(e);
+        }
+        finally {
+            Arrays.fill(block, (byte) 0);
+        }
+    }
+
+    /**
+     * Overwrites the master salt and the scratch buffers with zeroes. The
+     * instance must not be used afterwards.
+     */
+    public void wipe() {
+        Arrays.fill(masterSalt, (byte) 0);
+        Arrays.fill(iv, (byte) 0);
+        Arrays.fill(block, (byte) 0);
+    }
+}
@@ -14,29 +14,75 @@
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import ch.imvs.sdes4j.AsciiAppendableTest;
+import ch.imvs.sdes4j.AsciiSequenceTest;
+import ch.imvs.sdes4j.CryptoAttributeDiffTest;
 import ch.imvs.sdes4j.CryptoAttributeTest;
+import ch.imvs.sdes4j.EncodeUtilsTest;
+import ch.imvs.sdes4j.ParseContextTest;
+import ch.imvs.sdes4j.ParseResultTest;
+import ch.imvs.sdes4j.ParseUtilsTest;
+import ch.imvs.sdes4j.SdpScannerTest;
+import ch.imvs.sdes4j.srtp.Base64CodecTest;
 import ch.imvs.sdes4j.srtp.FecKeySessionParamTest;
 import ch.imvs.sdes4j.srtp.FecOrderSessionParamTest;
 import ch.imvs.sdes4j.srtp.KdrSessionParamTest;
+import ch.imvs.sdes4j.srtp.KeyLifetimeTrackerTest;
+import ch.imvs.sdes4j.srtp.KeyMaterialPoolTest;
+import ch.imvs.sdes4j.srtp.KeyReservoirTest;
+import ch.imvs.sdes4j.srtp.MkiIndexTest;
 import ch.imvs.sdes4j.srtp.NoAuthSessionParamTest;
 import ch.imvs.sdes4j.srtp.PlainSrtcpSessionParamTest;
 import ch.imvs.sdes4j.srtp.PlainSrtpSessionParamTest;
+import ch.imvs.sdes4j.srtp.SecretKeyMaterialTest;
+import ch.imvs.sdes4j.srtp.SecureRandomPoolTest;
+import ch.imvs.sdes4j.srtp.SessionParamSetTest;
 import ch.imvs.sdes4j.srtp.SrtpCryptoSuiteTest;
 import ch.imvs.sdes4j.srtp.SrtpKeyParamTest;
+import ch.imvs.sdes4j.srtp.SrtpNegotiatorTest;
+import ch.imvs.sdes4j.srtp.SrtpParseCacheTest;
+import ch.imvs.sdes4j.srtp.SrtpPolicyTest;
+import ch.imvs.sdes4j.srtp.SrtpSDesFactoryTest;
+import ch.imvs.sdes4j.srtp.UnknownSessionParamTest;
 import ch.imvs.sdes4j.srtp.WshSessionParamTest;
+import ch.imvs.sdes4j.srtp.kdf.DerivedKeyCacheTest;
+import ch.imvs.sdes4j.srtp.kdf.SrtpKeyDerivationTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    Base64CodecTest.class,
     FecKeySessionParamTest.class,
     FecOrderSessionParamTest.class,
     KdrSessionParamTest.class,
+    KeyLifetimeTrackerTest.class,
+    KeyMaterialPoolTest.class,
+    KeyReservoirTest.class,
+    MkiIndexTest.class,
     NoAuthSessionParamTest.class,
     PlainSrtcpSessionParamTest.class,
     PlainSrtpSessionParamTest.class,
+    SecretKeyMaterialTest.class,
+    SecureRandomPoolTest.class,
+    SessionParamSetTest.class,
     SrtpCryptoSuiteTest.class,
     SrtpKeyParamTest.class,
+    SrtpNegotiatorTest.class,
+    SrtpParseCacheTest.class,
+    SrtpPolicyTest.class,
+    SrtpSDesFactoryTest.class,
+    UnknownSessionParamTest.class,
     WshSessionParamTest.class,
-    CryptoAttributeTest.class
+    DerivedKeyCacheTest.class,
+    SrtpKeyDerivationTest.class,
+    AsciiAppendableTest.class,
+    AsciiSequenceTest.class,
+    CryptoAttributeDiffTest.class,
+    CryptoAttributeTest.class,
+    EncodeUtilsTest.class,
+    ParseContextTest.class,
+    ParseResultTest.class,
+    ParseUtilsTest.class,
+    SdpScannerTest.class
 
 })
 public class AllTests {
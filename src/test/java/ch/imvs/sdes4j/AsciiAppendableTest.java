@@ -0,0 +1,41 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class AsciiAppendableTest {
+    @Test
+    public void testAppend() {
+        ByteBuffer buf = ByteBuffer.allocate(10);
+        new AsciiAppendable(buf).append('a').append("bcd").append("xefx", 1, 3);
+        assertEquals(6, buf.position());
+        assertEquals("abcdef", new String(buf.array(), 0, 6));
+    }
+
+    @Test(expected=BufferOverflowException.class)
+    public void testOverflow() {
+        new AsciiAppendable(ByteBuffer.allocate(2)).append("abc");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNonAscii() {
+        new AsciiAppendable(ByteBuffer.allocate(2)).append('\u00e4');
+    }
+}
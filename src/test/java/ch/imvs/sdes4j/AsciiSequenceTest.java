@@ -0,0 +1,61 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class AsciiSequenceTest {
+    private static final byte[] BYTES = "xxKDR=1yy".getBytes();
+
+    @Test
+    public void testArray() {
+        AsciiSequence s = new AsciiSequence(BYTES, 2, 5);
+        assertEquals(5, s.length());
+        assertEquals('K', s.charAt(0));
+        assertEquals("KDR=1", s.toString());
+        assertEquals("DR", s.subSequence(1, 3).toString());
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(BYTES.length);
+        buf.put(BYTES);
+        buf.flip();
+        AsciiSequence s = new AsciiSequence(buf, 2, 5);
+        assertEquals("KDR=1", s.toString());
+        assertEquals(0, buf.position());
+        assertEquals(BYTES.length, buf.limit());
+    }
+
+    @Test
+    public void testHeapBufferSlice() {
+        ByteBuffer buf = ByteBuffer.wrap(BYTES, 1, 8).slice();
+        AsciiSequence s = new AsciiSequence(buf, 1, 5);
+        assertEquals("KDR=1", s.toString());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testOutOfRange() {
+        new AsciiSequence(BYTES, 5, 5);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testCharAtOutOfRange() {
+        new AsciiSequence(BYTES, 2, 5).charAt(5);
+    }
+}
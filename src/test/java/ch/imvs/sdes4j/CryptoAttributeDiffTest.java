@@ -0,0 +1,112 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import ch.imvs.sdes4j.CryptoAttributeDiff.Change;
+import ch.imvs.sdes4j.srtp.KeyMaterialPool;
+import ch.imvs.sdes4j.srtp.SrtpCryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpSDesFactory;
+
+public class CryptoAttributeDiffTest {
+    private final static String KEY1 = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+    private final static String KEY2 = "inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5";
+    private final static String LINE1 = "1 AES_CM_128_HMAC_SHA1_80 " + KEY1 + "|2^20|1:4 KDR=10";
+    private final static String LINE2 = "2 AES_CM_128_HMAC_SHA1_32 " + KEY2;
+
+    private final SDesFactory f = SrtpSDesFactory.getInstance();
+    private final CryptoAttribute[] previous = {
+        SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 " + KEY1 + "|1048576|1:4 KDR=10"),
+        SrtpCryptoAttribute.create(LINE2)
+    };
+    private final CryptoAttributeDiff diff = new CryptoAttributeDiff(previous, f);
+
+    @Test
+    public void testUnchanged() {
+        String line = "a=crypto:" + previous[0].encode() + "\r\n";
+        assertEquals(Change.UNCHANGED, diff.classify(line, 0, line.length()));
+        assertSame(previous[0], diff.apply(line, 0, line.length()));
+        assertSame(previous[1], diff.apply(LINE2, 0, LINE2.length()));
+    }
+
+    @Test
+    public void testSessionParamsChanged() {
+        String line = "1 AES_CM_128_HMAC_SHA1_80 " + KEY1 + "|1048576|1:4 KDR=12 WSH=128";
+        assertEquals(Change.SESSION_PARAMS_CHANGED, diff.classify(line, 0, line.length()));
+        CryptoAttribute a = diff.apply(line, 0, line.length());
+        assertTrue(a instanceof SrtpCryptoAttribute);
+        assertArrayEquals(previous[0].getKeyParams(), a.getKeyParams());
+        assertEquals("KDR=12 WSH=128", a.getSessionParamsString());
+        assertEquals(CryptoAttribute.create(line, f), a);
+
+        String noParams = "1 AES_CM_128_HMAC_SHA1_80 " + KEY1 + "|1048576|1:4";
+        assertEquals(Change.SESSION_PARAMS_CHANGED, diff.classify(noParams, 0, noParams.length()));
+        assertEquals(0, diff.apply(noParams, 0, noParams.length()).getSessionParams().length);
+    }
+
+    @Test
+    public void testSessionParamsChangedWithPooledKeys() {
+        KeyMaterialPool pool = new KeyMaterialPool(4);
+        SrtpSDesFactory pooled = new SrtpSDesFactory();
+        pooled.setKeyMaterialPool(pool);
+        SrtpCryptoAttribute old = (SrtpCryptoAttribute) CryptoAttribute.create(LINE1, pooled);
+        CryptoAttributeDiff pooledDiff = new CryptoAttributeDiff(new CryptoAttribute[] { old }, pooled);
+
+        String line = "1 AES_CM_128_HMAC_SHA1_80 " + KEY1 + "|1048576|1:4 WSH=128";
+        SrtpCryptoAttribute a = (SrtpCryptoAttribute) pooledDiff.apply(line, 0, line.length());
+        assertEquals(2, pool.getInUse());
+        old.close();
+        assertEquals(1, pool.getInUse());
+        assertEquals(line, a.encode());
+        assertEquals(CryptoAttribute.create(line, f), a);
+        a.close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void testRekeyed() {
+        String line = "2 AES_CM_128_HMAC_SHA1_32 " + KEY1;
+        assertEquals(Change.REKEYED, diff.classify(line, 0, line.length()));
+        assertEquals(CryptoAttribute.create(line, f), diff.apply(line, 0, line.length()));
+
+        // different text for the same value is parsed again
+        assertEquals(Change.REKEYED, diff.classify(LINE1, 0, LINE1.length()));
+        assertEquals(previous[0], diff.apply(LINE1, 0, LINE1.length()));
+    }
+
+    @Test
+    public void testRekeyedInLastCharacter() {
+        String line = LINE2.substring(0, LINE2.length() - 1) + "8";
+        assertEquals(Change.REKEYED, diff.classify(line, 0, line.length()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testApplyWithShortChanges() {
+        diff.apply(new CharSequence[] { LINE1, LINE2 }, new Change[1]);
+    }
+
+    @Test
+    public void testAdded() {
+        String line = "3 AES_CM_128_HMAC_SHA1_80 " + KEY2;
+        Change[] changes = new Change[2];
+        CryptoAttribute[] result = diff.apply(new CharSequence[] { previous[1].encode(), line }, changes);
+        assertEquals(Change.UNCHANGED, changes[0]);
+        assertEquals(Change.ADDED, changes[1]);
+        assertSame(previous[1], result[0]);
+        assertEquals(3, result[1].getTag());
+    }
+}
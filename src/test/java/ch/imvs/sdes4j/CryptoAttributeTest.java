@@ -16,14 +16,18 @@ package ch.imvs.sdes4j;
 import static org.junit.Assert.*;
 
 
+import java.util.Random;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import ch.imvs.sdes4j.srtp.FecOrderSessionParam;
 import ch.imvs.sdes4j.srtp.NoAuthSessionParam;
+import ch.imvs.sdes4j.srtp.SrtpCryptoAttribute;
 import ch.imvs.sdes4j.srtp.SrtpCryptoSuite;
 import ch.imvs.sdes4j.srtp.SrtpKeyParam;
 import ch.imvs.sdes4j.srtp.SrtpSDesFactory;
+import ch.imvs.sdes4j.srtp.SrtpSessionParam;
 
 public class CryptoAttributeTest {
     private SrtpSDesFactory f;
@@ -33,6 +37,42 @@ public class CryptoAttributeTest {
         f = new SrtpSDesFactory();
     }
 
+    @Test
+    public void testParseWithStringOnlyFactory() {
+        SDesFactory legacy = new SDesFactory() {
+            public CryptoSuite createCryptoSuite(String suite) {
+                return f.createCryptoSuite(suite);
+            }
+
+            public KeyParam createKeyParam(String keyParam) {
+                return f.createKeyParam(keyParam);
+            }
+
+            public KeyParam[] createKeyParamArray(int size) {
+                return f.createKeyParamArray(size);
+            }
+
+            public SessionParam createSessionParam(String sessionParam) {
+                return f.createSessionParam(sessionParam);
+            }
+
+            public SessionParam[] createSessionParamArray(int size) {
+                return f.createSessionParamArray(size);
+            }
+
+            public CryptoAttribute createCryptoAttribute() {
+                return new CryptoAttribute();
+            }
+
+            public void setRandomGenerator(Random r) {
+            }
+        };
+        String line = "1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|1048576|1:4 KDR=1 UNENCRYPTED_SRTP";
+        CryptoAttribute a = CryptoAttribute.create(line, legacy);
+        assertEquals(line, a.encode());
+        assertEquals(2, a.getSessionParams().length);
+    }
+
     @Test
     public void testEncodeSessionParamsString() {
         byte[] bkey = new byte[]{0};
@@ -107,9 +147,29 @@ public class CryptoAttributeTest {
         validateExample2(a);
     }
 
+    @Test
+    public void testParseRangeOfCharSequence() {
+        StringBuilder sb = new StringBuilder("a=crypto:");
+        sb.append("1 AES_CM_128_HMAC_SHA1_80 inline:WVNfX19zZW1jdGwgKCkgewkyMjA7fQp9CnVubGVz|2^20|1:4 FEC_ORDER=FEC_SRTP");
+        int start = sb.length() - "1 AES_CM_128_HMAC_SHA1_80 inline:WVNfX19zZW1jdGwgKCkgewkyMjA7fQp9CnVubGVz|2^20|1:4 FEC_ORDER=FEC_SRTP".length();
+        sb.append("\r\na=rtcp-mux");
+        CryptoAttribute a = CryptoAttribute.parse(sb, start, sb.indexOf("\r"), f);
+        validateExample2(a);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testParseEmptyKeyParameter() {
+        CryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:AA==;;inline:AA==", f);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testParseEmpty() {
+        CryptoAttribute.create("  ", f);
+    }
+
     @Test(expected=IllegalArgumentException.class)
     public void testParseWithoutKeyParameter() {
-        new CryptoAttribute(1, new SrtpCryptoSuite(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80), null, null);
+        new CryptoAttribute(1, SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80), null, null);
     }
 
     @Test(expected=IllegalArgumentException.class)
@@ -275,4 +335,46 @@ public class CryptoAttributeTest {
         assertNotEquals(d.hashCode(), e.hashCode());
         assertNotEquals(h.hashCode(), i.hashCode());
     }
+
+    @Test
+    public void testEncodeIsCached() {
+        CryptoAttribute a = CryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|2^20|1:4 KDR=1", f);
+        assertSame(a.encode(), a.encode());
+        assertEquals(a.hashCode(), a.hashCode());
+    }
+
+    @Test
+    public void testEqualsIsStructural() {
+        CryptoAttribute a = CryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|2^20|1:4 UNAUTHENTICATED_SRTP", f);
+        CryptoAttribute b = CryptoAttribute.create("1  AES_CM_128_HMAC_SHA1_80\tinline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|1048576|1:4 UNAUTHENTICATED_SRTP", f);
+        CryptoAttribute c = CryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|2^20|1:4 UNENCRYPTED_SRTP", f);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+
+        f.setLazyKeyDecoding(true);
+        CryptoAttribute lazy = CryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|2^20|1:4 UNAUTHENTICATED_SRTP", f);
+        assertEquals(a, lazy);
+        assertEquals(a.hashCode(), lazy.hashCode());
+    }
+
+    @Test
+    public void testEqualsNullAndEmptySessionParams() {
+        SrtpCryptoSuite suite = f.createCryptoSuite(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+        SrtpKeyParam key = new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, new byte[] { 1 }, 0, 0, 0);
+        CryptoAttribute a = new SrtpCryptoAttribute(1, suite, new SrtpKeyParam[] { key }, null);
+        CryptoAttribute b = new SrtpCryptoAttribute(1, suite, new SrtpKeyParam[] { key }, new SrtpSessionParam[0]);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void testEncodeLines() {
+        CryptoAttribute a = CryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR", f);
+        CryptoAttribute b = CryptoAttribute.create("2 AES_CM_128_HMAC_SHA1_32 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR KDR=1", f);
+        assertEquals("a=crypto:1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR\r\n"
+            + "a=crypto:2 AES_CM_128_HMAC_SHA1_32 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR KDR=1\r\n",
+            CryptoAttribute.encodeLines(new CryptoAttribute[] { a, b }));
+        assertEquals("", CryptoAttribute.encodeLines(new CryptoAttribute[0]));
+    }
 }
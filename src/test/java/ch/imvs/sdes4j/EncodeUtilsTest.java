@@ -0,0 +1,60 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class EncodeUtilsTest {
+    private static String decimal(long value) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        EncodeUtils.appendDecimal(sb, value);
+        return sb.toString();
+    }
+
+    @Test
+    public void testAppendDecimal() throws Exception {
+        assertEquals("0", decimal(0));
+        assertEquals("7", decimal(7));
+        assertEquals("10", decimal(10));
+        assertEquals("1048576", decimal(1048576));
+        assertEquals("-42", decimal(-42));
+        assertEquals(Long.toString(Long.MAX_VALUE), decimal(Long.MAX_VALUE));
+        assertEquals(Long.toString(Long.MIN_VALUE), decimal(Long.MIN_VALUE));
+    }
+
+    private static String decimal(byte[] value) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        EncodeUtils.appendDecimal(sb, value, 0, value.length);
+        return sb.toString();
+    }
+
+    @Test
+    public void testAppendDecimalBytes() throws Exception {
+        assertEquals("0", decimal(new byte[0]));
+        assertEquals("0", decimal(new byte[3]));
+        assertEquals("258", decimal(new byte[] { 0, 1, 2 }));
+        assertEquals("4294967295", decimal(new byte[] { -1, -1, -1, -1 }));
+        byte[] big = new byte[16];
+        Arrays.fill(big, (byte) -1);
+        assertEquals("340282366920938463463374607431768211455", decimal(big));
+        big[0] = 0;
+        big[15] = 0;
+        assertEquals(new BigInteger(1, big).toString(), decimal(big));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import ch.imvs.sdes4j.srtp.SrtpCryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpSDesFactory;
+
+public class ParseContextTest {
+    private static final String ATTRIBUTE =
+        "1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|1048576|1:4";
+
+    @Test
+    public void testReuseForByteArrays() {
+        ParseContext ctx = new ParseContext();
+        byte[] first = ATTRIBUTE.getBytes();
+        byte[] second = (ATTRIBUTE.replace("1 AES", "2 AES") + " KDR=3").getBytes();
+        CryptoAttribute a = CryptoAttribute.parse(first, 0, first.length, SrtpSDesFactory.getInstance(), ctx);
+        CryptoAttribute b = CryptoAttribute.parse(second, 0, second.length, SrtpSDesFactory.getInstance(), ctx);
+        assertEquals(ATTRIBUTE, a.encode());
+        assertEquals(2, b.getTag());
+        assertEquals(1, b.getSessionParams().length);
+    }
+
+    @Test
+    public void testManySessionParams() {
+        StringBuilder sb = new StringBuilder(ATTRIBUTE);
+        for (int i = 0; i < 20; i++)
+            sb.append(" KDR=").append(i);
+        String attribute = sb.toString();
+        CryptoAttribute a = CryptoAttribute.parse(attribute, 0, attribute.length(), SrtpSDesFactory.getInstance(), new ParseContext());
+        assertEquals(20, a.getSessionParams().length);
+        assertEquals(attribute, a.encode());
+        assertEquals(SrtpCryptoAttribute.create(attribute), a);
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(100);
+        buf.put(ATTRIBUTE.getBytes());
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.parse(buf, 0, ATTRIBUTE.length(), ParseContext.forCurrentThread());
+        assertEquals(ATTRIBUTE, a.encode());
+    }
+
+    @Test
+    public void testForCurrentThread() throws Exception {
+        final ParseContext[] other = new ParseContext[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                other[0] = ParseContext.forCurrentThread();
+            }
+        };
+        t.start();
+        t.join();
+        assertSame(ParseContext.forCurrentThread(), ParseContext.forCurrentThread());
+        assertNotNull(other[0]);
+        assertNotSame(other[0], ParseContext.forCurrentThread());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ParseResultTest {
+    @Test
+    public void testSuccess() {
+        ParseResult<String> r = ParseResult.success("a");
+        assertTrue(r.isSuccess());
+        assertEquals("a", r.getValue());
+        assertEquals("a", r.getOrThrow());
+        assertNull(r.getError());
+        assertEquals(-1, r.getErrorOffset());
+    }
+
+    @Test
+    public void testFailure() {
+        ParseResult<String> r = ParseResult.failure(ParseError.INVALID_TAG, 3);
+        assertFalse(r.isSuccess());
+        assertNull(r.getValue());
+        assertEquals(ParseError.INVALID_TAG, r.getError());
+        assertEquals(3, r.getErrorOffset());
+        assertEquals("INVALID_TAG at offset 3", r.toString());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testFailureGetOrThrow() {
+        ParseResult.failure(ParseError.INVALID_KEY, 0).getOrThrow();
+    }
+}
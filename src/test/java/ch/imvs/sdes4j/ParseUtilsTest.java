@@ -0,0 +1,79 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ParseUtilsTest {
+    @Test
+    public void testTokens() {
+        String s = " \tab c\r\n";
+        assertEquals(2, ParseUtils.skipWhitespace(s, 0, s.length()));
+        assertEquals(4, ParseUtils.tokenEnd(s, 2, s.length()));
+        assertEquals(5, ParseUtils.skipWhitespace(s, 4, s.length()));
+        assertEquals(6, ParseUtils.tokenEnd(s, 5, s.length()));
+        assertEquals(s.length(), ParseUtils.skipWhitespace(s, 6, s.length()));
+    }
+
+    @Test
+    public void testIndexOfAndCount() {
+        String s = "a;b;c";
+        assertEquals(1, ParseUtils.indexOf(s, ';', 0, s.length()));
+        assertEquals(3, ParseUtils.indexOf(s, ';', 2, s.length()));
+        assertEquals(-1, ParseUtils.indexOf(s, ';', 0, 1));
+        assertEquals(2, ParseUtils.count(s, ';', 0, s.length()));
+        assertEquals(1, ParseUtils.count(s, ';', 2, s.length()));
+    }
+
+    @Test
+    public void testStartsWithAndRegionEquals() {
+        String s = "xKDR=1";
+        assertTrue(ParseUtils.startsWith(s, 1, s.length(), "KDR="));
+        assertFalse(ParseUtils.startsWith(s, 1, 4, "KDR="));
+        assertTrue(ParseUtils.regionEquals(s, 1, 4, "KDR"));
+        assertFalse(ParseUtils.regionEquals(s, 1, 5, "KDR"));
+    }
+
+    @Test
+    public void testParseDecimal() {
+        assertEquals(0, ParseUtils.parseDecimal("0", 0, 1, 10));
+        assertEquals(1234, ParseUtils.parseDecimal("x1234", 1, 5, 99999));
+        assertEquals(99999999, ParseUtils.parseDecimal("99999999", 0, 8, 99999999));
+        assertEquals(-1, ParseUtils.parseDecimal("100000000", 0, 9, 99999999));
+        assertEquals(-1, ParseUtils.parseDecimal("7", 0, 1, 5));
+        assertEquals(-1, ParseUtils.parseDecimal("", 0, 0, 5));
+        assertEquals(-1, ParseUtils.parseDecimal("-1", 0, 2, 5));
+        assertEquals(-1, ParseUtils.parseDecimal("99999999999999999999", 0, 20, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testParseDecimalToBytes() {
+        byte[] b = new byte[4];
+        assertTrue(ParseUtils.parseDecimal("x258", 1, 4, b, 1, 2));
+        assertArrayEquals(new byte[] { 0, 1, 2, 0 }, b);
+        assertTrue(ParseUtils.parseDecimal("4294967295", 0, 10, b, 0, 4));
+        assertArrayEquals(new byte[] { -1, -1, -1, -1 }, b);
+        assertFalse(ParseUtils.parseDecimal("4294967296", 0, 10, b, 0, 4));
+        assertFalse(ParseUtils.parseDecimal("256", 0, 3, b, 0, 1));
+        assertFalse(ParseUtils.parseDecimal("1a", 0, 2, b, 0, 4));
+        assertFalse(ParseUtils.parseDecimal("", 0, 0, b, 0, 4));
+
+        byte[] big = new byte[16];
+        assertTrue(ParseUtils.parseDecimal("340282366920938463463374607431768211455", 0, 39, big, 0, 16));
+        for (byte x : big)
+            assertEquals(-1, x);
+    }
+}
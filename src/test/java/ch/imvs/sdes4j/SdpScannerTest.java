@@ -0,0 +1,117 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.imvs.sdes4j.srtp.SrtpCryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpCryptoSuite;
+import ch.imvs.sdes4j.srtp.SrtpSDesFactory;
+
+public class SdpScannerTest {
+    private static final String SDP =
+        "v=0\r\n" +
+        "o=- 1 1 IN IP4 192.0.2.1\r\n" +
+        "s=-\r\n" +
+        "c=IN IP4 192.0.2.1\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 49170 RTP/SAVP 0\r\n" +
+        "a=crypto:1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR\r\n" +
+        "a=crypto:2 AES_CM_128_HMAC_SHA1_32 inline:NzB4d1BINUAvLEw6UzF3WSJ+PSdFcGdUJShpX1Zj\r\n" +
+        "a=rtcp-mux\r\n" +
+        "m=video 51372 RTP/SAVP 31\r\n" +
+        "a=rtpmap:31 H261/90000\r\n" +
+        "m=video 51374 RTP/SAVP 32\r\n" +
+        "a=crypto:1 AES_256_CM_HMAC_SHA1_80 inline:WVNfX19zZW1jdGwgKCkgewkyMjA7fQp9CnVubGVzcyAoLWUgTGFzdDs=|2^20\n" +
+        "a=crypto:2 this line is never parsed\r\n";
+
+    private SrtpSDesFactory f;
+
+    @Before
+    public void setUp() {
+        f = new SrtpSDesFactory();
+    }
+
+    @Test
+    public void testCursor() {
+        SdpScanner scanner = new SdpScanner(SDP, f);
+        assertFalse(scanner.nextCrypto());
+        assertEquals(-1, scanner.getMediaIndex());
+
+        assertTrue(scanner.nextMedia());
+        assertEquals(0, scanner.getMediaIndex());
+        assertEquals("audio 49170 RTP/SAVP 0", scanner.getMedia().toString());
+        assertTrue(scanner.nextCrypto());
+        assertEquals(1, scanner.getCryptoAttribute().getTag());
+        assertSame(scanner.getCryptoAttribute(), scanner.getCryptoAttribute());
+        assertTrue(scanner.nextCrypto());
+        SrtpCryptoAttribute a = (SrtpCryptoAttribute) scanner.getCryptoAttribute();
+        assertEquals(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32, a.getCryptoSuite().encode());
+        assertFalse(scanner.nextCrypto());
+
+        assertTrue(scanner.nextMedia());
+        assertEquals(1, scanner.getMediaIndex());
+        assertFalse(scanner.nextCrypto());
+
+        assertTrue(scanner.nextMedia());
+        assertEquals(2, scanner.getMediaIndex());
+        assertTrue(scanner.nextCrypto());
+        a = (SrtpCryptoAttribute) scanner.getCryptoAttribute();
+        assertEquals(SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80, a.getCryptoSuite().encode());
+        assertEquals(0x100000, a.getKeyParams()[0].getLifetime());
+        assertTrue(scanner.nextCrypto());
+        assertEquals("2 this line is never parsed",
+            SDP.substring(scanner.getCryptoStart(), scanner.getCryptoEnd()));
+        assertFalse(scanner.nextCrypto());
+        assertFalse(scanner.nextMedia());
+    }
+
+    @Test
+    public void testSkipUnvisitedCryptoLines() {
+        SdpScanner scanner = new SdpScanner(SDP, f);
+        assertTrue(scanner.nextMedia());
+        assertTrue(scanner.nextMedia());
+        assertTrue(scanner.nextMedia());
+        assertEquals("video 51374 RTP/SAVP 32", scanner.getMedia().toString());
+    }
+
+    @Test
+    public void testScanStopsEarly() {
+        final List<Integer> media = new ArrayList<Integer>();
+        boolean completed = new SdpScanner(ByteBuffer.wrap(SDP.getBytes()), f).scan(new SdpScanner.Handler() {
+            @Override
+            public boolean onCrypto(SdpScanner scanner) {
+                media.add(scanner.getMediaIndex());
+                return scanner.getCryptoAttribute().getTag() != 1 || scanner.getMediaIndex() != 2;
+            }
+        });
+        assertFalse(completed);
+        assertEquals(3, media.size());
+        assertEquals(Integer.valueOf(2), media.get(2));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testNotOnCryptoLine() {
+        SdpScanner scanner = new SdpScanner(SDP, f);
+        scanner.nextMedia();
+        scanner.getCryptoAttribute();
+    }
+}
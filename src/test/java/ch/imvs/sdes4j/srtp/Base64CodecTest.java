@@ -0,0 +1,129 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class Base64CodecTest {
+    private static byte[] decode(String s) {
+        return Base64Codec.decode(s, 0, s.length());
+    }
+
+    @Test
+    public void testDecodeRfc4648Vectors() {
+        assertArrayEquals(new byte[0], decode(""));
+        assertArrayEquals("f".getBytes(), decode("Zg=="));
+        assertArrayEquals("fo".getBytes(), decode("Zm8="));
+        assertArrayEquals("foo".getBytes(), decode("Zm9v"));
+        assertArrayEquals("foob".getBytes(), decode("Zm9vYg=="));
+        assertArrayEquals("fooba".getBytes(), decode("Zm9vYmE="));
+        assertArrayEquals("foobar".getBytes(), decode("Zm9vYmFy"));
+    }
+
+    @Test
+    public void testDecodeWithoutPadding() {
+        assertArrayEquals("fo".getBytes(), decode("Zm8"));
+    }
+
+    @Test
+    public void testDecodeRange() {
+        String s = "inline:Zm9vYmFy|2^20";
+        assertArrayEquals("foobar".getBytes(), Base64Codec.decode(s, 7, 15));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDecodeInvalidCharacter() {
+        decode("Zm9v{mFy");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDecodeInvalidLength() {
+        decode("Zm9vY");
+    }
+
+    @Test
+    public void testDecodedLength() {
+        assertEquals(0, Base64Codec.decodedLength("", 0, 0));
+        assertEquals(1, Base64Codec.decodedLength("Zg==", 0, 4));
+        assertEquals(2, Base64Codec.decodedLength("Zm8", 0, 3));
+        assertEquals(30, Base64Codec.decodedLength("YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2", 0, 40));
+        assertEquals(-1, Base64Codec.decodedLength("Zm9v{mFy", 0, 8));
+        assertEquals(-1, Base64Codec.decodedLength("Zm9vY", 0, 5));
+    }
+
+    @Test
+    public void testEncodeRfc4648Vectors() throws Exception {
+        String[] vectors = { "", "Zg==", "Zm8=", "Zm9v", "Zm9vYg==", "Zm9vYmE=", "Zm9vYmFy" };
+        String data = "foobar";
+        for (int i = 0; i < vectors.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            Base64Codec.encodeTo(sb, data.substring(0, i).getBytes());
+            assertEquals(vectors[i], sb.toString());
+        }
+    }
+
+    @Test
+    public void testDecodeSrtpKeySizes() throws Exception {
+        for (int size : new int[] { 30, 38, 46 }) {
+            byte[] key = new byte[size];
+            for (int i = 0; i < size; i++)
+                key[i] = (byte) (i * 37);
+            StringBuilder sb = new StringBuilder();
+            Base64Codec.encodeTo(sb, key);
+            assertArrayEquals(key, decode(sb.toString()));
+        }
+    }
+
+    @Test
+    public void testDecodeIntoArray() {
+        byte[] dst = new byte[8];
+        assertEquals(6, Base64Codec.decode("Zm9vYmFy", 0, 8, dst, 1));
+        assertArrayEquals(new byte[] { 0, 'f', 'o', 'o', 'b', 'a', 'r', 0 }, dst);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDecodeIntoArrayTooSmall() {
+        Base64Codec.decode("Zm9vYmFy", 0, 8, new byte[6], 1);
+    }
+
+    @Test
+    public void testDecodeIntoBuffer() {
+        ByteBuffer heap = ByteBuffer.allocate(10);
+        heap.position(2);
+        assertEquals(5, Base64Codec.decode("Zm9vYmE=", 0, 8, heap));
+        assertEquals(7, heap.position());
+        assertEquals('f', heap.get(2));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(10);
+        assertEquals(5, Base64Codec.decode("Zm9vYmE=", 0, 8, direct));
+        assertEquals(5, direct.position());
+        assertEquals('a', direct.get(4));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDecodeIntoBufferRespectsLimit() {
+        ByteBuffer buf = ByteBuffer.allocate(10);
+        buf.limit(4);
+        Base64Codec.decode("Zm9vYmE=", 0, 8, buf);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDecodeInvalidCharacterInTail() {
+        decode("Zm9vYm!=");
+    }
+}
@@ -92,4 +92,14 @@ public class FecKeySessionParamTest {
         assertEquals(kp1, fecTwo.getKeyParams()[0]);
         assertEquals(kp2, fecTwo.getKeyParams()[1]);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEquals() {
+        FecKeySessionParam a = new FecKeySessionParam("FEC_KEY=inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2;inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5");
+        FecKeySessionParam b = new FecKeySessionParam("FEC_KEY=inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2;inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5");
+        FecKeySessionParam c = new FecKeySessionParam("FEC_KEY=inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5;inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+    }
+}
@@ -15,6 +15,8 @@ package ch.imvs.sdes4j.srtp;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+
 import org.junit.Test;
 
 public class FecOrderSessionParamTest {
@@ -44,4 +46,13 @@ public class FecOrderSessionParamTest {
         assertEquals(FecOrderSessionParam.SRTP_FEC, srtpFec.getMode());
         assertEquals(input2, srtpFec.encode());
     }
+
+    @Test
+    public void testEncodeTo() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        new FecOrderSessionParam(FecOrderSessionParam.SRTP_FEC).encodeTo(sb);
+        sb.append(' ');
+        new FecOrderSessionParam(FecOrderSessionParam.FEC_SRTP).encodeTo(sb);
+        assertEquals("FEC_ORDER=SRTP_FEC FEC_ORDER=FEC_SRTP", sb.toString());
+    }
 }
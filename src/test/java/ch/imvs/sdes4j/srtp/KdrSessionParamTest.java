@@ -77,4 +77,11 @@ public class KdrSessionParamTest {
     public void testKdrSessionParamStringInvalidUpper() {
         new KdrSessionParam("KDR=25");
     }
+
+    @Test
+    public void testEquals() {
+        assertEquals(new KdrSessionParam(5), new KdrSessionParam("KDR=5"));
+        assertEquals(new KdrSessionParam(5).hashCode(), new KdrSessionParam("KDR=5").hashCode());
+        assertNotEquals(new KdrSessionParam(5), new KdrSessionParam(6));
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class KeyLifetimeTrackerTest {
+    private final static String KEY = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    private static class CountingListener implements KeyLifetimeTracker.Listener {
+        final AtomicInteger low = new AtomicInteger();
+        final AtomicInteger exhausted = new AtomicInteger();
+        volatile boolean srtcp;
+
+        @Override
+        public void onLowWatermark(KeyLifetimeTracker.Usage usage, boolean srtcp) {
+            low.incrementAndGet();
+            this.srtcp = srtcp;
+        }
+
+        @Override
+        public void onExhausted(KeyLifetimeTracker.Usage usage, boolean srtcp) {
+            exhausted.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testEffectiveLimit() {
+        KeyLifetimeTracker tracker = new KeyLifetimeTracker(0, null);
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 "
+            + KEY + ";" + KEY + "|2^40;" + KEY + "|2^50");
+        KeyLifetimeTracker.Usage[] u = tracker.track(a);
+        assertEquals(1L << 48, u[0].getSrtpLimit());
+        assertEquals(1L << 31, u[0].getSrtcpLimit());
+        assertEquals(1L << 40, u[1].getSrtpLimit());
+        assertEquals(1L << 31, u[1].getSrtcpLimit());
+        assertEquals(1L << 48, u[2].getSrtpLimit());
+        assertSame(a.getKeyParams()[1], u[1].getKeyParam());
+    }
+
+    @Test
+    public void testLowWatermarkAndExhaustion() {
+        CountingListener l = new CountingListener();
+        KeyLifetimeTracker tracker = new KeyLifetimeTracker(3, l);
+        KeyLifetimeTracker.Usage u = tracker.track(new SrtpKeyParam(KEY + "|10"),
+            SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80));
+
+        assertTrue(u.countSrtp(6));
+        assertEquals(0, l.low.get());
+        assertTrue(u.countSrtp());
+        assertEquals(1, l.low.get());
+        assertFalse(l.srtcp);
+        assertEquals(3, u.getRemainingSrtp());
+        assertTrue(u.countSrtp(3));
+        assertEquals(1, l.low.get());
+        assertTrue(u.isExhausted());
+        assertEquals(0, l.exhausted.get());
+        assertFalse(u.countSrtp());
+        assertFalse(u.countSrtp());
+        assertEquals(1, l.exhausted.get());
+        assertEquals(0, u.getRemainingSrtp());
+
+        assertTrue(u.countSrtcp(8));
+        assertTrue(l.srtcp);
+        assertEquals(2, l.low.get());
+    }
+
+    @Test
+    public void testConcurrentCounting() throws Exception {
+        final CountingListener l = new CountingListener();
+        KeyLifetimeTracker tracker = new KeyLifetimeTracker(1000, l);
+        final KeyLifetimeTracker.Usage u = tracker.track(new SrtpKeyParam(KEY + "|40000"),
+            SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80));
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        if (u.countSrtp())
+                            accepted.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(40000, accepted.get());
+        assertEquals(80000, u.getSrtpCount());
+        assertEquals(1, l.low.get());
+        assertEquals(1, l.exhausted.get());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeWatermark() {
+        new KeyLifetimeTracker(-1, null);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class KeyMaterialPoolTest {
+    private final static String KEY = "YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    @Test
+    public void testAllocateAndRelease() {
+        KeyMaterialPool pool = new KeyMaterialPool(48, 2, 2);
+        assertEquals(4, pool.getCapacity());
+        assertEquals(0, pool.getSlabCount());
+
+        SecretKeyMaterial a = pool.allocate(new byte[] { 1, 2, 3 }, 0, 3);
+        SecretKeyMaterial b = pool.allocate(new byte[] { 4, 5 }, 0, 2);
+        assertEquals(1, pool.getSlabCount());
+        assertEquals(2, pool.getInUse());
+        assertEquals(3, a.length());
+        assertTrue(a.asReadOnlyBuffer().isDirect());
+
+        ByteBuffer view = a.asReadOnlyBuffer();
+        a.close();
+        assertTrue(a.isClosed());
+        assertEquals(0, view.get(0));
+        assertEquals(1, pool.getInUse());
+        assertEquals(2, pool.getPeakInUse());
+
+        // the slot of a is reused, b is untouched
+        SecretKeyMaterial c = pool.allocate(new byte[] { 9 }, 0, 1);
+        assertEquals(1, pool.getSlabCount());
+        assertEquals(9, view.get(0));
+        assertEquals(4, b.asReadOnlyBuffer().get(0));
+        b.close();
+        c.close();
+        assertEquals(0, pool.getInUse());
+        assertEquals(3, pool.getAllocationCount());
+        assertEquals(0, pool.getOverflowCount());
+    }
+
+    @Test
+    public void testOverflow() {
+        KeyMaterialPool pool = new KeyMaterialPool(4, 1, 1);
+        SecretKeyMaterial a = pool.allocate(new byte[4], 0, 4);
+        try {
+            pool.allocate(new byte[3], 0, 3);
+            fail();
+        }
+        catch (IllegalStateException expected) {
+        }
+        try {
+            pool.allocate(new byte[5], 0, 5);
+            fail();
+        }
+        catch (IllegalArgumentException expected) {
+        }
+        assertEquals(2, pool.getOverflowCount());
+        assertEquals(8, pool.getOverflowBytes());
+        assertEquals(3, pool.getAllocationCount());
+        assertEquals(1, pool.getInUse());
+        assertEquals(4, pool.getReservedBytes());
+
+        // the pool recovers once a slot is free
+        a.close();
+        SecretKeyMaterial b = pool.allocate(new byte[4], 0, 4);
+        assertEquals(4, b.length());
+        assertEquals(1, pool.getInUse());
+        b.close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void testDecode() {
+        KeyMaterialPool pool = new KeyMaterialPool(10);
+        SecretKeyMaterial m = pool.decode(KEY, 0, KEY.length());
+        byte[] key = new byte[m.length()];
+        m.copyTo(key, 0);
+        assertArrayEquals(Base64Codec.decode(KEY, 0, KEY.length()), key);
+        m.close();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDecodeInvalid() {
+        new KeyMaterialPool(10).decode("!!!!", 0, 4);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new KeyMaterialPool(48, 0, 1);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class KeyReservoirTest {
+    /**
+     * Produces blocks filled with a counter, so that each block is unique.
+     */
+    private static class CountingRandom extends Random {
+        private static final long serialVersionUID = 1L;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            Arrays.fill(bytes, (byte) counter.incrementAndGet());
+        }
+    }
+
+    @Test
+    public void testTakeAfterRefill() {
+        KeyReservoir r = new KeyReservoir(new CountingRandom(), 3, 30);
+        assertEquals(0, r.getAvailable(30));
+        r.refill();
+        assertEquals(4, r.getAvailable(30));
+        assertEquals(4, r.getRefillCount());
+
+        byte[] key = new byte[30];
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(r.take(key));
+            assertEquals(i, key[29]);
+        }
+        assertEquals(4, r.getTakeCount());
+        assertEquals(0, r.getUnderflowCount());
+    }
+
+    @Test
+    public void testUnderflow() {
+        KeyReservoir r = new KeyReservoir(new CountingRandom(), 2, 30, 46);
+        byte[] key = new byte[30];
+        assertFalse(r.take(key));
+        assertArrayEquals(new byte[30], key);
+        assertFalse(r.take(new byte[16]));
+        assertEquals(2, r.getUnderflowCount());
+    }
+
+    @Test
+    public void testCloseWipes() {
+        KeyReservoir r = new KeyReservoir(new CountingRandom(), 2, 30);
+        r.refill();
+        r.close();
+        assertEquals(0, r.getAvailable(30));
+        assertFalse(r.take(new byte[30]));
+    }
+
+    @Test
+    public void testBackgroundRefill() throws Exception {
+        KeyReservoir r = new KeyReservoir(new CountingRandom(), 8, 30);
+        r.start();
+        try {
+            for (int i = 0; i < 500 && r.getAvailable(30) < 8; i++)
+                Thread.sleep(10);
+            assertEquals(8, r.getAvailable(30));
+
+            byte[] key = new byte[30];
+            for (int i = 0; i < 5; i++)
+                assertTrue(r.take(key));
+            for (int i = 0; i < 500 && r.getAvailable(30) < 8; i++)
+                Thread.sleep(10);
+            assertEquals(8, r.getAvailable(30));
+        }
+        finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentTakesAreUnique() throws Exception {
+        final KeyReservoir r = new KeyReservoir(new CountingRandom(), 64, 30);
+        r.refill();
+        final byte[][] keys = new byte[64][30];
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int first = t * 8;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = first; i < first + 8; i++)
+                        assertTrue(r.take(keys[i]));
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        boolean[] seen = new boolean[65];
+        for (byte[] key : keys) {
+            assertFalse(seen[key[0]]);
+            seen[key[0]] = true;
+        }
+    }
+
+    @Test
+    public void testFactoryUsesReservoir() {
+        KeyReservoir r = new KeyReservoir(new CountingRandom(), 1, 30);
+        r.refill();
+        assertEquals(2, r.getAvailable(30));
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyReservoir(r);
+        SrtpCryptoAttribute a = f.createCryptoAttribute(1, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+        assertEquals(1, a.getKeyParams()[0].getKey()[0]);
+        assertTrue(r.take(new byte[30]));
+
+        // closed now, falls back to inline generation
+        r.close();
+        SrtpCryptoAttribute b = f.createCryptoAttribute(2, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+        assertEquals(30, b.getKeyParams()[0].getKey().length);
+        assertEquals(1, r.getUnderflowCount());
+    }
+
+    @Test
+    public void testFactoryStartsReservoir() throws InterruptedException {
+        KeyReservoir r = new KeyReservoir(new CountingRandom(), 4, 30);
+        try {
+            SrtpSDesFactory f = new SrtpSDesFactory();
+            f.setKeyReservoir(r);
+            for (int i = 0; i < 500 && r.getAvailable(30) < 4; i++)
+                Thread.sleep(10);
+            assertEquals(4, r.getAvailable(30));
+
+            SrtpCryptoAttribute a = f.createCryptoAttribute(1, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+            assertEquals(1, a.getKeyParams()[0].getKey()[0]);
+            assertEquals(1, r.getTakeCount());
+        }
+        finally {
+            r.close();
+        }
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testFactoryRejectsClosedReservoir() {
+        KeyReservoir r = new KeyReservoir(new CountingRandom(), 1, 30);
+        r.close();
+        new SrtpSDesFactory().setKeyReservoir(r);
+    }
+}
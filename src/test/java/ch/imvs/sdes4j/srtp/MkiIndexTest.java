@@ -0,0 +1,69 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class MkiIndexTest {
+    private final static String KEY = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    @Test
+    public void testShortMki() {
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 "
+            + KEY + "|1:2;" + KEY + "|258:2;" + KEY + "|65535:2 FEC_KEY=" + KEY + "|7:2");
+        MkiIndex index = new MkiIndex(a);
+        assertEquals(2, index.getMkiLength());
+        assertEquals(4, index.size());
+
+        byte[] packet = { 0x55, 0, 1, 1, 2, -1, -1, 0, 7, 0, 3 };
+        assertSame(a.getKeyParams()[0], index.lookup(packet, 1));
+        assertSame(a.getKeyParams()[1], index.lookup(packet, 3));
+        assertSame(a.getKeyParams()[2], index.lookup(packet, 5));
+        assertSame(((FecKeySessionParam) a.getSessionParams()[0]).getKeyParams()[0], index.lookup(packet, 7));
+        assertNull(index.lookup(packet, 9));
+        assertNull(index.lookup(packet, 10));
+        assertSame(a.getKeyParams()[1], index.lookup(ByteBuffer.wrap(packet), 3));
+    }
+
+    @Test
+    public void testLongMki() {
+        SrtpKeyParam k1 = new SrtpKeyParam(KEY + "|1:8");
+        SrtpKeyParam k2 = new SrtpKeyParam(KEY + "|18446744073709551615:8");
+        MkiIndex index = new MkiIndex(new SrtpKeyParam[] { k1, k2 });
+        byte[] packet = { 0, 0, 0, 0, 0, 0, 0, 1, -1, -1, -1, -1, -1, -1, -1, -1 };
+        assertSame(k1, index.lookup(packet, 0));
+        assertSame(k2, index.lookup(packet, 8));
+        assertNull(index.lookup(packet, 1));
+        assertSame(k2, index.lookup(ByteBuffer.wrap(packet), 8));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDuplicateMki() {
+        new MkiIndex(new SrtpKeyParam[] { new SrtpKeyParam(KEY + "|1:2"), new SrtpKeyParam(KEY + "|1:2") });
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMixedMkiLength() {
+        new MkiIndex(new SrtpKeyParam[] { new SrtpKeyParam(KEY + "|1:2"), new SrtpKeyParam(KEY + "|2:3") });
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoMki() {
+        new MkiIndex(new SrtpKeyParam[] { new SrtpKeyParam(KEY) });
+    }
+}
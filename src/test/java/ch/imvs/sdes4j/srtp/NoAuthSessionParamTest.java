@@ -24,4 +24,12 @@ public class NoAuthSessionParamTest {
         assertEquals("UNAUTHENTICATED_SRTP", new NoAuthSessionParam().encode());
     }
 
+    @Test
+    public void testEquals() {
+        assertEquals(new NoAuthSessionParam(), new NoAuthSessionParam());
+        assertEquals(new NoAuthSessionParam().hashCode(), new NoAuthSessionParam().hashCode());
+        assertNotEquals(new NoAuthSessionParam(), new PlainSrtpSessionParam());
+        assertNotEquals(new NoAuthSessionParam(), "UNAUTHENTICATED_SRTP");
+    }
+
 }
@@ -0,0 +1,194 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import org.junit.Test;
+
+import ch.imvs.sdes4j.CryptoAttribute;
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseResult;
+
+public class SecretKeyMaterialTest {
+    private final static String KEY = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+    private final static String ATTRIBUTE = "1 AES_CM_128_HMAC_SHA1_80 " + KEY + "|2^20|1:4";
+
+    @Test(expected=ReadOnlyBufferException.class)
+    public void testReadOnlyView() {
+        SecretKeyMaterial m = new KeyMaterialPool(1).allocate(new byte[] { 1 }, 0, 1);
+        m.asReadOnlyBuffer().put(0, (byte) 2);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testClosed() {
+        SecretKeyMaterial m = new KeyMaterialPool(1).allocate(new byte[] { 1 }, 0, 1);
+        m.close();
+        m.close();
+        m.asReadOnlyBuffer();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testCopyToSmall() {
+        new KeyMaterialPool(1).allocate(new byte[] { 1, 2 }, 0, 2).copyTo(new byte[2], 1);
+    }
+
+    @Test
+    public void testParsedKeyParam() {
+        KeyMaterialPool pool = new KeyMaterialPool(4);
+        SrtpKeyParam heap = new SrtpKeyParam(KEY + "|7:1");
+        SrtpKeyParam offHeap = new SrtpKeyParam(KEY + "|7:1", 0, KEY.length() + 4, pool);
+        assertNull(heap.getKeyMaterial());
+        assertNotNull(offHeap.getKeyMaterial());
+        assertArrayEquals(heap.getKey(), offHeap.getKey());
+        assertEquals(heap, offHeap);
+        assertEquals(heap.hashCode(), offHeap.hashCode());
+        assertEquals(heap.encode(), offHeap.encode());
+        assertEquals(7, offHeap.getMki());
+
+        byte[] dst = new byte[31];
+        assertEquals(30, offHeap.getKey(dst, 1));
+        assertEquals(heap.getKey()[0], dst[1]);
+        assertEquals(1, pool.getInUse());
+        offHeap.getKeyMaterial().close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void testFactory() {
+        KeyMaterialPool pool = new KeyMaterialPool(8);
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyMaterialPool(pool);
+        String s = ATTRIBUTE + " FEC_KEY=" + KEY + ";" + KEY;
+        SrtpCryptoAttribute a = (SrtpCryptoAttribute) CryptoAttribute.create(s, f);
+        assertEquals(3, pool.getInUse());
+        assertEquals(SrtpCryptoAttribute.create(s), a);
+        assertEquals(s.replace("2^20", "1048576"), a.encode());
+        ByteBuffer key = a.getKeyParams()[0].getKeyMaterial().asReadOnlyBuffer();
+        assertTrue(key.isDirect());
+
+        SrtpCryptoAttribute generated = f.createCryptoAttribute(2, SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80);
+        assertEquals(46, generated.getKeyParams()[0].getKeyMaterial().length());
+        assertEquals(4, pool.getInUse());
+
+        a.close();
+        generated.close();
+        assertEquals(0, pool.getInUse());
+        assertEquals(0, key.get(0) | key.get(29));
+    }
+
+    @Test
+    public void testCloseReleasesKeyParams() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyMaterialPool(new KeyMaterialPool(4));
+        SrtpCryptoAttribute pooled = (SrtpCryptoAttribute) CryptoAttribute.create(ATTRIBUTE, f);
+        SrtpSDesFactory lazy = new SrtpSDesFactory();
+        lazy.setLazyKeyDecoding(true);
+        SrtpCryptoAttribute heap = (SrtpCryptoAttribute) CryptoAttribute.create(ATTRIBUTE, lazy);
+        byte[] heapKey = heap.getKeyParams()[0].getKey();
+
+        for (SrtpCryptoAttribute a : new SrtpCryptoAttribute[] { pooled, heap }) {
+            // caches the encoded form, which contains the key
+            a.encode();
+            a.close();
+            SrtpKeyParam kp = a.getKeyParams()[0];
+            try {
+                kp.getKey();
+                fail("getKey");
+            }
+            catch (IllegalStateException e) {
+            }
+            try {
+                kp.encode();
+                fail("encode");
+            }
+            catch (IllegalStateException e) {
+            }
+            try {
+                a.encode();
+                fail("cached encoded form");
+            }
+            catch (IllegalStateException e) {
+            }
+            a.close();
+        }
+        assertArrayEquals(new byte[30], heapKey);
+    }
+
+    @Test
+    public void testFailedParseReleasesKeys() {
+        KeyMaterialPool pool = new KeyMaterialPool(8);
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyMaterialPool(pool);
+        String[] invalid = new String[] {
+            "1 AES_CM_128_HMAC_SHA1_80 " + KEY + ";" + KEY + "|x",
+            ATTRIBUTE + " FEC_KEY=" + KEY + ";inline:!",
+            ATTRIBUTE + " FEC_KEY=" + KEY + " KDR=99",
+        };
+        for (String s : invalid) {
+            try {
+                CryptoAttribute.create(s, f);
+                fail(s);
+            }
+            catch (IllegalArgumentException e) {
+            }
+        }
+        assertEquals(0, pool.getInUse());
+
+        // repeated params fall back to the factory without leaking the first FEC_KEY
+        SrtpCryptoAttribute a = (SrtpCryptoAttribute) CryptoAttribute.create(ATTRIBUTE + " FEC_KEY=" + KEY + " KDR=1 KDR=2", f);
+        assertEquals(2, pool.getInUse());
+        a.close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void testExhaustedPoolReleasesKeys() {
+        KeyMaterialPool pool = new KeyMaterialPool(48, 2, 1);
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyMaterialPool(pool);
+        String s = ATTRIBUTE + " FEC_KEY=" + KEY + ";" + KEY;
+        try {
+            SrtpCryptoAttribute.tryParse(s, 0, s.length(), f);
+            fail("parse");
+        }
+        catch (IllegalStateException e) {
+        }
+        assertEquals(0, pool.getInUse());
+
+        try {
+            f.createCryptoAttributesForStreams(new String[] { "AES_CM_128_HMAC_SHA1_80" }, new SrtpSessionParam[3][]);
+            fail("offer");
+        }
+        catch (IllegalStateException e) {
+        }
+        assertEquals(0, pool.getInUse());
+        assertEquals(2, pool.getOverflowCount());
+        assertEquals(60, pool.getOverflowBytes());
+    }
+
+    @Test
+    public void testKeyLargerThanSlot() {
+        KeyMaterialPool pool = new KeyMaterialPool(16, 1, 1);
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyMaterialPool(pool);
+        ParseResult<SrtpCryptoAttribute> r = SrtpCryptoAttribute.tryParse(ATTRIBUTE, 0, ATTRIBUTE.length(), f);
+        assertEquals(ParseError.INVALID_KEY, r.getError());
+        assertEquals(ATTRIBUTE.indexOf(':') + 1, r.getErrorOffset());
+        assertEquals(0, pool.getOverflowCount());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SecureRandomPoolTest {
+    @Test
+    public void testDefault() {
+        SecureRandomPool pool = new SecureRandomPool();
+        assertNotNull(pool.getAlgorithm());
+        assertEquals(Integer.bitCount(pool.getStripeCount()), 1);
+        assertTrue(pool.getStripeCount() >= Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    public void testStripeCountIsPowerOfTwo() throws Exception {
+        assertEquals(1, new SecureRandomPool("SHA1PRNG", 1).getStripeCount());
+        assertEquals(4, new SecureRandomPool("SHA1PRNG", 3).getStripeCount());
+        assertEquals(8, new SecureRandomPool("SHA1PRNG", 8).getStripeCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoStripes() throws Exception {
+        new SecureRandomPool("SHA1PRNG", 0);
+    }
+
+    @Test(expected=NoSuchAlgorithmException.class)
+    public void testUnknownAlgorithm() throws Exception {
+        new SecureRandomPool("NO_SUCH_PRNG");
+    }
+
+    @Test
+    public void testSeedOnlySupplements() throws Exception {
+        SecureRandomPool a = new SecureRandomPool("SHA1PRNG", 1);
+        SecureRandomPool b = new SecureRandomPool("SHA1PRNG", 1);
+        a.setSeed(42);
+        b.setSeed(42);
+        byte[] ba = new byte[30];
+        byte[] bb = new byte[30];
+        a.nextBytes(ba);
+        b.nextBytes(bb);
+        assertFalse(Arrays.equals(ba, bb));
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        final SecureRandomPool pool = new SecureRandomPool("SHA1PRNG", 4);
+        final byte[][] keys = new byte[16][30];
+        Thread[] threads = new Thread[keys.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    pool.nextBytes(keys[index]);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        for (int i = 1; i < keys.length; i++)
+            assertFalse(Arrays.equals(keys[0], keys[i]));
+    }
+
+    @Test
+    public void testFactoryWithPool() throws Exception {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setRandomGenerator(new SecureRandomPool("SHA1PRNG", 2));
+        SrtpCryptoAttribute a = f.createCryptoAttribute(1, SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80);
+        assertEquals(46, a.getKeyParams()[0].getKey().length);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SessionParamSetTest {
+    private final static String ATTRIBUTE = "1 AES_CM_128_HMAC_SHA1_80 inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    @Test
+    public void testParsedAttribute() {
+        String s = ATTRIBUTE + " WSH=64 UNENCRYPTED_SRTCP KDR=5 FEC_ORDER=SRTP_FEC";
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create(s);
+        SessionParamSet set = a.getSessionParamSet();
+        assertEquals(4, set.size());
+        assertEquals(SessionParamSet.WSH | SessionParamSet.UNENCRYPTED_SRTCP | SessionParamSet.KDR
+            | SessionParamSet.FEC_ORDER, set.getPresent());
+        assertEquals(5, set.getKeyDerivationRate());
+        assertEquals(64, set.getWindowSizeHint());
+        assertEquals(FecOrderSessionParam.SRTP_FEC, set.getFecOrder());
+        assertTrue(set.isUnencryptedSrtcp());
+        assertFalse(set.isUnencryptedSrtp());
+        assertFalse(set.isUnauthenticatedSrtp());
+        assertNull(set.getFecKey());
+        assertEquals(s, a.encode());
+    }
+
+    @Test
+    public void testArrayView() {
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create(ATTRIBUTE + " UNAUTHENTICATED_SRTP KDR=2");
+        SrtpSessionParam[] params = a.getSessionParams();
+        assertEquals(2, params.length);
+        assertEquals(new NoAuthSessionParam(), params[0]);
+        assertEquals(new KdrSessionParam(2), params[1]);
+        assertSame(params, a.getSessionParams());
+    }
+
+    @Test
+    public void testEmpty() {
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create(ATTRIBUTE);
+        assertSame(SessionParamSet.EMPTY, a.getSessionParamSet());
+        assertEquals(0, a.getSessionParams().length);
+        assertEquals(-1, SessionParamSet.EMPTY.getKeyDerivationRate());
+    }
+
+    @Test
+    public void testFecKey() {
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create(ATTRIBUTE
+            + " FEC_KEY=inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^20|1:4");
+        SessionParamSet set = a.getSessionParamSet();
+        assertTrue(set.contains(SessionParamSet.FEC_KEY));
+        assertEquals(1, set.getFecKey().getKeyParams().length);
+        assertSame(set.getFecKey(), a.getSessionParams()[0]);
+    }
+
+    @Test
+    public void testOfArray() {
+        SrtpSessionParam[] params = new SrtpSessionParam[] { new KdrSessionParam(3), new PlainSrtpSessionParam() };
+        SessionParamSet set = SessionParamSet.of(params);
+        assertEquals(3, set.getKeyDerivationRate());
+        assertTrue(set.isUnencryptedSrtp());
+        assertArrayEquals(params, set.toArray());
+
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create(ATTRIBUTE + " KDR=3 UNENCRYPTED_SRTP");
+        assertEquals(set, a.getSessionParamSet());
+        assertEquals(set.hashCode(), a.getSessionParamSet().hashCode());
+        assertFalse(set.equals(SessionParamSet.of(new SrtpSessionParam[] { params[1], params[0] })));
+        assertSame(SessionParamSet.EMPTY, SessionParamSet.of(null));
+    }
+
+    @Test
+    public void testRepeated() {
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create(ATTRIBUTE + " KDR=1 WSH=128 KDR=2");
+        SessionParamSet set = a.getSessionParamSet();
+        assertEquals(3, set.size());
+        assertEquals(1, set.getKeyDerivationRate());
+        assertEquals(128, set.getWindowSizeHint());
+        assertEquals(3, set.toArray().length);
+        assertEquals(ATTRIBUTE + " KDR=1 WSH=128 KDR=2", a.encode());
+    }
+
+    @Test
+    public void testEncodeTo() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        SrtpCryptoAttribute.create(ATTRIBUTE + " FEC_ORDER=FEC_SRTP UNAUTHENTICATED_SRTP").getSessionParamSet().encodeTo(sb);
+        assertEquals(" FEC_ORDER=FEC_SRTP UNAUTHENTICATED_SRTP", sb.toString());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidValue() {
+        SrtpCryptoAttribute.create(ATTRIBUTE + " KDR=x");
+    }
+}
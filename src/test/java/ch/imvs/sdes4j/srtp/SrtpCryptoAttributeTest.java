@@ -14,10 +14,23 @@
 package ch.imvs.sdes4j.srtp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ch.imvs.sdes4j.CryptoAttribute;
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseResult;
+import ch.imvs.sdes4j.SessionParam;
+
 public class SrtpCryptoAttributeTest {
     private SrtpSDesFactory f;
 
@@ -39,4 +52,187 @@ public class SrtpCryptoAttributeTest {
         SrtpCryptoAttribute ca = new SrtpCryptoAttribute(1, suite, new SrtpKeyParam[] { key }, null);
         assertEquals(0, ca.getSessionParams().length);
     }
+
+    /**
+     * Exposes the protected session params field to the test.
+     */
+    private static class SubclassedAttribute extends SrtpCryptoAttribute {
+        SessionParam[] field() {
+            return sessionParams;
+        }
+
+        void setTag(int tag) {
+            this.tag = tag;
+            invalidate();
+        }
+    }
+
+    @Test
+    public void testSessionParamsFieldIsLazy() {
+        SrtpSDesFactory sf = new SrtpSDesFactory() {
+            @Override
+            public SrtpCryptoAttribute createCryptoAttribute() {
+                return new SubclassedAttribute();
+            }
+        };
+        SubclassedAttribute a = (SubclassedAttribute) CryptoAttribute.create(
+            "1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR KDR=1 WSH=64", sf);
+        assertNull(a.field());
+        assertEquals(1, a.getSessionParamSet().getKeyDerivationRate());
+        SessionParam[] params = a.getSessionParams();
+        assertSame(params, a.field());
+        assertEquals(2, params.length);
+        assertEquals(new KdrSessionParam(1), params[0]);
+        assertEquals(new WshSessionParam(64), params[1]);
+        assertEquals(1, a.getSessionParamSet().getKeyDerivationRate());
+
+        // modifying the fields keeps the params that were only in the set
+        a = (SubclassedAttribute) CryptoAttribute.create(
+            "1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR KDR=1", sf);
+        a.setTag(2);
+        assertEquals(new KdrSessionParam(1), a.field()[0]);
+        assertEquals("2 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR KDR=1", a.encode());
+    }
+
+    @Test
+    public void testParseByteArray() {
+        byte[] sdp = "a=crypto:1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|2^20|1:4 KDR=1\r\n".getBytes();
+        SrtpCryptoAttribute ca = SrtpCryptoAttribute.parse(sdp, 9, sdp.length - 11);
+        assertEquals(1, ca.getTag());
+        assertEquals(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, ca.getCryptoSuite().encode());
+        assertEquals(30, ca.getKeyParams()[0].getKey().length);
+        assertEquals(1, ((KdrSessionParam) ca.getSessionParams()[0]).getKeyDerivationRate());
+        assertEquals("1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|1048576|1:4 KDR=1", ca.encode());
+    }
+
+    @Test
+    public void testParseDirectByteBuffer() {
+        String attribute = "1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|2^20|1:4";
+        ByteBuffer buf = ByteBuffer.allocateDirect(100);
+        buf.put("a=crypto:".getBytes());
+        buf.put(attribute.getBytes());
+        buf.flip();
+        SrtpCryptoAttribute ca = SrtpCryptoAttribute.parse(buf, 9, attribute.length());
+        assertEquals(0, buf.position());
+        assertEquals(SrtpCryptoAttribute.create(attribute), ca);
+    }
+
+    @Test
+    public void testParseLazyKeys() {
+        f.setLazyKeyDecoding(true);
+        String attribute = "1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|2^20|1:4;inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5|2^20|2:4";
+        SrtpCryptoAttribute ca = (SrtpCryptoAttribute) CryptoAttribute.create(attribute, f);
+        assertEquals(attribute, ca.encode());
+        assertEquals(30, ca.getKeyParams()[1].getKey().length);
+    }
+
+    @Test
+    public void testEncodeToByteBuffer() {
+        String attribute = "1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR|1048576|1:4 KDR=1 WSH=64 FEC_KEY=inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5";
+        SrtpCryptoAttribute ca = SrtpCryptoAttribute.create(attribute);
+        ByteBuffer buf = ByteBuffer.allocate(200);
+        buf.put((byte) 'x');
+        ca.encodeTo(buf);
+        assertEquals(attribute.length() + 1, buf.position());
+        assertEquals("x" + attribute, new String(buf.array(), 0, buf.position()));
+    }
+
+    @Test
+    public void testEncodeToByteBufferOverflow() {
+        SrtpCryptoAttribute ca = SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:PS1uQCVeeCFCanVmcjkpPywjNWhcYD0mXXtxaVBR");
+        ByteBuffer buf = ByteBuffer.allocate(20);
+        buf.put((byte) 'x');
+        try {
+            ca.encodeTo(buf);
+            fail("BufferOverflowException expected");
+        }
+        catch (BufferOverflowException e) {
+            assertEquals(1, buf.position());
+        }
+    }
+
+    @Test
+    public void testEncodeToAppendable() throws Exception {
+        SrtpKeyParam key = new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE,
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ1234".getBytes(), 1024, 7, 2);
+        SrtpCryptoAttribute ca = new SrtpCryptoAttribute(12,
+            f.createCryptoSuite(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32),
+            new SrtpKeyParam[] { key }, new SrtpSessionParam[] { new KdrSessionParam(10) });
+        StringBuilder sb = new StringBuilder();
+        ca.encodeTo(sb);
+        assertEquals("12 AES_CM_128_HMAC_SHA1_32 inline:QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVoxMjM0|1024|7:2 KDR=10", sb.toString());
+        assertEquals(sb.toString(), ca.encode());
+    }
+
+    private final static String KEY = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    @Test
+    public void testTryParseValid() {
+        String[] valid = new String[] {
+            "1 AES_CM_128_HMAC_SHA1_80 " + KEY,
+            " 2  AES_256_CM_HMAC_SHA1_32 " + KEY + "|2^20|1:4;" + KEY + "|2:4 KDR=4 WSH=128 ",
+            "3 AES_CM_128_HMAC_SHA1_80 " + KEY + " FEC_ORDER=SRTP_FEC FEC_KEY=" + KEY + "|1048576 -X_OPT UNENCRYPTED_SRTP",
+            "4 AES_CM_128_HMAC_SHA1_80 " + KEY + "|18446744073709551615:8",
+        };
+        for (String s : valid) {
+            ParseResult<SrtpCryptoAttribute> r = SrtpCryptoAttribute.tryParse(s);
+            assertTrue(s, r.isSuccess());
+            assertEquals(SrtpCryptoAttribute.create(s), r.getValue());
+            assertEquals(-1, r.getErrorOffset());
+        }
+    }
+
+    @Test
+    public void testTryParseInvalid() {
+        String prefix = "1 AES_CM_128_HMAC_SHA1_80 ";
+        Object[][] invalid = new Object[][] {
+            { "", ParseError.INVALID_TAG, 0 },
+            { "x AES_CM_128_HMAC_SHA1_80 " + KEY, ParseError.INVALID_TAG, 0 },
+            { "123456789 AES_CM_128_HMAC_SHA1_80 " + KEY, ParseError.INVALID_TAG, 0 },
+            { "1 ", ParseError.MISSING_CRYPTO_SUITE, 2 },
+            { "1 AES_CM_128_HMAC_SHA1_81 " + KEY, ParseError.UNKNOWN_CRYPTO_SUITE, 2 },
+            { "1 SEED_128_CCM_80 " + KEY, ParseError.UNSUPPORTED_CRYPTO_SUITE, 2 },
+            { prefix, ParseError.MISSING_KEY_PARAMS, 26 },
+            { prefix + "outline:YUJD", ParseError.UNKNOWN_KEY_METHOD, 26 },
+            { prefix + "inline:", ParseError.INVALID_KEY, 33 },
+            { prefix + "inline:YU!D", ParseError.INVALID_KEY, 33 },
+            { prefix + KEY + "|2^63", ParseError.INVALID_LIFETIME, 74 },
+            { prefix + KEY + "|x", ParseError.INVALID_LIFETIME, 74 },
+            { prefix + KEY + "|1|2", ParseError.INVALID_KEY_PARAM, 76 },
+            { prefix + KEY + "|1:1|2", ParseError.INVALID_KEY_PARAM, 74 },
+            { prefix + KEY + "|256:1", ParseError.INVALID_MKI, 74 },
+            { prefix + KEY + "|1:0", ParseError.INVALID_MKI, 74 },
+            { prefix + KEY + "|18446744073709551616:8", ParseError.INVALID_MKI, 74 },
+            { prefix + KEY + ";", ParseError.UNKNOWN_KEY_METHOD, 74 },
+            { prefix + KEY + " KDR=25", ParseError.INVALID_KDR, 78 },
+            { prefix + KEY + " KDR", ParseError.INVALID_KDR, 77 },
+            { prefix + KEY + " WSH=63", ParseError.INVALID_WSH, 78 },
+            { prefix + KEY + " FEC_ORDER=FEC", ParseError.INVALID_FEC_ORDER, 84 },
+            { prefix + KEY + " FEC_KEY=inline:!", ParseError.INVALID_KEY, 89 },
+            { prefix + KEY + " UNENCRYPTED_SRTCP=1", ParseError.INVALID_SESSION_PARAM, 74 },
+        };
+        for (Object[] test : invalid) {
+            String s = (String) test[0];
+            ParseResult<SrtpCryptoAttribute> r = SrtpCryptoAttribute.tryParse(s);
+            assertFalse(s, r.isSuccess());
+            assertEquals(s, test[1], r.getError());
+            assertEquals(s, test[2], r.getErrorOffset());
+            try {
+                SrtpCryptoAttribute.create(s);
+                fail(s);
+            }
+            catch (IllegalArgumentException e) {
+            }
+            catch (UnsupportedOperationException e) {
+            }
+        }
+    }
+
+    @Test
+    public void testTryParseBytes() {
+        byte[] buf = ("xx1 AES_CM_128_HMAC_SHA1_80 " + KEY + " KDR=99").getBytes();
+        ParseResult<SrtpCryptoAttribute> r = SrtpCryptoAttribute.tryParse(buf, 2, buf.length - 2);
+        assertEquals(ParseError.INVALID_KDR, r.getError());
+        assertEquals(78, r.getErrorOffset());
+    }
 }
@@ -29,5 +29,54 @@ public class SrtpCryptoSuiteTest {
         new SrtpCryptoSuite("invalid suite");
     }
 
-    // more tests would only duplicate the dumb behavior of the constructor...
+    @Test
+    public void testForNameReturnsSharedInstance() {
+        String[] names = {
+            SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80,
+            SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32,
+            SrtpCryptoSuite.F8_128_HMAC_SHA1_80,
+            SrtpCryptoSuite.AES_192_CM_HMAC_SHA1_80,
+            SrtpCryptoSuite.AES_192_CM_HMAC_SHA1_32,
+            SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80,
+            SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_32
+        };
+        for (String name : names) {
+            SrtpCryptoSuite suite = SrtpCryptoSuite.forName(name);
+            assertEquals(name, suite.encode());
+            assertSame(suite, SrtpCryptoSuite.forName(new String(name)));
+            assertEquals(suite, new SrtpCryptoSuite(name));
+        }
+    }
+
+    @Test
+    public void testForNameRange() {
+        String s = "1 AES_256_CM_HMAC_SHA1_32 inline:";
+        SrtpCryptoSuite suite = SrtpCryptoSuite.forName(s, 2, 25);
+        assertSame(SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_32), suite);
+        assertEquals(256, suite.getEncKeyLength());
+        assertEquals(32, suite.getSrtpAuthTagLength());
+        assertEquals(0x80000000L, suite.getSrtpLifetime());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testForNameInvalidSameHash() {
+        SrtpCryptoSuite.forName("AES_CM_128_HMAC_SHA2_80");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testForNameInvalidShort() {
+        SrtpCryptoSuite.forName("AES");
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testForNameSeed() {
+        SrtpCryptoSuite.forName(SrtpCryptoSuite.SEED_128_GCM_96);
+    }
+
+    @Test
+    public void testFactoryReusesSharedInstance() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        assertSame(f.createCryptoSuite(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80),
+            f.createCryptoAttribute(1, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80).getCryptoSuite());
+    }
 }
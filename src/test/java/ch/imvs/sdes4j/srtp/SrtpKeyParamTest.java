@@ -15,6 +15,10 @@ package ch.imvs.sdes4j.srtp;
 
 import static org.junit.Assert.*;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import org.junit.Test;
 
 public class SrtpKeyParamTest {
@@ -89,7 +93,7 @@ public class SrtpKeyParamTest {
         new SrtpKeyParam(input);
     }
 
-    @Test(expected=ArrayIndexOutOfBoundsException.class)
+    @Test(expected=IllegalArgumentException.class)
     public void testSrtpKeyParamKeyAndMkiInvalidNoMkiLength() {
         String input = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|1:";
         new SrtpKeyParam(input);
@@ -101,6 +105,22 @@ public class SrtpKeyParamTest {
         new SrtpKeyParam(input);
     }
 
+    @Test(expected=IllegalArgumentException.class)
+    public void testSrtpKeyParamKeyAndTrailingData() {
+        String input = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|1234|1:1|5";
+        new SrtpKeyParam(input);
+    }
+
+    @Test
+    public void testSrtpKeyParamRange() {
+        String input = "x;inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^10|7:2;y";
+        SrtpKeyParam kp = new SrtpKeyParam(input, 2, input.length() - 2);
+        assertEquals(30, kp.getKey().length);
+        assertEquals(1024, kp.getLifetime());
+        assertEquals(7, kp.getMki());
+        assertEquals(2, kp.getMkiLength());
+    }
+
     @Test(expected=IllegalArgumentException.class)
     public void testSrtpKeyParamInvalidKey() {
         String input = "inline:{==";
@@ -130,4 +150,168 @@ public class SrtpKeyParamTest {
         assertEquals(1, kp.getMkiLength());
         assertEquals("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|1024|1:1", kp.encode());
     }
+
+    @Test
+    public void testSrtpKeyParamLazy() {
+        String input = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^10|1:1";
+        SrtpKeyParam lazy = new SrtpKeyParam(input, 0, input.length(), true);
+        assertEquals(1024, lazy.getLifetime());
+        assertEquals(1, lazy.getMki());
+        assertEquals(input, lazy.encode());
+        assertArrayEquals(new SrtpKeyParam(input).getKey(), lazy.getKey());
+        assertSame(lazy.getKey(), lazy.getKey());
+    }
+
+    @Test
+    public void testSrtpKeyParamLazyCopiesMutableSource() {
+        StringBuilder input = new StringBuilder("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2;x");
+        SrtpKeyParam lazy = new SrtpKeyParam(input, 0, input.length() - 2, true);
+        input.setLength(0);
+        input.append("inline:AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA");
+        assertEquals("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2", lazy.encode());
+        assertEquals('a', lazy.getKey()[0]);
+    }
+
+    @Test
+    public void testSrtpKeyParamLazyFromLargerString() {
+        String sdp = "a=crypto:1 AES_CM_128_HMAC_SHA1_80 inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^10 KDR=1\r\n";
+        int start = sdp.indexOf("inline:");
+        int end = sdp.indexOf(" KDR");
+        SrtpKeyParam lazy = new SrtpKeyParam(sdp, start, end, true);
+        assertEquals("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^10", lazy.encode());
+        byte[] dst = new byte[30];
+        assertEquals(30, lazy.getKey(dst, 0));
+        assertArrayEquals(lazy.getKey(), dst);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testGetKeyIntoArrayWithoutKey() {
+        new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, (byte[]) null, 0, null).getKey(new byte[30], 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSrtpKeyParamLazyInvalidKey() {
+        String input = "inline:{==";
+        new SrtpKeyParam(input, 0, input.length(), true);
+    }
+
+    @Test
+    public void testEquals() {
+        String input = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^10|1:1";
+        SrtpKeyParam eager = new SrtpKeyParam(input);
+        SrtpKeyParam lazy = new SrtpKeyParam(input, 0, input.length(), true);
+        SrtpKeyParam expanded = new SrtpKeyParam("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|1024|1:1");
+        assertEquals(eager, lazy);
+        assertEquals(eager, expanded);
+        assertEquals(eager.hashCode(), lazy.hashCode());
+        assertEquals(eager.hashCode(), expanded.hashCode());
+        assertNotEquals(eager, new SrtpKeyParam("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^10|2:1"));
+        assertNotEquals(eager, new SrtpKeyParam("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^11|1:1"));
+        assertNotEquals(eager, new SrtpKeyParam("inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5|2^10|1:1"));
+    }
+
+    @Test
+    public void testEqualsAfterRelease() {
+        String input = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^10|1:1";
+        SrtpKeyParam released = new SrtpKeyParam(input);
+        SrtpKeyParam other = new SrtpKeyParam(input);
+        int hash = released.hashCode();
+        released.release();
+        assertEquals(hash, released.hashCode());
+        assertEquals(released, released);
+        assertNotEquals(released, other);
+        assertNotEquals(other, released);
+
+        KeyMaterialPool pool = new KeyMaterialPool(4);
+        SrtpKeyParam pooled = new SrtpKeyParam(input, 0, input.length(), false, pool);
+        pooled.release();
+        assertEquals(hash, pooled.hashCode());
+        assertNotEquals(pooled, released);
+    }
+
+    @Test
+    public void testGetKeyIntoArray() {
+        String input = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+        SrtpKeyParam eager = new SrtpKeyParam(input);
+        SrtpKeyParam lazy = new SrtpKeyParam(input, 0, input.length(), true);
+        byte[] a = new byte[31];
+        byte[] b = new byte[31];
+        assertEquals(30, eager.getKey(a, 1));
+        assertEquals(30, lazy.getKey(b, 1));
+        assertArrayEquals(a, b);
+        assertEquals('a', a[1]);
+    }
+
+    @Test
+    public void testLongMki() {
+        String mki = "340282366920938463463374607431768211455";
+        String input = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|" + mki + ":16";
+        SrtpKeyParam kp = new SrtpKeyParam(input);
+        assertEquals(16, kp.getMkiLength());
+        assertArrayEquals(new BigInteger(mki).toByteArray(), concat(new byte[] { 0 }, kp.getMkiBytes()));
+        assertEquals(input, kp.encode());
+        try {
+            kp.getMki();
+            fail("IllegalStateException expected");
+        }
+        catch (IllegalStateException e) {
+        }
+
+        SrtpKeyParam built = new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, kp.getKey(), 0, kp.getMkiBytes());
+        assertEquals(kp, built);
+        assertEquals(input, built.encode());
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] r = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+    @Test
+    public void testMkiBytes() {
+        SrtpKeyParam kp = new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, new byte[] { 1 }, 0, 258, 3);
+        assertArrayEquals(new byte[] { 0, 1, 2 }, kp.getMkiBytes());
+        assertEquals(258, kp.getMki());
+        assertTrue(kp.mkiEquals(new byte[] { 9, 0, 1, 2 }, 1));
+        assertFalse(kp.mkiEquals(new byte[] { 9, 0, 1, 2 }, 0));
+        assertFalse(kp.mkiEquals(new byte[] { 0, 1 }, 0));
+        assertTrue(kp.mkiEquals(ByteBuffer.wrap(new byte[] { 9, 0, 1, 2 }), 1));
+        assertEquals("inline:AQ==|258:3", kp.encode());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMkiTooLargeForLength() {
+        new SrtpKeyParam("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|256:1");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMkiTooLargeForLengthConstructor() {
+        new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, new byte[] { 1 }, 0, 256, 1);
+    }
+
+    @Test
+    public void testLongLifetimeConstructor() {
+        SrtpKeyParam kp = new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, new byte[] { 1 }, 1L << 40, 0, 0);
+        assertEquals(1L << 40, kp.getLifetimeLong());
+        assertEquals(Integer.MAX_VALUE, kp.getLifetime());
+        kp = new SrtpKeyParam(SrtpKeyParam.KEYMETHOD_INLINE, new byte[] { 1 }, 1024, 0, 0);
+        assertEquals(1024, kp.getLifetimeLong());
+        assertEquals(1024, kp.getLifetime());
+    }
+
+    @Test
+    public void testLargeLifetime() {
+        SrtpKeyParam kp = new SrtpKeyParam("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^48");
+        assertEquals(1L << 48, kp.getLifetimeLong());
+        assertEquals(Integer.MAX_VALUE, kp.getLifetime());
+        kp = new SrtpKeyParam("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|281474976710656");
+        assertEquals(1L << 48, kp.getLifetimeLong());
+        assertEquals("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|281474976710656", kp.encode());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testLifetimeExponentTooLarge() {
+        new SrtpKeyParam("inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2|2^63");
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SrtpNegotiatorTest {
+    private final static String KEY = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+    private final static String KEY_256 = "inline:QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVphYmNkZWZnaGlqa2xtbm9wcXJzdA==";
+
+    private final SrtpNegotiator negotiator = new SrtpNegotiator(new SrtpPolicy(
+        SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80));
+
+    private static SrtpCryptoAttribute[] offer(String... lines) {
+        SrtpCryptoAttribute[] offer = new SrtpCryptoAttribute[lines.length];
+        for (int i = 0; i < lines.length; i++)
+            offer[i] = SrtpCryptoAttribute.create(lines[i]);
+        return offer;
+    }
+
+    @Test
+    public void testSelectPreferredSuite() {
+        SrtpCryptoAttribute[] offer = offer(
+            "1 AES_CM_128_HMAC_SHA1_32 " + KEY,
+            "2 AES_CM_128_HMAC_SHA1_80 " + KEY,
+            "3 AES_256_CM_HMAC_SHA1_80 " + KEY_256,
+            "4 AES_256_CM_HMAC_SHA1_80 " + KEY_256);
+        assertSame(offer[2], negotiator.select(offer));
+    }
+
+    @Test
+    public void testSelectSkipsUnacceptable() {
+        SrtpCryptoAttribute[] offer = offer(
+            "1 AES_256_CM_HMAC_SHA1_80 " + KEY_256 + " UNENCRYPTED_SRTP",
+            "2 AES_CM_128_HMAC_SHA1_80 " + KEY);
+        assertSame(offer[1], negotiator.select(offer));
+        assertNull(negotiator.select(offer("1 AES_CM_128_HMAC_SHA1_32 " + KEY)));
+        assertNull(negotiator.answer(offer("1 AES_CM_128_HMAC_SHA1_32 " + KEY)));
+    }
+
+    @Test
+    public void testAnswer() {
+        SrtpCryptoAttribute[] offer = offer(
+            "1 AES_CM_128_HMAC_SHA1_32 " + KEY,
+            "2 AES_CM_128_HMAC_SHA1_80 " + KEY + " KDR=20 WSH=128");
+        SrtpCryptoAttribute answer = negotiator.answer(offer);
+        assertEquals(2, answer.getTag());
+        assertEquals(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, answer.getCryptoSuite().encode());
+        assertEquals("KDR=20 WSH=128", answer.getSessionParamsString());
+        assertEquals(30, answer.getKeyParams()[0].getKey().length);
+        assertFalse(Arrays.equals(offer[1].getKeyParams()[0].getKey(), answer.getKeyParams()[0].getKey()));
+        assertNotSame(offer[1].getSessionParams(), answer.getSessionParams());
+    }
+
+    @Test
+    public void testAnswerDropsUnknownParams() {
+        SrtpCryptoAttribute[] offer = offer(
+            "1 AES_CM_128_HMAC_SHA1_80 " + KEY + " KDR=20 -FOO=bar WSH=128");
+        assertSame(offer[0], negotiator.select(offer));
+        SrtpCryptoAttribute answer = negotiator.answer(offer);
+        assertEquals("KDR=20 WSH=128", answer.getSessionParamsString());
+        assertSame(offer[0].getCryptoSuite(), answer.getCryptoSuite());
+    }
+
+    @Test
+    public void testAnswerDropsParamsOutsidePolicy() {
+        SrtpNegotiator kdrOnly = new SrtpNegotiator(new SrtpPolicy(
+            new String[] { SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80 }, SrtpPolicy.PARAM_KDR, 128, true));
+        SrtpCryptoAttribute offer = SrtpCryptoAttribute.create(
+            "1 AES_CM_128_HMAC_SHA1_80 " + KEY + " KDR=20 WSH=128 FEC_KEY=" + KEY);
+        SrtpCryptoAttribute answer = kdrOnly.answer(offer);
+        assertEquals("KDR=20", answer.getSessionParamsString());
+    }
+}
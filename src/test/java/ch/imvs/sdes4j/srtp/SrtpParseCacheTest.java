@@ -0,0 +1,175 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class SrtpParseCacheTest {
+    private final static String KEY = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    private final AtomicLong now = new AtomicLong();
+
+    private SrtpParseCache cache(int capacity) {
+        return new SrtpParseCache(SrtpSDesFactory.getInstance(), capacity, 1000, now::get);
+    }
+
+    private static String line(int tag) {
+        return tag + " AES_CM_128_HMAC_SHA1_80 " + KEY;
+    }
+
+    @Test
+    public void testHit() {
+        SrtpParseCache cache = cache(8);
+        SrtpCryptoAttribute a = cache.parse(line(1));
+        assertSame(a, cache.parse(new String(line(1))));
+        String padded = "xx" + line(1);
+        assertSame(a, cache.parse(padded, 2, padded.length()));
+        byte[] bytes = line(1).getBytes(StandardCharsets.US_ASCII);
+        assertSame(a, cache.parse(ByteBuffer.wrap(bytes), 0, bytes.length));
+        assertNotSame(a, cache.parse(line(2)));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.6, cache.getHitRatio(), 0.0001);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testTimeToLive() {
+        SrtpParseCache cache = cache(8);
+        SrtpCryptoAttribute a = cache.parse(line(1));
+        now.set(999);
+        assertSame(a, cache.parse(line(1)));
+        now.set(1000);
+        assertNotSame(a, cache.parse(line(1)));
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPurgeExpired() {
+        SrtpParseCache cache = cache(8);
+        cache.parse(line(1));
+        now.set(500);
+        cache.parse(line(2));
+        now.set(1000);
+        assertEquals(1, cache.purgeExpired());
+        assertEquals(1, cache.size());
+        now.set(1500);
+        assertEquals(1, cache.purgeExpired());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedMemoryUsage());
+        assertEquals(2, cache.getExpirationCount());
+        assertEquals(0, cache.purgeExpired());
+    }
+
+    @Test
+    public void testClockEviction() {
+        SrtpParseCache cache = cache(2);
+        SrtpCryptoAttribute a = cache.parse(line(1));
+        cache.parse(line(2));
+        // referenced entries get a second chance
+        assertSame(a, cache.parse(line(1)));
+        cache.parse(line(3));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        assertSame(a, cache.parse(line(1)));
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        SrtpParseCache cache = cache(8);
+        assertEquals(0, cache.getEstimatedMemoryUsage());
+        cache.parse(line(1));
+        assertTrue(cache.getEstimatedMemoryUsage() > line(1).length());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedMemoryUsage());
+    }
+
+    @Test
+    public void testConcurrentParse() throws Exception {
+        final SrtpParseCache cache = new SrtpParseCache(64, 1, TimeUnit.MINUTES);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 2000; i++)
+                        assertEquals(i % 100, cache.parse(line(i % 100)).getTag());
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        assertEquals(8000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.size() <= 64);
+    }
+
+    @Test
+    public void testCachedAttributeIsReadOnly() {
+        SrtpParseCache cache = cache(8);
+        String line = line(1) + " FEC_KEY=" + KEY;
+        SrtpCryptoAttribute a = cache.parse(line);
+        a.getKeyParams()[0].getKey()[0] = 0;
+        a.getKeyParams()[0] = null;
+        ((FecKeySessionParam) a.getSessionParams()[0]).getKeyParams()[0].getKey()[0] = 0;
+        a.getSessionParams()[0] = null;
+        try {
+            a.close();
+            fail();
+        }
+        catch (IllegalStateException expected) {
+        }
+        assertEquals(SrtpCryptoAttribute.create(line), a);
+        assertEquals(line, cache.parse(line).encode());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidAttributeIsNotCached() {
+        cache(8).parse("1 AES_CM_128_HMAC_SHA1_80");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPooledFactoryIsRejected() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyMaterialPool(new KeyMaterialPool(4));
+        new SrtpParseCache(f, 8, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPoolSetAfterCreation() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        SrtpParseCache cache = new SrtpParseCache(f, 8, 1000, now::get);
+        SrtpCryptoAttribute a = cache.parse(line(1));
+        KeyMaterialPool pool = new KeyMaterialPool(4);
+        f.setKeyMaterialPool(pool);
+        // hits are still served, but nothing is parsed into the pool
+        assertSame(a, cache.parse(line(1)));
+        try {
+            cache.parse(line(2));
+            fail();
+        }
+        catch (IllegalStateException e) {
+        }
+        assertEquals(0, pool.getAllocationCount());
+    }
+}
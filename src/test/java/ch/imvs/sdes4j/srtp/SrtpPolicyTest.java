@@ -0,0 +1,61 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SrtpPolicyTest {
+    private final static String KEY = "inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    @Test
+    public void testRank() {
+        SrtpPolicy p = new SrtpPolicy(SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+        assertEquals(0, p.rank(SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80)));
+        assertEquals(1, p.rank(SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80)));
+        assertEquals(-1, p.rank(SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32)));
+        assertEquals(2, p.getSuites().length);
+    }
+
+    @Test
+    public void testMinEncKeyLength() {
+        SrtpPolicy p = new SrtpPolicy(new String[] { SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80,
+            SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80 }, SrtpPolicy.DEFAULT_PARAMS, 256, true);
+        assertEquals(-1, p.rank(SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80)));
+    }
+
+    @Test
+    public void testAccepts() {
+        SrtpPolicy p = new SrtpPolicy(new String[] { SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80 },
+            SrtpPolicy.PARAM_KDR, 0, false);
+        assertTrue(p.accepts(SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 " + KEY + " KDR=10")));
+        assertFalse(p.accepts(SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 " + KEY + " WSH=64")));
+        assertFalse(p.accepts(SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 " + KEY + "|1:4")));
+        // the key is too short for the suite
+        assertFalse(p.accepts(SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 inline:QUJDREVGR0g=")));
+        assertFalse(p.accepts(SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_32 " + KEY)));
+        assertFalse(p.accepts(SrtpCryptoAttribute.create("1 AES_CM_128_HMAC_SHA1_80 " + KEY + " FEC_KEY=" + KEY)));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDuplicateSuite() {
+        new SrtpPolicy(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnknownSuite() {
+        new SrtpPolicy("NO_SUCH_SUITE");
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SrtpSDesFactoryTest {
+    @Test
+    public void testSharedInstance() {
+        assertSame(SrtpSDesFactory.getInstance(), SrtpSDesFactory.getInstance());
+        assertFalse(SrtpSDesFactory.getInstance().isLazyKeyDecoding());
+        SrtpCryptoAttribute a = SrtpSDesFactory.getInstance().createCryptoAttribute(1, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+        assertEquals(30, a.getKeyParams()[0].getKey().length);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSharedInstanceRandomIsFixed() {
+        SrtpSDesFactory.getInstance().setRandomGenerator(new Random());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSharedInstanceLazyIsFixed() {
+        SrtpSDesFactory.getInstance().setLazyKeyDecoding(true);
+    }
+
+    @Test
+    public void testConcurrentKeyGeneration() throws Exception {
+        final SrtpSDesFactory f = new SrtpSDesFactory();
+        final SrtpCryptoAttribute[] results = new SrtpCryptoAttribute[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    results[index] = f.createCryptoAttribute(index, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        for (int i = 0; i < results.length; i++)
+            assertEquals(i, results[i].getTag());
+    }
+
+    @Test
+    public void testCreateCryptoAttributesForOneStream() {
+        String[] suites = { SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32 };
+        SrtpCryptoAttribute[] offer = new SrtpSDesFactory().createCryptoAttributes(suites, null);
+        assertEquals(3, offer.length);
+        for (int i = 0; i < offer.length; i++) {
+            assertEquals(i + 1, offer[i].getTag());
+            assertEquals(suites[i], offer[i].getCryptoSuite().encode());
+            assertEquals(0, offer[i].getSessionParams().length);
+        }
+        assertEquals(46, offer[0].getKeyParams()[0].getKey().length);
+        assertEquals(30, offer[1].getKeyParams()[0].getKey().length);
+        assertFalse(Arrays.equals(offer[1].getKeyParams()[0].getKey(), offer[2].getKeyParams()[0].getKey()));
+    }
+
+    @Test
+    public void testCreateCryptoAttributesForStreams() {
+        final AtomicInteger draws = new AtomicInteger();
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setRandomGenerator(new Random() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void nextBytes(byte[] bytes) {
+                draws.incrementAndGet();
+                for (int i = 0; i < bytes.length; i++)
+                    bytes[i] = (byte) i;
+            }
+        });
+
+        String[] suites = { SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32 };
+        SrtpSessionParam[][] params = { null, { new KdrSessionParam(1) } };
+        SrtpCryptoAttribute[][] offer = f.createCryptoAttributesForStreams(suites, params);
+        assertEquals(1, draws.get());
+        assertEquals(2, offer.length);
+        assertEquals(2, offer[1][1].getTag());
+        assertEquals(0, offer[0][0].getSessionParams().length);
+        assertEquals("KDR=1", offer[1][0].getSessionParams()[0].encode());
+        assertEquals(0, offer[0][0].getKeyParams()[0].getKey()[0]);
+        assertEquals(30, offer[0][1].getKeyParams()[0].getKey()[0]);
+        assertEquals(90, offer[1][1].getKeyParams()[0].getKey()[0]);
+    }
+
+    @Test
+    public void testCreateCryptoAttributesDoNotShareSessionParams() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        SrtpKeyParam fecKey = new SrtpKeyParam("inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5");
+        SrtpSessionParam[] params = { new KdrSessionParam(1), new FecKeySessionParam(new SrtpKeyParam[] { fecKey }) };
+        String[] suites = { SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32 };
+        SrtpCryptoAttribute[] offer = f.createCryptoAttributes(suites, params);
+        assertNotSame(offer[0].getSessionParams(), offer[1].getSessionParams());
+
+        offer[0].close();
+        FecKeySessionParam sibling = (FecKeySessionParam) offer[1].getSessionParams()[1];
+        assertArrayEquals(fecKey.getKey(), sibling.getKeyParams()[0].getKey());
+        assertTrue(offer[1].encode().endsWith(" KDR=1 FEC_KEY=inline:QUJjZGVmMTIzNDU2Nzg5QUJDREUwMTIzNDU2Nzg5"));
+    }
+
+    @Test
+    public void testCreateCryptoAttributesWithReservoir() {
+        KeyReservoir r = new KeyReservoir(new Random(), 2, 30);
+        r.refill();
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.setKeyReservoir(r);
+        try {
+            String[] suites = { SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_32 };
+            SrtpCryptoAttribute[][] offer = f.createCryptoAttributesForStreams(suites, new SrtpSessionParam[2][]);
+            // the refiller may have topped up the ring in between, but the
+            // 46 byte keys always come from the random generator
+            assertTrue(r.getTakeCount() >= 2);
+            assertEquals(6, r.getTakeCount() + r.getUnderflowCount());
+            assertTrue(r.getUnderflowCount() >= 2);
+            for (SrtpCryptoAttribute[] stream : offer) {
+                assertEquals(30, stream[0].getKeyParams()[0].getKey().length);
+                assertEquals(46, stream[1].getKeyParams()[0].getKey().length);
+                assertEquals(30, stream[2].getKeyParams()[0].getKey().length);
+            }
+        }
+        finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testCreateCryptoAttributeAsync() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<SrtpCryptoAttribute> a = new SrtpSDesFactory().createCryptoAttributeAsync(
+                3, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80, new SrtpSessionParam[] { new KdrSessionParam(2) }, executor);
+            CompletableFuture<SrtpCryptoAttribute[]> b = SrtpSDesFactory.getInstance().createCryptoAttributesAsync(
+                new String[] { SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80, SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80 }, null, executor);
+            assertEquals(3, a.get(10, TimeUnit.SECONDS).getTag());
+            assertEquals("KDR=2", a.get().getSessionParams()[0].encode());
+            assertEquals(2, b.get(10, TimeUnit.SECONDS).length);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateCryptoAttributeAsyncUnknownSuite() throws Exception {
+        CompletableFuture<SrtpCryptoAttribute> a = SrtpSDesFactory.getInstance().createCryptoAttributeAsync(
+            1, "NO_SUCH_SUITE", new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            });
+        assertTrue(a.isCompletedExceptionally());
+        try {
+            a.get();
+            fail("ExecutionException expected");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import ch.imvs.sdes4j.CryptoAttribute;
+import ch.imvs.sdes4j.ParseError;
+import ch.imvs.sdes4j.ParseResult;
+
+public class UnknownSessionParamTest {
+    private final static String ATTRIBUTE = "1 AES_CM_128_HMAC_SHA1_80 inline:YUJDZGVmZ2hpSktMbW9QUXJzVHVWd3l6MTIzNDU2";
+
+    @Test
+    public void testCreate() {
+        SrtpSessionParam p = SrtpSessionParam.create("FOO=bar=1");
+        assertTrue(p instanceof UnknownSessionParam);
+        UnknownSessionParam u = (UnknownSessionParam) p;
+        assertEquals("FOO", u.getName());
+        assertEquals("bar=1", u.getValue());
+        assertTrue(u.isMandatory());
+        assertEquals("FOO=bar=1", u.encode());
+        assertEquals(new UnknownSessionParam("FOO=bar=1"), u);
+    }
+
+    @Test
+    public void testOptional() {
+        UnknownSessionParam u = new UnknownSessionParam("-X_OPT");
+        assertFalse(u.isMandatory());
+        assertEquals("-X_OPT", u.getName());
+        assertNull(u.getValue());
+    }
+
+    @Test
+    public void testSimilarToKnownName() {
+        assertTrue(SrtpSessionParam.create("KDRX=1") instanceof UnknownSessionParam);
+        assertTrue(SrtpSessionParam.create("UNENCRYPTED_SRTPX") instanceof UnknownSessionParam);
+        assertTrue(SrtpSessionParam.create("KDR=1") instanceof KdrSessionParam);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testFlagWithValue() {
+        SrtpSessionParam.create("UNENCRYPTED_SRTP=1");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testKnownWithoutValue() {
+        SrtpSessionParam.create("KDR");
+    }
+
+    @Test
+    public void testInAttribute() {
+        String s = ATTRIBUTE + " KDR=2 -X_OPT FOO=1";
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create(s);
+        assertEquals(s, a.encode());
+        assertEquals(3, a.getSessionParams().length);
+        SessionParamSet set = a.getSessionParamSet();
+        assertEquals(2, set.getKeyDerivationRate());
+        assertTrue(set.contains(SessionParamSet.OTHER));
+
+        SrtpPolicy policy = new SrtpPolicy(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+        assertFalse(policy.accepts(a));
+        assertTrue(policy.accepts(SrtpCryptoAttribute.create(ATTRIBUTE + " KDR=2 -X_OPT")));
+    }
+
+    private final static SrtpSessionParam.Parser OPTIONAL = new SrtpSessionParam.Parser() {
+        @Override
+        public SrtpSessionParam parse(CharSequence s, int start, int end) {
+            return new UnknownSessionParam("-" + s.subSequence(start, end));
+        }
+    };
+
+    @Test
+    public void testRegister() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        SessionParamRegistry registry = f.getSessionParamRegistry();
+        registry.register("X_TEST_REGISTERED", OPTIONAL);
+        registry.register("X_TEST_OTHERNAME", OPTIONAL);
+        assertTrue(registry.contains("X_TEST_REGISTERED"));
+        assertEquals("-X_TEST_REGISTERED=5", f.createSessionParam("X_TEST_REGISTERED=5").encode());
+        assertEquals("-X_TEST_OTHERNAME", f.createSessionParam("X_TEST_OTHERNAME").encode());
+        assertEquals("X_TEST_REGISTERE=5", f.createSessionParam("X_TEST_REGISTERE=5").encode());
+
+        // other factories are not affected
+        assertEquals("X_TEST_REGISTERED=5", new SrtpSDesFactory().createSessionParam("X_TEST_REGISTERED=5").encode());
+        assertEquals("X_TEST_REGISTERED=5", SrtpSessionParam.create("X_TEST_REGISTERED=5").encode());
+
+        SrtpCryptoAttribute a = (SrtpCryptoAttribute) CryptoAttribute.create(ATTRIBUTE + " KDR=1 X_TEST_REGISTERED=5", f);
+        assertEquals("-X_TEST_REGISTERED=5", a.getSessionParams()[1].encode());
+        assertEquals(1, a.getSessionParamSet().getKeyDerivationRate());
+    }
+
+    @Test
+    public void testUnregister() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        SessionParamRegistry registry = f.getSessionParamRegistry();
+        registry.register("X_TEST_REGISTERED", OPTIONAL);
+        registry.register("X_TEST_OTHERNAME", OPTIONAL);
+        assertTrue(registry.unregister("X_TEST_REGISTERED"));
+        assertFalse(registry.unregister("X_TEST_REGISTERED"));
+        assertFalse(registry.contains("X_TEST_REGISTERED"));
+        assertTrue(f.createSessionParam("X_TEST_REGISTERED=5") instanceof UnknownSessionParam);
+        assertEquals("-X_TEST_OTHERNAME", f.createSessionParam("X_TEST_OTHERNAME").encode());
+    }
+
+    @Test
+    public void testRegisteredParserRejects() {
+        SrtpSDesFactory f = new SrtpSDesFactory();
+        f.getSessionParamRegistry().register("X_TEST_REJECT", new SrtpSessionParam.Parser() {
+            @Override
+            public SrtpSessionParam parse(CharSequence s, int start, int end) {
+                return null;
+            }
+        });
+        String encoded = ATTRIBUTE + " KDR=1 X_TEST_REJECT=5";
+        ParseResult<SrtpCryptoAttribute> r = SrtpCryptoAttribute.tryParse(encoded, 0, encoded.length(), f);
+        assertFalse(r.isSuccess());
+        assertEquals(ParseError.REJECTED, r.getError());
+        assertEquals(encoded.indexOf("X_TEST_REJECT"), r.getErrorOffset());
+        try {
+            f.createSessionParam("X_TEST_REJECT=5");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnregisterBuiltIn() {
+        new SrtpSDesFactory().getSessionParamRegistry().unregister("KDR");
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testRegisterWithSharedFactory() {
+        SrtpSDesFactory.getInstance().getSessionParamRegistry().register("X_TEST_SHARED", OPTIONAL);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testRegisterBuiltIn() {
+        new SrtpSDesFactory().getSessionParamRegistry().register("KDR", OPTIONAL);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testRegisterInvalidName() {
+        new SrtpSDesFactory().getSessionParamRegistry().register("A=B", OPTIONAL);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp.kdf;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ch.imvs.sdes4j.srtp.KdrSessionParam;
+import ch.imvs.sdes4j.srtp.SrtpCryptoSuite;
+
+public class DerivedKeyCacheTest {
+    private final static SrtpCryptoSuite SUITE = SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+    private final static byte[] MASTER_KEY = new byte[16];
+    private final static byte[] MASTER_SALT = new byte[14];
+
+    @Test
+    public void testHitAndMiss() {
+        DerivedKeyCache cache = new DerivedKeyCache(16);
+        Object master = new Object();
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, new KdrSessionParam(8));
+        SessionKeys a = SessionKeys.forSrtp(SUITE);
+        SessionKeys b = SessionKeys.forSrtp(SUITE);
+        SessionKeys expected = SessionKeys.forSrtp(SUITE);
+
+        cache.deriveSrtpKeys(master, kdf, 0, a);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        // same r = index DIV 2^8
+        cache.deriveSrtpKeys(master, kdf, 255, b);
+        assertEquals(3, cache.getHitCount());
+        kdf.deriveSrtpKeys(255, expected);
+        assertArrayEquals(expected.getEncKey(), b.getEncKey());
+        assertArrayEquals(expected.getAuthKey(), b.getAuthKey());
+        assertArrayEquals(expected.getSaltKey(), b.getSaltKey());
+        assertEquals(0.5, cache.getHitRatio(), 0);
+
+        // next derivation period
+        cache.deriveSrtpKeys(master, kdf, 256, b);
+        assertEquals(6, cache.getMissCount());
+        assertFalse(Arrays.equals(a.getEncKey(), b.getEncKey()));
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void testMasterKeyIdentity() {
+        DerivedKeyCache cache = new DerivedKeyCache(16);
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, null);
+        byte[] dst = new byte[16];
+        assertFalse(cache.derive("a", kdf, 0, 0, dst, 0, 16));
+        assertFalse(cache.derive(new String("a"), kdf, 0, 0, dst, 0, 16));
+        assertTrue(cache.derive("a", kdf, 0, 0, dst, 0, 16));
+    }
+
+    @Test
+    public void testLruEviction() {
+        DerivedKeyCache cache = new DerivedKeyCache(2);
+        Object master = new Object();
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, null);
+        byte[] dst = new byte[16];
+        cache.derive(master, kdf, 0, 0, dst, 0, 16);
+        cache.derive(master, kdf, 1, 0, dst, 0, 16);
+        assertTrue(cache.derive(master, kdf, 0, 0, dst, 0, 16));
+        cache.derive(master, kdf, 2, 0, dst, 0, 16);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        assertTrue(cache.derive(master, kdf, 0, 0, dst, 0, 16));
+        assertFalse(cache.derive(master, kdf, 1, 0, dst, 0, 16));
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        DerivedKeyCache cache = new DerivedKeyCache(16);
+        Object m1 = new Object();
+        Object m2 = new Object();
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, null);
+        cache.deriveSrtpKeys(m1, kdf, 0, SessionKeys.forSrtp(SUITE));
+        cache.deriveSrtcpKeys(m2, kdf, 0, SessionKeys.forSrtcp(SUITE));
+        assertEquals(3, cache.remove(m1));
+        assertEquals(3, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new DerivedKeyCache(0);
+    }
+}
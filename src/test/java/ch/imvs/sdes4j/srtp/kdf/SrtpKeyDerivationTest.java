@@ -0,0 +1,134 @@
+/*
+ * SDES4J
+ * Java implementation of SDES (Security Descriptions for Media Streams,
+ * RFC 4568).
+ * 
+ * Copyright (C) 2011 FHNW
+ *   University of Applied Sciences Northwestern Switzerland (FHNW)
+ *   School of Engineering
+ *   Institute of Mobile and Distributed Systems (IMVS)
+ *   http://sdes4j.imvs.ch
+ * 
+ * Distributable under LGPL license, see terms of license at gnu.org.
+ */
+package ch.imvs.sdes4j.srtp.kdf;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.Test;
+
+import ch.imvs.sdes4j.srtp.KdrSessionParam;
+import ch.imvs.sdes4j.srtp.SrtpCryptoAttribute;
+import ch.imvs.sdes4j.srtp.SrtpCryptoSuite;
+
+public class SrtpKeyDerivationTest {
+    // test vectors of RFC 3711, Appendix B.3
+    private final static byte[] MASTER_KEY = bytes("E1F97A0D3E018BE0D64FA32C06DE4139");
+    private final static byte[] MASTER_SALT = bytes("0EC675AD498AFEEBB6960B3AABE6");
+    private final static byte[] CIPHER_KEY = bytes("C61E7A93744F39EE10734AFE3FF7A087");
+    private final static byte[] CIPHER_SALT = bytes("30CBBC08863D8C85D49DB34A9AE1");
+    private final static byte[] AUTH_KEY = bytes("CEBE321F6FF7716B6FD4AB49AF256A15"
+        + "6D38BAA48F0A0ACF3C34E2359E6CDBCE"
+        + "E049646C43D9327AD175578EF7227098"
+        + "6371C10C9A369AC2F94A8C5FBCDDDC25"
+        + "6D6E919A48B610EF17C2041E47403576"
+        + "6B68642C59BBFC2F34DB60DBDFB2");
+
+    private final static SrtpCryptoSuite SUITE = SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80);
+
+    private static byte[] bytes(String hex) {
+        byte[] b = new byte[hex.length() / 2];
+        for (int i = 0; i < b.length; i++)
+            b[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        return b;
+    }
+
+    @Test
+    public void testRfc3711Vectors() {
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, null);
+        byte[] dst = new byte[AUTH_KEY.length];
+        kdf.derive(SrtpKeyDerivation.LABEL_RTP_MSG_AUTH, 0, dst, 0, dst.length);
+        assertArrayEquals(AUTH_KEY, dst);
+
+        SessionKeys keys = SessionKeys.forSrtp(SUITE);
+        kdf.deriveSrtpKeys(0, keys);
+        assertArrayEquals(CIPHER_KEY, keys.getEncKey());
+        assertArrayEquals(CIPHER_SALT, keys.getSaltKey());
+        assertArrayEquals(Arrays.copyOf(AUTH_KEY, 20), keys.getAuthKey());
+    }
+
+    @Test
+    public void testFromAttribute() {
+        byte[] material = new byte[30];
+        System.arraycopy(MASTER_KEY, 0, material, 0, 16);
+        System.arraycopy(MASTER_SALT, 0, material, 16, 14);
+        SrtpCryptoAttribute a = SrtpCryptoAttribute.create("1", SrtpCryptoSuite.AES_CM_128_HMAC_SHA1_80,
+            "inline:" + Base64.getEncoder().encodeToString(material), null);
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(a);
+        assertEquals(-1, kdf.getKeyDerivationRate());
+        assertEquals(0, kdf.getDerivationIndex(123456));
+
+        SessionKeys keys = SessionKeys.forSrtp(SUITE);
+        kdf.deriveSrtpKeys(123456, keys);
+        assertArrayEquals(CIPHER_KEY, keys.getEncKey());
+    }
+
+    @Test
+    public void testKeyDerivationRate() {
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, new KdrSessionParam(16));
+        assertEquals(0, kdf.getDerivationIndex(65535));
+        assertEquals(1, kdf.getDerivationIndex(65536));
+
+        SessionKeys first = SessionKeys.forSrtp(SUITE);
+        SessionKeys same = SessionKeys.forSrtp(SUITE);
+        SessionKeys next = SessionKeys.forSrtp(SUITE);
+        kdf.deriveSrtpKeys(0, first);
+        kdf.deriveSrtpKeys(65535, same);
+        kdf.deriveSrtpKeys(65536, next);
+        assertArrayEquals(CIPHER_KEY, first.getEncKey());
+        assertArrayEquals(first.getEncKey(), same.getEncKey());
+        assertFalse(Arrays.equals(first.getEncKey(), next.getEncKey()));
+        assertFalse(Arrays.equals(first.getSaltKey(), next.getSaltKey()));
+    }
+
+    @Test
+    public void testSrtcpKeysDiffer() {
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, null);
+        SessionKeys rtp = SessionKeys.forSrtp(SUITE);
+        SessionKeys rtcp = SessionKeys.forSrtcp(SUITE);
+        kdf.deriveSrtpKeys(0, rtp);
+        kdf.deriveSrtcpKeys(0, rtcp);
+        assertFalse(Arrays.equals(rtp.getEncKey(), rtcp.getEncKey()));
+
+        rtcp.wipe();
+        assertArrayEquals(new byte[16], rtcp.getEncKey());
+    }
+
+    @Test
+    public void testAes256() {
+        SrtpCryptoSuite suite = SrtpCryptoSuite.forName(SrtpCryptoSuite.AES_256_CM_HMAC_SHA1_80);
+        SrtpKeyDerivation kdf = new SrtpKeyDerivation(suite, new byte[32], MASTER_SALT, null);
+        SessionKeys keys = SessionKeys.forSrtp(suite);
+        kdf.deriveSrtpKeys(0, keys);
+        assertEquals(32, keys.getEncKey().length);
+        assertFalse(Arrays.equals(new byte[32], keys.getEncKey()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testWrongMasterKeyLength() {
+        new SrtpKeyDerivation(SUITE, new byte[32], MASTER_SALT, null);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testDestinationTooSmall() {
+        new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, null).derive(0, 0, new byte[8], 0, 16);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSrtcpIndexTooLarge() {
+        new SrtpKeyDerivation(SUITE, MASTER_KEY, MASTER_SALT, null).deriveSrtcpKeys(0x80000000L, SessionKeys.forSrtcp(SUITE));
+    }
+}